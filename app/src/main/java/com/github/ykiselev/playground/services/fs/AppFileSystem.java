@@ -110,6 +110,24 @@ public final class AppFileSystem implements FileSystem {
                 .orElseThrow(() -> new IllegalStateException("Unable to open file channel!"));
     }
 
+    @Override
+    public void replace(String source, String target) {
+        final ResourceFolder folder = resolveResourceFolder(true)
+                .orElseThrow(() -> new IllegalStateException("Unable to replace file!"));
+        final Path from = folder.resolve(source, true)
+                .map(AppFileSystem::toPath)
+                .orElseThrow(() -> new IllegalStateException("Unable to resolve " + source));
+        final Path to = folder.resolve(target, false)
+                .map(AppFileSystem::toPath)
+                .orElseThrow(() -> new IllegalStateException("Unable to resolve " + target));
+        logger.debug("Replacing {} with {}...", to, from);
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to replace " + to, e);
+        }
+    }
+
     @Override
     public FileSystem mapArchive(String archiveName, boolean create, boolean readOnly) {
         if (archiveName == null) {
@@ -11,8 +11,10 @@ import java.io.UncheckedIOException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.Objects;
@@ -64,6 +66,16 @@ public final class ArchiveFileSystem implements FileSystem {
         }
     }
 
+    @Override
+    public void replace(String source, String target) {
+        try {
+            Files.move(fs.getPath(source), fs.getPath(target), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Override
     public FileSystem mapArchive(String archiveName, boolean create, boolean readOnly) {
         return ArchiveFileSystem.create(fs.getPath(archiveName), create);
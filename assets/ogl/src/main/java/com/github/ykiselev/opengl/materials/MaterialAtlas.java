@@ -37,7 +37,7 @@ public final class MaterialAtlas implements AutoCloseable {
      * @return material or {@code null}
      */
     public Material get(int index) {
-        if (index < 1) {
+        if (index < 1 || index > materials.size()) {
             return null;
         }
         return materials.get(index - 1);
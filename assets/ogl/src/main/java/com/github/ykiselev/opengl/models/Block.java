@@ -18,7 +18,7 @@ package com.github.ykiselev.opengl.models;
 
 import com.github.ykiselev.assets.Assets;
 import com.github.ykiselev.common.closeables.Closeables;
-import com.github.ykiselev.common.memory.MemAllocFloat;
+import com.github.ykiselev.common.memory.MemAllocInt;
 import com.github.ykiselev.opengl.OglRecipes;
 import com.github.ykiselev.opengl.shaders.ProgramObject;
 import com.github.ykiselev.opengl.shaders.uniforms.UniformVariable;
@@ -39,6 +39,10 @@ import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
 
 
 /**
+ * Draws unit cubes with instancing. Each instance is packed into single int: block position relative to origin of
+ * aligned cell of {@code 2^CELL_SHIFT} blocks (8 bits per axis) and material index (see {@link #materials}). Cell
+ * origin is passed as uniform, so instances are flushed whenever consecutive blocks lie in different cells.
+ *
  * @author Yuriy Kiselev (uze@yandex.ru).
  */
 public final class Block implements AutoCloseable {
@@ -97,7 +101,15 @@ public final class Block implements AutoCloseable {
             20, 21, 22,
             22, 23, 20
     };
-    public static final int FLOATS_PER_INSTANCE = 5;
+    /**
+     * Cell side is {@code 1 << CELL_SHIFT} blocks.
+     */
+    public static final int CELL_SHIFT = 8;
+
+    /**
+     * Number of material indices.
+     */
+    public static final int MATERIALS = 256;
 
     private final ProgramObject program;
 
@@ -105,12 +117,19 @@ public final class Block implements AutoCloseable {
 
     private final VertexBufferObject dynamicVbo;
 
-    private final UniformVariable mvp, texScale, tex;
+    private final UniformVariable mvp, texScale, tex, origin, texOffsets;
 
-    private final FloatBuffer buffer;
+    private final IntBuffer buffer;
 
     private int instances;
 
+    /**
+     * Origin of current cell, valid if {@code hasOrigin} is set.
+     */
+    private int iorg, jorg, korg;
+
+    private boolean hasOrigin;
+
     private long totalInstances;
 
     private final AutoCloseable ac;
@@ -134,8 +153,7 @@ public final class Block implements AutoCloseable {
                     .floats(3) // normal
                     .endVbo()
                     .with(dynamicVbo)
-                    .floats(3, 1) // block pos
-                    .floats(2, 1) // tex offset
+                    .ints(1, 1) // packed block position and material
                     .endVbo()
                     .with(ebo)
                     .end();
@@ -154,17 +172,34 @@ public final class Block implements AutoCloseable {
                 ebo.unbind();
             }
 
-            buffer = guard.add(new MemAllocFloat(FLOATS_PER_INSTANCE * instanceLimit));
+            buffer = guard.add(new MemAllocInt(instanceLimit));
             mvp = program.lookup("mvp");
             texScale = program.lookup("texScale");
             tex = program.lookup("tex");
+            origin = program.lookup("origin");
+            texOffsets = program.lookup("texOffsets");
 
             ac = guard.detach();
         }
     }
 
+    /**
+     * Sets texture offsets of materials.
+     *
+     * @param offsets the s and t offsets for each of {@link #MATERIALS} material indices
+     */
+    public void materials(FloatBuffer offsets) {
+        if (offsets.remaining() != 2 * MATERIALS) {
+            throw new IllegalArgumentException("Expected offsets of " + MATERIALS + " materials!");
+        }
+        program.bind();
+        texOffsets.vector2(offsets);
+        program.unbind();
+    }
+
     public void begin(FloatBuffer m, float sScale, float tScale) {
         totalInstances = 0;
+        hasOrigin = false;
         program.bind();
         vao.bind();
         tex.value(0);
@@ -196,11 +231,27 @@ public final class Block implements AutoCloseable {
         }
     }
 
-    public void draw(float x, float y, float z, float sOff, float tOff) {
-        if (buffer.remaining() < FLOATS_PER_INSTANCE) {
+    /**
+     * @param i        the block i index
+     * @param j        the block j index
+     * @param k        the block k index
+     * @param material the material index (only lowest 8 bits are used)
+     */
+    public void draw(int i, int j, int k, int material) {
+        final int mask = -(1 << CELL_SHIFT);
+        final int ci = i & mask, cj = j & mask, ck = k & mask;
+        if (!hasOrigin || ci != iorg || cj != jorg || ck != korg) {
+            flush();
+            iorg = ci;
+            jorg = cj;
+            korg = ck;
+            hasOrigin = true;
+            origin.vector3(ci, cj, ck);
+        }
+        if (!buffer.hasRemaining()) {
             flush();
         }
-        buffer.put(x).put(y).put(z).put(sOff).put(tOff);
+        buffer.put((i - ci) | (j - cj) << 8 | (k - ck) << 16 | (material & 0xff) << 24);
         instances++;
     }
 
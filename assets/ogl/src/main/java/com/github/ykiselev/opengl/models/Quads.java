@@ -0,0 +1,184 @@
+package com.github.ykiselev.opengl.models;
+
+import com.github.ykiselev.assets.Assets;
+import com.github.ykiselev.common.closeables.Closeables;
+import com.github.ykiselev.opengl.OglRecipes;
+import com.github.ykiselev.opengl.shaders.ProgramObject;
+import com.github.ykiselev.opengl.shaders.uniforms.UniformVariable;
+import com.github.ykiselev.opengl.vbo.IndexBufferObject;
+import com.github.ykiselev.opengl.vbo.VertexArrayObject;
+import com.github.ykiselev.opengl.vbo.VertexBufferObject;
+import com.github.ykiselev.opengl.vertices.VaoConfigurer;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+
+/**
+ * Draws block faces stored in GPU buffers. Each {@link Mesh} holds instances of unit quad, one instance per quad of
+ * one or more merged faces: packed geometry (block position relative to mesh origin, face and size, see
+ * {@code quads.vs}) followed by texture offset. Texture is repeated once per block. Meshes are uploaded once and drawn
+ * every frame with mesh origin passed as uniform.
+ */
+public final class Quads implements AutoCloseable {
+
+    public static final int BYTES_PER_QUAD = Integer.BYTES + 2 * Float.BYTES;
+
+    private static final float[] CORNERS = new float[]{
+            0, 0,
+            1, 0,
+            1, 1,
+            0, 1
+    };
+
+    private static final int[] INDICES = new int[]{
+            0, 1, 2,
+            2, 3, 0
+    };
+
+    private final ProgramObject program;
+
+    private final VertexBufferObject corners;
+
+    private final IndexBufferObject ebo;
+
+    private final UniformVariable mvp, texScale, tex, origin;
+
+    private long totalQuads;
+
+    private final AutoCloseable ac;
+
+    public long totalQuads() {
+        return totalQuads;
+    }
+
+    public Quads(Assets assets) {
+        try (var guard = Closeables.newGuard()) {
+            program = guard.add(assets.load("progs/quads.conf", OglRecipes.PROGRAM));
+            corners = guard.add(new VertexBufferObject());
+            ebo = guard.add(new IndexBufferObject());
+
+            try (var ms = MemoryStack.stackPush()) {
+                FloatBuffer buf = ms.mallocFloat(CORNERS.length);
+                buf.clear().put(CORNERS).flip();
+                corners.bind();
+                corners.bufferData(buf, GL_STATIC_DRAW);
+                corners.unbind();
+
+                IntBuffer ibuf = ms.mallocInt(INDICES.length);
+                ibuf.clear().put(INDICES).flip();
+                ebo.bind();
+                ebo.bufferData(ibuf, GL_STATIC_DRAW);
+                ebo.unbind();
+            }
+
+            mvp = program.lookup("mvp");
+            texScale = program.lookup("texScale");
+            tex = program.lookup("tex");
+            origin = program.lookup("origin");
+
+            ac = guard.detach();
+        }
+    }
+
+    /**
+     * Uploads quads to new GPU buffer.
+     *
+     * @param data  the quads, {@link #BYTES_PER_QUAD} bytes each
+     * @param quads the number of quads
+     * @return the mesh
+     */
+    public Mesh upload(ByteBuffer data, int quads) {
+        try (var guard = Closeables.newGuard()) {
+            var vao = guard.add(new VertexArrayObject());
+            var vbo = guard.add(new VertexBufferObject());
+
+            VaoConfigurer.of(vao)
+                    .with(corners)
+                    .floats(2) // quad corner
+                    .endVbo()
+                    .with(vbo)
+                    .ints(1, 1) // packed geometry
+                    .floats(2, 1) // tex offset
+                    .endVbo()
+                    .with(ebo)
+                    .end();
+
+            vbo.bind();
+            vbo.bufferData(data, GL_STATIC_DRAW);
+            vbo.unbind();
+
+            final Mesh mesh = new Mesh(vao, vbo, quads);
+            guard.detach();
+            return mesh;
+        }
+    }
+
+    public void begin(FloatBuffer m, float sScale, float tScale) {
+        totalQuads = 0;
+        program.bind();
+        tex.value(0);
+
+        mvp.matrix4(false, m);
+        try (var ms = MemoryStack.stackPush()) {
+            FloatBuffer buf = ms.mallocFloat(2);
+            buf.clear().put(sScale).put(tScale).flip();
+            texScale.vector2(buf);
+        }
+    }
+
+    /**
+     * @param mesh the mesh to draw
+     * @param x    the mesh origin x coordinate
+     * @param y    the mesh origin y coordinate
+     * @param z    the mesh origin z coordinate
+     */
+    public void draw(Mesh mesh, float x, float y, float z) {
+        origin.vector3(x, y, z);
+        mesh.vao.bind();
+        GL31.glDrawElementsInstanced(GL_TRIANGLES, INDICES.length, GL_UNSIGNED_INT, 0, mesh.quads);
+        totalQuads += mesh.quads;
+    }
+
+    public void end() {
+        program.unbind();
+    }
+
+    @Override
+    public void close() {
+        Closeables.close(ac);
+    }
+
+    /**
+     * Quads uploaded to GPU buffer.
+     */
+    public static final class Mesh implements AutoCloseable {
+
+        private final VertexArrayObject vao;
+
+        private final VertexBufferObject vbo;
+
+        private final int quads;
+
+        private Mesh(VertexArrayObject vao, VertexBufferObject vbo, int quads) {
+            this.vao = vao;
+            this.vbo = vbo;
+            this.quads = quads;
+        }
+
+        public int quads() {
+            return quads;
+        }
+
+        @Override
+        public void close() {
+            Closeables.closeAll(vao, vbo);
+        }
+    }
+}
@@ -65,6 +65,13 @@ public final class UniformVariable {
         glUniform3fv(location, buffer);
     }
 
+    /**
+     * Specifies the value of a single vec3 uniform variable.
+     */
+    public void vector3(float x, float y, float z) {
+        glUniform3f(location, x, y, z);
+    }
+
     /**
      * Specifies the value of a single vec2 uniform variable or a vec2 uniform variable array.
      *
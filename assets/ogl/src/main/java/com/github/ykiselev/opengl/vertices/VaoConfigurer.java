@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Objects;
 
 import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_INT;
 
 public final class VaoConfigurer {
 
@@ -45,7 +46,8 @@ public final class VaoConfigurer {
     }
 
     enum Components {
-        FLOAT(GL_FLOAT, Float.BYTES);
+        FLOAT(GL_FLOAT, Float.BYTES),
+        INT(GL_INT, Integer.BYTES);
 
         private final int type;
 
@@ -92,13 +94,25 @@ public final class VaoConfigurer {
             return this;
         }
 
+        /**
+         * Adds integer attribute (not converted to float, see {@code glVertexAttribIPointer}).
+         */
+        public VboConfigurer ints(int components, int divisor) {
+            attributes.add(new Attribute(components, Components.INT, divisor));
+            return this;
+        }
+
         public VaoConfigurer endVbo() {
             final int stride = attributes.stream()
                     .mapToInt(Attribute::sizeInBytes)
                     .sum();
             long offset = 0;
             for (Attribute attr : attributes) {
-                VertexDefinitions.attribute(index, attr.components(), attr.component().type(), stride, offset);
+                if (attr.component() == Components.INT) {
+                    VertexDefinitions.integerAttribute(index, attr.components(), attr.component().type(), stride, offset);
+                } else {
+                    VertexDefinitions.attribute(index, attr.components(), attr.component().type(), stride, offset);
+                }
                 VertexDefinitions.divisor(index, attr.divisor());
                 offset += attr.sizeInBytes();
                 index += 1 + attr.sizeInBytes() / 16;
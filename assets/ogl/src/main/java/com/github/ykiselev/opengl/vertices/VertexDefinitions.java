@@ -21,6 +21,7 @@ import org.lwjgl.opengl.GL33;
 import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glVertexAttribIPointer;
 
 /**
  * @author Yuriy Kiselev (uze@yandex.ru).
@@ -63,6 +64,11 @@ public enum VertexDefinitions implements VertexDefinition {
         attribute(index, size, type, false, stride, bbo);
     }
 
+    public static void integerAttribute(int index, int size, int type, int stride, long bbo) {
+        glVertexAttribIPointer(index, size, type, stride, bbo);
+        glEnableVertexAttribArray(index);
+    }
+
     public static void divisor(int index, int divisor) {
         GL33.glVertexAttribDivisor(index, divisor);
     }
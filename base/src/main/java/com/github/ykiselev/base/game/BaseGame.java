@@ -16,6 +16,7 @@
 
 package com.github.ykiselev.base.game;
 
+import com.github.ykiselev.base.game.client.Camera;
 import com.github.ykiselev.base.game.client.GameClient;
 import com.github.ykiselev.base.game.server.GameServer;
 import com.github.ykiselev.common.closeables.Closeables;
@@ -23,19 +24,31 @@ import com.github.ykiselev.spi.GameFactoryArgs;
 import com.github.ykiselev.spi.components.Game;
 import com.github.ykiselev.spi.services.FileSystem;
 import com.github.ykiselev.spi.services.layers.DrawingContext;
+import com.github.ykiselev.spi.services.schedule.Repeatable;
+import com.github.ykiselev.spi.services.schedule.Schedule;
 import com.github.ykiselev.spi.window.Window;
 import com.github.ykiselev.spi.window.WindowEvents;
 import com.github.ykiselev.spi.world.DefaultNodeFactory;
 import com.github.ykiselev.spi.world.NodeFactory;
+import com.github.ykiselev.spi.world.Regions;
 import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.file.RegionStore;
 import com.github.ykiselev.spi.world.file.WorldFile;
+import com.github.ykiselev.spi.world.file.WorldStore;
+import com.github.ykiselev.spi.world.file.WorldStreamer;
 import com.github.ykiselev.spi.world.generation.WorldGenerator;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author Yuriy Kiselev (uze@yandex.ru).
  */
 public final class BaseGame implements Game {
 
+    private static final long AUTOSAVE_INTERVAL = 5;
+
+    private static final byte WORLD_RANGE_SHIFT = 10;
+
     private final AutoCloseable closeable;
 
     private final Window window;
@@ -48,21 +61,42 @@ public final class BaseGame implements Game {
 
     private final FileSystem fileSystem;
 
-    private final WorldFile worldFile = new WorldFile();
+    private final Schedule schedule;
+
+    private final WorldFile worldFile = new WorldFile(WorldFile.Container.ARCHIVE, Runtime.getRuntime().availableProcessors());
 
     private World world;
 
-    private final NodeFactory nodeFactory = new DefaultNodeFactory();
+    private WorldStore store;
+
+    private WorldStreamer streamer;
+
+    private int loadRadius = 256, unloadRadius = 384, residencyBudget = 256, insertBudget = 512;
+
+    private boolean closed;
+
+    private final NodeFactory nodeFactory = DefaultNodeFactory.palette();
 
     public BaseGame(GameFactoryArgs args) {
         this.window = args.window();
         this.fileSystem = args.fileSystem();
+        this.schedule = args.schedule();
 
         try (var guard = Closeables.newGuard()) {
             guard.add(args.commands()
                     .add()
                     .with("load-world", this::world)
                     .with("gen-world", this::genWorld)
+                    .with("stream-world", this::streamWorld)
+                    .with("export-regions", this::exportRegions)
+                    .build());
+
+            guard.add(args.configuration()
+                    .wire()
+                    .withInt("world.streaming.load-radius", () -> loadRadius, v -> loadRadius = v, true)
+                    .withInt("world.streaming.unload-radius", () -> unloadRadius, v -> unloadRadius = v, true)
+                    .withInt("world.streaming.budget", () -> residencyBudget, v -> residencyBudget = v, true)
+                    .withInt("world.streaming.insert-budget", () -> insertBudget, v -> insertBudget = v, true)
                     .build());
 
             this.server = new GameServer();
@@ -74,6 +108,7 @@ public final class BaseGame implements Game {
             closeable = guard.detach();
         }
         this.events = client;
+        schedule.schedule(AUTOSAVE_INTERVAL, TimeUnit.SECONDS, (Repeatable) this::autosave);
     }
 
     @Override
@@ -97,25 +132,84 @@ public final class BaseGame implements Game {
     public void update() {
         server.update();
         client.update();
+        if (streamer != null) {
+            final Camera camera = client.camera();
+            streamer.update(camera.x(), camera.y(), camera.z());
+        }
     }
 
     @Override
     public void close() throws Exception {
+        closed = true;
+        stopStreaming();
         closeable.close();
     }
 
     @Override
     public void draw(int width, int height, DrawingContext context) {
-        client.draw(width, height, context, world);
+        client.draw(width, height, context, world, streamer != null ? streamer.formatStats() : null);
     }
 
     private void genWorld(String command, String name) {
-        WorldGenerator generator = new WorldGenerator();
-        world = generator.generate(nodeFactory, 1024);
-        worldFile.save(fileSystem, world, name);
+        stopStreaming();
+        WorldGenerator generator = WorldGenerator.terrain(name.hashCode());
+        world = generator.generate(nodeFactory, 1 << WORLD_RANGE_SHIFT);
+        store = new WorldStore(fileSystem, worldFile, schedule, name);
+        // the first save of world is done asynchronously
+        store.save(world);
     }
 
     private void world(String command, String name) {
-        world = worldFile.load(fileSystem, name, nodeFactory);
+        stopStreaming();
+        store = new WorldStore(fileSystem, worldFile, schedule, name);
+        world = store.load(nodeFactory);
+    }
+
+    /**
+     * Starts streaming of regions around camera from region files (see {@link #exportRegions(String, String)}).
+     */
+    private void streamWorld(String command, String name) {
+        stopStreaming();
+        store = null;
+        world = new World(nodeFactory, WORLD_RANGE_SHIFT);
+        streamer = new WorldStreamer(fileSystem, name, world,
+                new WorldStreamer.Settings(loadRadius, unloadRadius, residencyBudget, insertBudget),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Writes every region of current world to region files.
+     */
+    private void exportRegions(String command, String name) {
+        if (world == null) {
+            return;
+        }
+        final Regions regions = world.regions();
+        final int range = 1 << world.rangeShift(), step = 1 << regions.shift();
+        for (int k = 0; k < range; k += step) {
+            for (int j = 0; j < range; j += step) {
+                for (int i = 0; i < range; i += step) {
+                    regions.markLoaded(regions.key(i, j, k));
+                }
+            }
+        }
+        new RegionStore(fileSystem, name).save(world);
+    }
+
+    private void stopStreaming() {
+        if (streamer != null) {
+            streamer.close();
+            streamer = null;
+        }
+    }
+
+    private boolean autosave() {
+        if (store != null && world != null) {
+            store.save(world);
+        }
+        if (streamer != null) {
+            streamer.save();
+        }
+        return !closed;
     }
 }
\ No newline at end of file
@@ -15,6 +15,18 @@ public final class Camera {
 
     private final Vector3f direction = new Vector3f(), up = new Vector3f(), right = new Vector3f();
 
+    public float x() {
+        return x;
+    }
+
+    public float y() {
+        return y;
+    }
+
+    public float z() {
+        return z;
+    }
+
     public void set(float x, float y, float z) {
         this.x = x;
         this.y = y;
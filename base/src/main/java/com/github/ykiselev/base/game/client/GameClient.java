@@ -22,6 +22,7 @@ import com.github.ykiselev.spi.services.layers.DrawingContext;
 import com.github.ykiselev.spi.window.Window;
 import com.github.ykiselev.spi.window.WindowEvents;
 import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.mesh.MeshStrategy;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.system.MemoryUtil;
@@ -32,6 +33,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.FloatBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
 
 import static java.util.Objects.requireNonNull;
 import static org.lwjgl.glfw.GLFW.*;
@@ -96,6 +98,14 @@ public final class GameClient implements Updatable, AutoCloseable, WindowEvents
 
             renderer = guard.add(new WorldRenderer(assets));
 
+            guard.add(host.configuration()
+                    .wire()
+                    .withString("graphics.mesher", () -> renderer.strategy().name().toLowerCase(Locale.ROOT),
+                            v -> renderer.strategy(MeshStrategy.valueOf(v.toUpperCase(Locale.ROOT))), true)
+                    .withInt("graphics.meshing.upload-budget", renderer::uploadKilobytes, renderer::uploadKilobytes, true)
+                    .withInt("graphics.meshing.upload-time", renderer::uploadMillis, renderer::uploadMillis, true)
+                    .build());
+
             vp = MemoryUtil.memAllocFloat(16);
             frameBuffer = guard.add(new FrameBuffer());
 
@@ -104,6 +114,10 @@ public final class GameClient implements Updatable, AutoCloseable, WindowEvents
         camera.set(0, -10, 0);
     }
 
+    public Camera camera() {
+        return camera;
+    }
+
     @Override
     public void update() {
     }
@@ -218,7 +232,10 @@ public final class GameClient implements Updatable, AutoCloseable, WindowEvents
     }
 
 
-    public void draw(int width, int height, DrawingContext context, World world) {
+    /**
+     * @param stats the additional world statistics to display (may be {@code null})
+     */
+    public void draw(int width, int height, DrawingContext context, World world, String stats) {
         frameBuffer.size(width, height);
 
         GL11.glViewport(0, 0, width, height);
@@ -266,9 +283,9 @@ public final class GameClient implements Updatable, AutoCloseable, WindowEvents
         }
 
         spriteBatch.draw(0, height, width,
-                String.format("time (ms): min: %.1f, max: %.1f, avg: %.1f, fps: %.2f, frame buffer mode: %s, %s",
+                String.format("time (ms): min: %.1f, max: %.1f, avg: %.1f, fps: %.2f, frame buffer mode: %s, %s%s",
                         frameInfo.min(), frameInfo.max(), frameInfo.avg(), frameInfo.fps(), frameBufferMode,
-                        renderer.formatStats()),
+                        renderer.formatStats(), stats != null ? "\n" + stats : ""),
                 textAttributes
         );
 
@@ -5,19 +5,43 @@ import com.github.ykiselev.common.closeables.Closeables;
 import com.github.ykiselev.opengl.OglRecipes;
 import com.github.ykiselev.opengl.materials.Material;
 import com.github.ykiselev.opengl.materials.MaterialAtlas;
-import com.github.ykiselev.opengl.models.Block;
+import com.github.ykiselev.opengl.models.Quads;
 import com.github.ykiselev.spi.camera.Frustum;
 import com.github.ykiselev.spi.camera.FrustumClippingPredicate;
+import com.github.ykiselev.spi.world.ChangeJournal;
+import com.github.ykiselev.spi.world.Face;
 import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.UniformNode;
 import com.github.ykiselev.spi.world.Visitor;
 import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.mesh.BlockMaterials;
+import com.github.ykiselev.spi.world.mesh.BlockSource;
+import com.github.ykiselev.spi.world.mesh.LeafMesh;
+import com.github.ykiselev.spi.world.mesh.LeafMesher;
+import com.github.ykiselev.spi.world.mesh.LeafMeshCache;
+import com.github.ykiselev.spi.world.mesh.MeshStrategy;
+import com.github.ykiselev.spi.world.mesh.MeshingService;
 import com.github.ykiselev.spi.world.predicates.CountingPredicate;
 import com.github.ykiselev.spi.world.predicates.DebugPredicate;
 
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.function.Supplier;
 
 public final class WorldRenderer implements AutoCloseable {
 
+    /**
+     * Number of frames mesh of leaf is kept after leaf was last visible.
+     */
+    private static final int MAX_IDLE_FRAMES = 300;
+
+    /**
+     * Maximum number of leaves being meshed or waiting for upload.
+     */
+    private static final int MAX_QUEUED_MESHES = 1024;
+
     private final Frustum frustum = new Frustum();
 
     private final FrustumClippingPredicate frustumClippingPredicate = new FrustumClippingPredicate(frustum);
@@ -26,14 +50,52 @@ public final class WorldRenderer implements AutoCloseable {
 
     private final MaterialAtlas materialAtlas;
 
-    private final Block block;
+    private final Quads quads;
+
+    private final BlockMaterials materials = new BlockMaterials() {
+        @Override
+        public boolean isVisible(int value) {
+            return materialAtlas.get(value) != null;
+        }
+
+        @Override
+        public boolean isOpaque(int value) {
+            final Material material = materialAtlas.get(value);
+            return material != null && material.opaque();
+        }
+    };
+
+    private final MeshingService meshing;
+
+    private final LeafMeshCache<Quads.Mesh> meshes;
+
+    private MeshStrategy strategy = MeshStrategy.GREEDY;
+
+    /**
+     * Per-frame budget of mesh uploads.
+     */
+    private int uploadKilobytes = 1024, uploadMillis = 2;
+
+    private ByteBuffer scratch;
+
+    /**
+     * The world meshes are built for and its journal cursor used to rebuild meshes of leaves next to modified ones.
+     */
+    private World world;
+
+    private ChangeJournal.Cursor changes;
+
+    private BlockSource neighbours;
 
     private final AutoCloseable ac;
 
     public WorldRenderer(Assets assets) {
         try (var guard = Closeables.newGuard()) {
-            block = guard.add(new Block(assets, 50_000));
             materialAtlas = guard.add(assets.load("materials/materials.conf", OglRecipes.MATERIAL_ATLAS));
+            quads = guard.add(new Quads(assets));
+            meshing = guard.add(new MeshingService(meshers(strategy),
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2), MAX_QUEUED_MESHES));
+            meshes = guard.add(new LeafMeshCache<>(meshing, this::upload, MAX_IDLE_FRAMES));
 
             ac = guard.detach();
         }
@@ -42,12 +104,88 @@ public final class WorldRenderer implements AutoCloseable {
     @Override
     public void close() {
         Closeables.close(ac);
+        MemoryUtil.memFree(scratch);
+    }
+
+    public MeshStrategy strategy() {
+        return strategy;
+    }
+
+    /**
+     * Switches meshing strategy, all meshes are rebuilt.
+     *
+     * @param strategy the new strategy
+     */
+    public void strategy(MeshStrategy strategy) {
+        if (strategy != this.strategy) {
+            this.strategy = strategy;
+            meshing.meshers(meshers(strategy));
+            meshes.invalidateAll();
+        }
+    }
+
+    private Supplier<LeafMesher> meshers(MeshStrategy strategy) {
+        return () -> strategy.create(materials);
+    }
+
+    public int uploadKilobytes() {
+        return uploadKilobytes;
+    }
+
+    public void uploadKilobytes(int value) {
+        this.uploadKilobytes = value;
+    }
+
+    public int uploadMillis() {
+        return uploadMillis;
+    }
+
+    public void uploadMillis(int value) {
+        this.uploadMillis = value;
+    }
+
+    private Quads.Mesh upload(LeafMesh mesh) {
+        final int size = mesh.quads() * Quads.BYTES_PER_QUAD;
+        if (scratch == null || scratch.capacity() < size) {
+            scratch = MemoryUtil.memRealloc(scratch, size);
+        }
+        scratch.clear();
+        for (int n = 0; n < mesh.quads(); n++) {
+            final Material material = materialAtlas.get(mesh.value(n));
+            scratch.putInt(mesh.geometry(n))
+                    .putFloat(material.ds())
+                    .putFloat(material.dt());
+        }
+        return quads.upload(scratch.flip(), mesh.quads());
+    }
+
+    private void trackChanges(World world) {
+        if (world != this.world) {
+            this.world = world;
+            changes = world.journal().cursor();
+            neighbours = BlockSource.of(world);
+            meshes.invalidateAll();
+        } else if (!changes.drain(this::changed)) {
+            meshes.invalidateAll();
+        }
+    }
+
+    /**
+     * Faces of adjacent leaves might be hidden or exposed by modification, so their meshes are rebuilt too.
+     */
+    private void changed(int iorg, int jorg, int korg) {
+        meshes.invalidate(iorg, jorg, korg);
+        final int side = 1 << Leaf.SIDE_SHIFT;
+        for (Face face : Face.values()) {
+            meshes.invalidate(iorg + face.di() * side, jorg + face.dj() * side, korg + face.dk() * side);
+        }
     }
 
     public void draw(World world, FloatBuffer vp) {
         if (world == null) {
             return;
         }
+        trackChanges(world);
 
 //        try (MemoryStack ms = MemoryStack.stackPush()) {
 //            final FloatBuffer mat = ms.mallocFloat(16);
@@ -57,58 +195,62 @@ public final class WorldRenderer implements AutoCloseable {
 
         //glActiveTexture(GL_TEXTURE0);
         materialAtlas.texture().bind();
-        block.begin(vp, materialAtlas.sScale(), materialAtlas.tScale());
 
         final float blockSize = 1f;
         frustumClippingPredicate.blockSize(blockSize);
         countingPredicate.reset();
 
+        meshes.upload(uploadKilobytes * 1024L / Quads.BYTES_PER_QUAD, uploadMillis * 1_000_000L);
+        quads.begin(vp, materialAtlas.sScale(), materialAtlas.tScale());
         world.visit(countingPredicate, new Visitor() {
 
             @Override
             public void visit(Leaf leaf) {
-                leaf.visit(data -> {
-                    float x0 = leaf.iorg() * blockSize;
-                    float y0 = leaf.jorg() * blockSize;
-                    float z0 = leaf.korg() * blockSize;
-                    int i = 0, j = 0, k = 0;
-                    float x = x0, y = y0, z = z0;
-                    for (int idx = 0; idx < data.length; idx++, i++, x += blockSize) {
-                        if (i > 15) {
-                            i = 0;
-                            j++;
-                            x = x0;
-                            y += blockSize;
-                        }
-                        if (j > 15) {
-                            j = 0;
-                            k++;
-                            y = y0;
-                            z += blockSize;
-                        }
-                        if (k > 15) {
-                            throw new IndexOutOfBoundsException(idx);
-                        }
+                if (!leaf.isEmpty()) {
+                    draw(meshes.get(leaf, neighbours), leaf.iorg(), leaf.jorg(), leaf.korg(), blockSize);
+                }
+            }
 
-                        Material material = materialAtlas.get(data[idx]);
-                        if (material != null) {
-                            block.draw(x, y, z, material.ds(), material.dt());
+            @Override
+            public void visit(UniformNode node) {
+                if (!materials.isVisible(node.value())) {
+                    return;
+                }
+                // Faces between cells of node are hidden, so only cells of outer shell have meshes
+                final int side = 1 << Leaf.SIDE_SHIFT, last = node.range() - side;
+                for (int k = 0; k <= last; k += side) {
+                    for (int j = 0; j <= last; j += side) {
+                        final int step = k == 0 || k == last || j == 0 || j == last ? side : Math.max(last, side);
+                        for (int i = 0; i <= last; i += step) {
+                            final int iorg = node.iorg() + i, jorg = node.jorg() + j, korg = node.korg() + k;
+                            draw(meshes.get(node, iorg, jorg, korg, neighbours), iorg, jorg, korg, blockSize);
                         }
                     }
-                });
+                }
             }
         });
+        quads.end();
+        meshes.endFrame();
 
-        block.end();
         materialAtlas.texture().unbind();
     }
 
+    private void draw(Quads.Mesh mesh, int iorg, int jorg, int korg, float blockSize) {
+        if (mesh != null) {
+            quads.draw(mesh, iorg * blockSize, jorg * blockSize, korg * blockSize);
+        }
+    }
+
     public String formatStats() {
-        return String.format("inst: %d, nrej: %d, npass: %d, lrej: %d, lpass: %d",
-                block.totalInstances(),
+        return String.format("quads: %d (%s), meshes: %d (built: %d), nrej: %d, npass: %d, lrej: %d, lpass: %d",
+                quads.totalQuads(),
+                strategy,
+                meshes.size(),
+                meshes.builds(),
                 countingPredicate.nodesRejected(),
                 countingPredicate.nodesPassed(),
                 countingPredicate.leafsRejected(),
-                countingPredicate.leafsPassed());
+                countingPredicate.leafsPassed())
+                + "\n" + meshing.formatStats();
     }
 }
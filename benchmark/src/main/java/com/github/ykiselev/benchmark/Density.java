@@ -0,0 +1,57 @@
+package com.github.ykiselev.benchmark;
+
+import com.github.ykiselev.spi.world.generation.CavesStage;
+import com.github.ykiselev.spi.world.generation.FloorStage;
+import com.github.ykiselev.spi.world.generation.HeightMapStage;
+import com.github.ykiselev.spi.world.generation.OreStage;
+import com.github.ykiselev.spi.world.generation.PerlinNoise;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+import java.util.List;
+
+/**
+ * Kinds of generated worlds, from mostly empty and uniform to mostly mixed leaves.
+ */
+public enum Density {
+
+    /**
+     * Flat floor 8 blocks thick, single layer of half-filled leaves.
+     */
+    FLAT {
+        @Override
+        WorldGenerator generator(long seed, int size) {
+            return new WorldGenerator(List.of(new FloorStage(8, 1)));
+        }
+    },
+    /**
+     * The default terrain (see {@link WorldGenerator#terrain(long)}).
+     */
+    TERRAIN {
+        @Override
+        WorldGenerator generator(long seed, int size) {
+            return WorldGenerator.terrain(seed);
+        }
+    },
+    /**
+     * Terrain filling half of world height with many caves and ores.
+     */
+    DENSE {
+        @Override
+        WorldGenerator generator(long seed, int size) {
+            return new WorldGenerator(
+                    List.of(
+                            new HeightMapStage(new PerlinNoise(seed), 1.0 / 128, size / 2, size / 4, 1),
+                            new CavesStage(new PerlinNoise(seed + 1), 1.0 / 16, 0.25),
+                            new OreStage(seed + 2, 2, 0.05, size)
+                    )
+            );
+        }
+    };
+
+    /**
+     * @param seed the seed
+     * @param size the world size
+     * @return the generator
+     */
+    abstract WorldGenerator generator(long seed, int size);
+}
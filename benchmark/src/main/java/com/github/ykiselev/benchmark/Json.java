@@ -0,0 +1,105 @@
+package com.github.ykiselev.benchmark;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON serializer for benchmark reports. Supports maps (keys are converted to strings), lists, strings,
+ * numbers, booleans and {@code null}. Non-finite numbers are written as {@code null}.
+ */
+public final class Json {
+
+    private static final String INDENT = "  ";
+
+    private Json() {
+    }
+
+    public static String write(Object value) {
+        final StringBuilder sb = new StringBuilder();
+        write(value, sb, 0);
+        return sb.toString();
+    }
+
+    private static void write(Object value, StringBuilder sb, int level) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Map<?, ?> map) {
+            writeMap(map, sb, level);
+        } else if (value instanceof List<?> list) {
+            writeList(list, sb, level);
+        } else if (value instanceof Double || value instanceof Float) {
+            final double v = ((Number) value).doubleValue();
+            sb.append(Double.isFinite(v) ? Double.toString(v) : "null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            quote(value.toString(), sb);
+        }
+    }
+
+    private static void writeMap(Map<?, ?> map, StringBuilder sb, int level) {
+        if (map.isEmpty()) {
+            sb.append("{}");
+            return;
+        }
+        sb.append('{');
+        final Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<?, ?> entry = it.next();
+            newLine(sb, level + 1);
+            quote(String.valueOf(entry.getKey()), sb);
+            sb.append(": ");
+            write(entry.getValue(), sb, level + 1);
+            if (it.hasNext()) {
+                sb.append(',');
+            }
+        }
+        newLine(sb, level);
+        sb.append('}');
+    }
+
+    private static void writeList(List<?> list, StringBuilder sb, int level) {
+        if (list.isEmpty()) {
+            sb.append("[]");
+            return;
+        }
+        sb.append('[');
+        for (int i = 0; i < list.size(); i++) {
+            newLine(sb, level + 1);
+            write(list.get(i), sb, level + 1);
+            if (i < list.size() - 1) {
+                sb.append(',');
+            }
+        }
+        newLine(sb, level);
+        sb.append(']');
+    }
+
+    private static void newLine(StringBuilder sb, int level) {
+        sb.append('\n');
+        sb.append(INDENT.repeat(level));
+    }
+
+    private static void quote(String value, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.ykiselev.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+/**
+ * Result of single measured operation.
+ *
+ * @param nanos     the elapsed time
+ * @param allocated the number of bytes allocated by calling thread (allocations of other threads are not counted)
+ * @param peakHeap  the sum of peak usages of heap memory pools
+ */
+public record Measurement(long nanos, long allocated, long peakHeap) {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final List<MemoryPoolMXBean> HEAP = ManagementFactory.getMemoryPoolMXBeans()
+            .stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+    /**
+     * Runs operation once. Garbage is collected beforehand so peak heap usage mostly reflects live data and
+     * allocations of the operation.
+     *
+     * @param operation the operation to measure
+     * @return the measurement
+     */
+    public static Measurement of(Runnable operation) {
+        System.gc();
+        HEAP.forEach(MemoryPoolMXBean::resetPeakUsage);
+        final long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        final long t0 = System.nanoTime();
+        operation.run();
+        final long nanos = System.nanoTime() - t0;
+        return new Measurement(
+                nanos,
+                THREADS.getCurrentThreadAllocatedBytes() - allocated,
+                HEAP.stream()
+                        .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                        .sum()
+        );
+    }
+
+    public double seconds() {
+        return nanos / 1e9;
+    }
+
+    /**
+     * @return the allocation rate in bytes per second
+     */
+    public double allocationRate() {
+        return allocated / seconds();
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.ykiselev.benchmark;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.NodePredicate;
+import com.github.ykiselev.spi.world.UniformNode;
+import com.github.ykiselev.spi.world.Visitor;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.file.WorldFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures save and load of {@link WorldFile} on generated worlds of several sizes and densities using both
+ * containers. Runs without window or GPU against temporary folder. Each combination is run once to warm up and then
+ * {@code passes} times, the pass with median time is reported. Throughput is given in terms of uncompressed leaf data
+ * (as if every leaf was stored raw) and in leaves per second. Report is written as JSON to file or to standard output.
+ * <p>
+ * Usage: {@code PersistenceBenchmark [--sizes 256,512] [--densities FLAT,TERRAIN,DENSE] [--passes 5] [--seed 1]
+ * [--out report.json]}, e.g. {@code mvn -pl benchmark -am install -DskipTests} followed by
+ * {@code mvn -pl benchmark exec:java -Dexec.mainClass=com.github.ykiselev.benchmark.PersistenceBenchmark}.
+ */
+public final class PersistenceBenchmark {
+
+    private static final String NAME = "bench";
+
+    private List<Integer> sizes = List.of(256, 512);
+
+    private List<Density> densities = List.of(Density.values());
+
+    private int passes = 5;
+
+    private long seed = 1;
+
+    private Path out;
+
+    public static void main(String[] args) throws IOException {
+        final PersistenceBenchmark benchmark = new PersistenceBenchmark().init(args);
+        final String report = Json.write(benchmark.run());
+        if (benchmark.out != null) {
+            Files.writeString(benchmark.out, report, StandardCharsets.UTF_8);
+        } else {
+            System.out.println(report);
+        }
+    }
+
+    private PersistenceBenchmark init(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            }
+            final String value = args[i + 1];
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.stream(value.split(","))
+                        .map(Integer::valueOf)
+                        .toList();
+                case "--densities" -> densities = Arrays.stream(value.split(","))
+                        .map(Density::valueOf)
+                        .toList();
+                case "--passes" -> passes = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (passes < 1) {
+            throw new IllegalArgumentException("Bad number of passes: " + passes);
+        }
+        return this;
+    }
+
+    private Map<String, Object> run() {
+        final List<Object> results = new ArrayList<>();
+        for (int size : sizes) {
+            for (Density density : densities) {
+                final World world = density.generator(seed, size)
+                        .generate(DefaultNodeFactory.palette(), size);
+                for (WorldFile.Container container : WorldFile.Container.values()) {
+                    System.err.printf("size: %d, density: %s, container: %s%n", size, density, container);
+                    final Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("size", size);
+                    result.put("density", density);
+                    result.put("container", container);
+                    result.putAll(measure(world, container));
+                    results.add(result);
+                }
+            }
+        }
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("benchmark", "world-persistence");
+        report.put("timestamp", Instant.now());
+        report.put("java", System.getProperty("java.version"));
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("maxHeap", Runtime.getRuntime().maxMemory());
+        report.put("passes", passes);
+        report.put("seed", seed);
+        report.put("results", results);
+        return report;
+    }
+
+    private Map<String, Object> measure(World world, WorldFile.Container container) {
+        final long[] nodes = new long[2];
+        world.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                nodes[0]++;
+            }
+
+            @Override
+            public void visit(UniformNode node) {
+                nodes[1]++;
+            }
+        });
+        final long leaves = nodes[0], raw = leaves * WorldFile.LEAF_CHUNK_SIZE;
+        final WorldFile worldFile = new WorldFile(container);
+        final List<Measurement> saves = new ArrayList<>(), loads = new ArrayList<>();
+        final long fileSize;
+        try (TempFileSystem fileSystem = TempFileSystem.create()) {
+            for (int pass = 0; pass <= passes; pass++) {
+                final Measurement save = Measurement.of(() -> worldFile.save(fileSystem, world, NAME));
+                final Measurement load = Measurement.of(() -> worldFile.load(fileSystem, NAME, DefaultNodeFactory.palette()));
+                // first pass is a warm-up
+                if (pass > 0) {
+                    saves.add(save);
+                    loads.add(load);
+                }
+            }
+            // see WorldFile.Container
+            fileSize = fileSystem.size(container == WorldFile.Container.PLAIN
+                    ? "universe/" + NAME + ".world" : "universe/" + NAME);
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("leaves", leaves);
+        result.put("uniformNodes", nodes[1]);
+        result.put("rawBytes", raw);
+        result.put("fileBytes", fileSize);
+        result.put("save", toMap(median(saves), raw, leaves));
+        result.put("load", toMap(median(loads), raw, leaves));
+        return result;
+    }
+
+    private static Measurement median(List<Measurement> measurements) {
+        final List<Measurement> sorted = new ArrayList<>(measurements);
+        sorted.sort(Comparator.comparingLong(Measurement::nanos));
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static Map<String, Object> toMap(Measurement m, long raw, long leaves) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("millis", m.nanos() / 1e6);
+        result.put("megabytesPerSecond", raw / 1e6 / m.seconds());
+        result.put("leavesPerSecond", leaves / m.seconds());
+        result.put("peakHeapBytes", m.peakHeap());
+        result.put("allocatedBytes", m.allocated());
+        result.put("allocationRate", m.allocationRate());
+        return result;
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.ykiselev.benchmark;
+
+import com.github.ykiselev.spi.services.FileSystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * File system stand-in backed by temporary folder. Archives are mapped as zip file systems (like the application
+ * does) so archive container is measured with the same overhead. Folder is deleted on {@link #close()}.
+ */
+public final class TempFileSystem implements FileSystem {
+
+    private final Path root;
+
+    private final java.nio.file.FileSystem archive;
+
+    private TempFileSystem(Path root, java.nio.file.FileSystem archive) {
+        this.root = root;
+        this.archive = archive;
+    }
+
+    public static TempFileSystem create() {
+        try {
+            return new TempFileSystem(Files.createTempDirectory("benchmark"), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path resolve(String name) {
+        return archive != null ? archive.getPath(name) : root.resolve(name);
+    }
+
+    /**
+     * @return the size of file or archive
+     */
+    public long size(String name) {
+        try {
+            return Files.size(resolve(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public FileChannel open(String name, OpenOption... options) {
+        final Path path = resolve(name);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            return FileChannel.open(path, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void replace(String source, String target) {
+        try {
+            Files.move(resolve(source), resolve(target), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public FileSystem mapArchive(String archiveName, boolean create, boolean readOnly) {
+        final Path path = resolve(archiveName);
+        try {
+            Files.createDirectories(path.getParent());
+            return new TempFileSystem(root,
+                    FileSystems.newFileSystem(path, Map.of("create", Boolean.toString(create))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Optional<ReadableByteChannel> open(String resource) {
+        return Files.exists(resolve(resource))
+                ? Optional.of(open(resource, StandardOpenOption.READ))
+                : Optional.empty();
+    }
+
+    @Override
+    public Stream<ReadableByteChannel> openAll(String resource) {
+        return open(resource).stream();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (archive != null) {
+                archive.close();
+                return;
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * @author Yuriy Kiselev (uze@yandex.ru).
+ */
+module ykiselev.playground.benchmark {
+    requires java.management;
+    requires jdk.management;
+    requires ykiselev.playground.spi;
+
+    exports com.github.ykiselev.benchmark;
+}
@@ -0,0 +1,41 @@
+package com.github.ykiselev.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JsonTest {
+
+    @Test
+    public void shouldWriteNestedValues() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "a \"b\"\n");
+        map.put("values", List.of(1, 2.5, true));
+        map.put("empty", List.of());
+        map.put("nan", Double.NaN);
+        map.put("none", null);
+        assertEquals("""
+                        {
+                          "name": "a \\"b\\"\\n",
+                          "values": [
+                            1,
+                            2.5,
+                            true
+                          ],
+                          "empty": [],
+                          "nan": null,
+                          "none": null
+                        }""",
+                Json.write(map));
+    }
+
+    @Test
+    public void shouldEscapeControlCharacters() {
+        assertEquals("[\n  \"\\u0001\\t\"\n]", Json.write(Arrays.asList("\u0001\t")));
+    }
+}
@@ -4,6 +4,7 @@ import com.github.ykiselev.spi.world.Leaf;
 import com.github.ykiselev.spi.world.Node;
 import com.github.ykiselev.spi.world.NodePredicate;
 import com.github.ykiselev.spi.world.NormalNode;
+import com.github.ykiselev.spi.world.UniformNode;
 
 import java.util.Objects;
 
@@ -43,4 +44,9 @@ public final class FrustumClippingPredicate implements NodePredicate {
     public boolean test(Leaf leaf) {
         return intersects(leaf);
     }
+
+    @Override
+    public boolean test(UniformNode node) {
+        return intersects(node);
+    }
 }
@@ -42,6 +42,15 @@ public interface FileSystem extends Resources, AutoCloseable {
      */
     FileSystem mapArchive(String archiveName, boolean create, boolean readOnly);
 
+    /**
+     * Replaces target file with source file. Where supported replacement is atomic, so target is either left intact
+     * or fully replaced even if process is interrupted.
+     *
+     * @param source the name of file to move, resolved like name of writable file
+     * @param target the name of file to replace
+     */
+    void replace(String source, String target);
+
     default FileChannel append(String name) {
         return open(name, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
     }
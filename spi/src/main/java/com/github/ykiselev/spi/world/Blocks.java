@@ -0,0 +1,65 @@
+package com.github.ykiselev.spi.world;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Storage of leaf's block values. Blocks are addressed by linear index {@code i + (j << 4) + (k << 8)} where i, j and k
+ * are relative to leaf's origin.
+ */
+public interface Blocks {
+
+    /**
+     * Number of blocks in single leaf.
+     */
+    int SIZE = 1 << (3 * Leaf.SIDE_SHIFT);
+
+    int get(int index);
+
+    void put(int index, int value);
+
+    /**
+     * Sets all blocks to the same value.
+     *
+     * @param value the value to set
+     */
+    void fill(int value);
+
+    /**
+     * Sets blocks in range of linear indices to the same value.
+     *
+     * @param from  the first index (inclusive)
+     * @param to    the last index (exclusive)
+     * @param value the value to set
+     */
+    void fill(int from, int to, int value);
+
+    /**
+     * @return {@code true} if all blocks have the same value
+     */
+    boolean isUniform();
+
+    /**
+     * Replaces all blocks with next {@link #SIZE} bytes from supplied buffer.
+     *
+     * @param src the source buffer
+     */
+    void copyFrom(ByteBuffer src);
+
+    /**
+     * Passes blocks as array of {@link #SIZE} bytes to supplied consumer. Array should be treated as read-only.
+     *
+     * @param consumer the consumer
+     */
+    void visit(Consumer<byte[]> consumer);
+
+    /**
+     * @return new storage with the same content
+     */
+    Blocks copy();
+
+    /**
+     * @return estimated heap size occupied by this storage
+     */
+    int sizeInBytes();
+}
@@ -0,0 +1,70 @@
+package com.github.ykiselev.spi.world;
+
+/**
+ * Axis-aligned box of block indices. Lower bounds are inclusive, upper bounds are exclusive.
+ */
+public record Box(int i0, int j0, int k0, int i1, int j1, int k1) {
+
+    public Box {
+        if (i1 < i0 || j1 < j0 || k1 < k0) {
+            throw new IllegalArgumentException("Bad box: " + i0 + "," + j0 + "," + k0 + " - " + i1 + "," + j1 + "," + k1);
+        }
+    }
+
+    public static Box of(Node node) {
+        final int range = node.range();
+        return new Box(node.iorg(), node.jorg(), node.korg(),
+                node.iorg() + range, node.jorg() + range, node.korg() + range);
+    }
+
+    public boolean isEmpty() {
+        return i0 == i1 || j0 == j1 || k0 == k1;
+    }
+
+    public long volume() {
+        return (long) (i1 - i0) * (j1 - j0) * (k1 - k0);
+    }
+
+    public boolean contains(int i, int j, int k) {
+        return i >= i0 && i < i1 && j >= j0 && j < j1 && k >= k0 && k < k1;
+    }
+
+    /**
+     * @param iorg  the i origin index of cube
+     * @param jorg  the j origin index of cube
+     * @param korg  the k origin index of cube
+     * @param range the side of cube
+     * @return {@code true} if cube is completely inside this box
+     */
+    public boolean contains(int iorg, int jorg, int korg, int range) {
+        return iorg >= i0 && iorg + range <= i1
+                && jorg >= j0 && jorg + range <= j1
+                && korg >= k0 && korg + range <= k1;
+    }
+
+    /**
+     * @param iorg  the i origin index of cube
+     * @param jorg  the j origin index of cube
+     * @param korg  the k origin index of cube
+     * @param range the side of cube
+     * @return {@code true} if cube and this box have common blocks
+     */
+    public boolean intersects(int iorg, int jorg, int korg, int range) {
+        return iorg < i1 && iorg + range > i0
+                && jorg < j1 && jorg + range > j0
+                && korg < k1 && korg + range > k0;
+    }
+
+    public boolean intersects(Box other) {
+        return other.i0 < i1 && other.i1 > i0
+                && other.j0 < j1 && other.j1 > j0
+                && other.k0 < k1 && other.k1 > k0;
+    }
+
+    /**
+     * @return this box moved by supplied offsets
+     */
+    public Box translate(int di, int dj, int dk) {
+        return new Box(i0 + di, j0 + dj, k0 + dk, i1 + di, j1 + dj, k1 + dk);
+    }
+}
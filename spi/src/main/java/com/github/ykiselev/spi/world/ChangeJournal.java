@@ -0,0 +1,147 @@
+package com.github.ykiselev.spi.world;
+
+/**
+ * Bounded journal of modified leaf origins. Each consumer (renderer, saver, network replication) reads journal through
+ * its own {@link Cursor}. Journal is a ring buffer, so consumer which is too slow loses oldest records and is notified
+ * about that on next {@link Cursor#drain(Origins)} (it should then treat the whole world as modified).
+ * <p>
+ * Leaf is recorded on first modification after the last record of this leaf was read by any consumer, so repeated
+ * modifications between drains do not flood the journal. Journal is thread-safe.
+ */
+public final class ChangeJournal {
+
+    /**
+     * Number of bits per packed origin component (in leaf units).
+     */
+    private static final int BITS = 21;
+
+    private static final long MASK = (1L << BITS) - 1;
+
+    private final long[] entries;
+
+    /**
+     * Total number of records ever made, guarded by {@code this}.
+     */
+    private long head;
+
+    /**
+     * Maximum position read by any consumer.
+     */
+    private volatile long watermark;
+
+    @FunctionalInterface
+    public interface Origins {
+
+        /**
+         * @param iorg the leaf i origin index
+         * @param jorg the leaf j origin index
+         * @param korg the leaf k origin index
+         */
+        void accept(int iorg, int jorg, int korg);
+    }
+
+    /**
+     * @param capacity the maximum number of records kept for consumers
+     */
+    public ChangeJournal(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Bad capacity: " + capacity);
+        }
+        this.entries = new long[capacity];
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    long watermark() {
+        return watermark;
+    }
+
+    /**
+     * Records modification of leaf unless its previous record is not read by any consumer yet.
+     *
+     * @param last the position of previous record of this leaf (or negative value if there is no one)
+     * @return the position of leaf record
+     */
+    synchronized long record(int iorg, int jorg, int korg, long last) {
+        if (last >= watermark) {
+            return last;
+        }
+        return record(iorg, jorg, korg);
+    }
+
+    /**
+     * Records modification of leaf cell with supplied origin (which may not have leaf at all after modification).
+     *
+     * @return the position of record
+     */
+    synchronized long record(int iorg, int jorg, int korg) {
+        entries[(int) (head % entries.length)] = (iorg >>> Leaf.SIDE_SHIFT)
+                | ((long) (jorg >>> Leaf.SIDE_SHIFT) << BITS)
+                | ((long) (korg >>> Leaf.SIDE_SHIFT) << (2 * BITS));
+        return head++;
+    }
+
+    /**
+     * @return new cursor which will see modifications made after this call
+     */
+    public synchronized Cursor cursor() {
+        // records made so far are never passed to new cursor, so leaves should be recorded again on next modification
+        if (head > watermark) {
+            watermark = head;
+        }
+        return new Cursor(head);
+    }
+
+    /**
+     * Consumer's position in journal. Cursor is not thread-safe.
+     */
+    public final class Cursor {
+
+        private long position;
+
+        private long[] scratch = new long[0];
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Passes origins of leaves modified since previous call to supplied consumer (the same leaf may be passed more
+         * than once). Consumer is called outside of journal lock so it may safely modify world.
+         *
+         * @param consumer the consumer of leaf origins
+         * @return {@code false} if some records were lost due to journal overflow
+         */
+        public boolean drain(Origins consumer) {
+            final long from, to;
+            final boolean complete;
+            synchronized (ChangeJournal.this) {
+                to = head;
+                complete = to - position <= entries.length;
+                from = complete ? position : to - entries.length;
+                final int count = (int) (to - from);
+                if (scratch.length < count) {
+                    scratch = new long[Math.max(count, 2 * scratch.length)];
+                }
+                for (int n = 0; n < count; n++) {
+                    scratch[n] = entries[(int) ((from + n) % entries.length)];
+                }
+                position = to;
+                if (to > watermark) {
+                    watermark = to;
+                }
+            }
+            for (int n = 0, count = (int) (to - from); n < count; n++) {
+                final long entry = scratch[n];
+                consumer.accept(
+                        (int) (entry & MASK) << Leaf.SIDE_SHIFT,
+                        (int) ((entry >>> BITS) & MASK) << Leaf.SIDE_SHIFT,
+                        (int) ((entry >>> (2 * BITS)) & MASK) << Leaf.SIDE_SHIFT
+                );
+            }
+            return complete;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.ykiselev.spi.world;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Node factory which turns world into directed acyclic graph of nodes during {@link World#compact()}: leaves with
+ * identical content share single storage instance found through content-hash intern table. Shared storage is copied
+ * by leaf on first modification.
+ * <p>
+ * Note that only leaf storage is shared. Nodes themselves hold absolute origin indices (used by visitors) so identical
+ * subtrees at different positions are still distinct objects, but they are small compared to leaf storage and uniform
+ * subtrees are collapsed by compaction anyway.
+ * <p>
+ * Intern table refers storage weakly, so storage no longer used by any leaf is released. Factory is thread-safe.
+ */
+public final class DagNodeFactory implements NodeFactory {
+
+    private final NodeFactory delegate;
+
+    private final Map<Content, Content> table = new HashMap<>();
+
+    private final ReferenceQueue<Blocks> released = new ReferenceQueue<>();
+
+    public DagNodeFactory(NodeFactory delegate) {
+        this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    public DagNodeFactory() {
+        this(new DefaultNodeFactory());
+    }
+
+    @Override
+    public Node create(int iorg, int jorg, int korg, int rangeShift) {
+        return delegate.create(iorg, jorg, korg, rangeShift);
+    }
+
+    @Override
+    public synchronized void intern(Leaf leaf) {
+        expunge();
+        final Blocks blocks = leaf.blocks();
+        final Content content = new Content(blocks, released);
+        final Content existing = table.putIfAbsent(content, content);
+        final Blocks shared = existing != null ? existing.get() : null;
+        // Even the first instance becomes shared as leaf may not modify it in place anymore
+        leaf.share(shared != null ? shared : blocks);
+    }
+
+    /**
+     * @return number of distinct leaf contents in intern table
+     */
+    public synchronized int distinct() {
+        expunge();
+        return table.size();
+    }
+
+    /**
+     * Drops intern table. Already shared storage is still copied on modification.
+     */
+    public synchronized void clear() {
+        table.clear();
+        expunge();
+    }
+
+    private void expunge() {
+        Object ref;
+        while ((ref = released.poll()) != null) {
+            table.remove(ref);
+        }
+    }
+
+    /**
+     * Intern table key referring storage weakly. Hash of content is calculated once, cleared key is equal only to
+     * itself.
+     */
+    private static final class Content extends WeakReference<Blocks> {
+
+        private final int hash;
+
+        Content(Blocks blocks, ReferenceQueue<Blocks> queue) {
+            super(blocks, queue);
+            final int[] result = new int[1];
+            blocks.visit(data -> result[0] = Arrays.hashCode(data));
+            this.hash = result[0];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Content other) || hash != other.hash) {
+                return false;
+            }
+            final Blocks a = get(), b = other.get();
+            if (a == null || b == null) {
+                return false;
+            }
+            for (int i = 0; i < Blocks.SIZE; i++) {
+                if (a.get(i) != b.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,11 +1,34 @@
 package com.github.ykiselev.spi.world;
 
+import java.util.Objects;
+import java.util.function.Supplier;
+
 public final class DefaultNodeFactory implements NodeFactory {
 
+    private final Supplier<? extends Blocks> blocks;
+
+    /**
+     * @param blocks the supplier of leaf block storage
+     */
+    public DefaultNodeFactory(Supplier<? extends Blocks> blocks) {
+        this.blocks = Objects.requireNonNull(blocks);
+    }
+
+    public DefaultNodeFactory() {
+        this(DenseBlocks::new);
+    }
+
+    /**
+     * @return factory creating leaves with palette-compressed storage
+     */
+    public static DefaultNodeFactory palette() {
+        return new DefaultNodeFactory(PaletteBlocks::new);
+    }
+
     @Override
     public Node create(int iorg, int jorg, int korg, int rangeShift) {
         if (rangeShift == Leaf.SIDE_SHIFT) {
-            return new Leaf()
+            return new Leaf(blocks.get())
                     .init(iorg, jorg, korg);
         } else if (rangeShift < Leaf.SIDE_SHIFT) {
             throw new IllegalArgumentException("Bad range shift: " + rangeShift);
@@ -0,0 +1,66 @@
+package com.github.ykiselev.spi.world;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Plain storage with one byte per block.
+ */
+public final class DenseBlocks implements Blocks {
+
+    private final byte[] blocks = new byte[SIZE];
+
+    @Override
+    public int get(int index) {
+        return blocks[index];
+    }
+
+    @Override
+    public void put(int index, int value) {
+        blocks[index] = (byte) value;
+    }
+
+    @Override
+    public void fill(int value) {
+        Arrays.fill(blocks, (byte) value);
+    }
+
+    @Override
+    public void fill(int from, int to, int value) {
+        Arrays.fill(blocks, from, to, (byte) value);
+    }
+
+    @Override
+    public boolean isUniform() {
+        final byte first = blocks[0];
+        for (byte b : blocks) {
+            if (b != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void copyFrom(ByteBuffer src) {
+        src.get(blocks);
+    }
+
+    @Override
+    public void visit(Consumer<byte[]> consumer) {
+        consumer.accept(blocks);
+    }
+
+    @Override
+    public Blocks copy() {
+        final DenseBlocks result = new DenseBlocks();
+        System.arraycopy(blocks, 0, result.blocks, 0, SIZE);
+        return result;
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return 16 + 16 + SIZE;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.ykiselev.spi.world;
+
+/**
+ * Face of block identified by its outward normal.
+ */
+public enum Face {
+
+    I_NEG(-1, 0, 0), I_POS(1, 0, 0),
+    J_NEG(0, -1, 0), J_POS(0, 1, 0),
+    K_NEG(0, 0, -1), K_POS(0, 0, 1);
+
+    private static final Face[] VALUES = values();
+
+    private final int di, dj, dk;
+
+    Face(int di, int dj, int dk) {
+        this.di = di;
+        this.dj = dj;
+        this.dk = dk;
+    }
+
+    public int di() {
+        return di;
+    }
+
+    public int dj() {
+        return dj;
+    }
+
+    public int dk() {
+        return dk;
+    }
+
+    /**
+     * @param axis     the axis (0 - i, 1 - j, 2 - k)
+     * @param positive the direction of normal
+     * @return the face
+     */
+    public static Face of(int axis, boolean positive) {
+        return VALUES[2 * axis + (positive ? 1 : 0)];
+    }
+}
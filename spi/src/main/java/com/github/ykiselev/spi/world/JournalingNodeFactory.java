@@ -0,0 +1,32 @@
+package com.github.ykiselev.spi.world;
+
+import java.util.Objects;
+
+/**
+ * Attaches change journal to each leaf created by delegate factory.
+ */
+final class JournalingNodeFactory implements NodeFactory {
+
+    private final NodeFactory delegate;
+
+    private final ChangeJournal journal;
+
+    JournalingNodeFactory(NodeFactory delegate, ChangeJournal journal) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.journal = Objects.requireNonNull(journal);
+    }
+
+    @Override
+    public Node create(int iorg, int jorg, int korg, int rangeShift) {
+        final Node node = delegate.create(iorg, jorg, korg, rangeShift);
+        if (node instanceof Leaf leaf) {
+            leaf.journal(journal);
+        }
+        return node;
+    }
+
+    @Override
+    public void intern(Leaf leaf) {
+        delegate.intern(leaf);
+    }
+}
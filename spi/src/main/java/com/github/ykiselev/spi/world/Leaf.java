@@ -1,22 +1,148 @@
 package com.github.ykiselev.spi.world;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 public final class Leaf extends AbstractNode {
 
     public static final int SIDE_SHIFT = 4;
 
-    private final byte[] blocks = new byte[1 << (3 * SIDE_SHIFT)];
+    private Blocks blocks;
+
+    /**
+     * Flag indicating that {@link #blocks} may be referenced by other leaves and should be copied before modification.
+     */
+    private boolean shared;
+
+    /**
+     * Number of non-zero blocks.
+     */
+    private int solid;
+
+    /**
+     * Bit {@code i + (j << SIDE_SHIFT)} is set if column {@code (i, j)} has at least one non-zero block.
+     */
+    private final long[] columns = new long[(1 << (2 * SIDE_SHIFT)) / Long.SIZE];
+
+    /**
+     * Incremented on each modification of blocks.
+     */
+    private int version;
+
+    private ChangeJournal journal;
+
+    /**
+     * Position of the last record of this leaf in {@link #journal}.
+     */
+    private long journaled = -1;
+
+    public Leaf(Blocks blocks) {
+        this.blocks = Objects.requireNonNull(blocks);
+        recount();
+    }
+
+    public Leaf() {
+        this(new DenseBlocks());
+    }
+
+    private Leaf(Leaf leaf) {
+        this.iorg = leaf.iorg;
+        this.jorg = leaf.jorg;
+        this.korg = leaf.korg;
+        this.blocks = leaf.blocks;
+        this.shared = true;
+        this.solid = leaf.solid;
+        System.arraycopy(leaf.columns, 0, columns, 0, columns.length);
+        this.version = leaf.version;
+    }
 
     public Leaf init(int iorg, int jorg, int korg) {
         this.iorg = iorg;
         this.jorg = jorg;
         this.korg = korg;
-        Arrays.fill(blocks, (byte) 0);
+        fill(0);
         return this;
     }
 
+    Blocks blocks() {
+        return blocks;
+    }
+
+    /**
+     * Replaces storage of this leaf with supplied one which is shared with other leaves and so will be copied on first
+     * modification.
+     *
+     * @param blocks the shared storage with the same content as current one
+     */
+    void share(Blocks blocks) {
+        this.blocks = Objects.requireNonNull(blocks);
+        this.shared = true;
+    }
+
+    /**
+     * Creates copy of this leaf sharing storage with it. Storage is copied on first modification of either leaf, so
+     * until then copy is as cheap as pointer and may be read by other threads while this leaf is modified. Copy is
+     * not attached to journal.
+     *
+     * @return the copy of this leaf
+     */
+    public Leaf snapshot() {
+        shared = true;
+        return new Leaf(this);
+    }
+
+    /**
+     * @param journal the journal to record modifications of this leaf to
+     */
+    void journal(ChangeJournal journal) {
+        this.journal = journal;
+        this.journaled = -1;
+    }
+
+    /**
+     * @return the number of modifications made to this leaf (wraps on overflow)
+     */
+    public int version() {
+        return version;
+    }
+
+    private void changed() {
+        version++;
+        final ChangeJournal j = journal;
+        if (j != null && journaled < j.watermark()) {
+            journaled = j.record(iorg, jorg, korg, journaled);
+        }
+    }
+
+    /**
+     * Recalculates occupancy summaries after bulk modification.
+     */
+    private void recount() {
+        blocks.visit(data -> {
+            final int mask = (1 << (2 * SIDE_SHIFT)) - 1;
+            int count = 0;
+            Arrays.fill(columns, 0);
+            for (int index = 0; index < data.length; index++) {
+                if (data[index] != 0) {
+                    count++;
+                    final int column = index & mask;
+                    columns[column >> 6] |= 1L << column;
+                }
+            }
+            solid = count;
+        });
+    }
+
+    private Blocks writable() {
+        if (shared) {
+            blocks = blocks.copy();
+            shared = false;
+        }
+        return blocks;
+    }
+
     @Override
     public int range() {
         return 1 << SIDE_SHIFT;
@@ -30,7 +156,7 @@ public final class Leaf extends AbstractNode {
 
     @Override
     public int get(int i, int j, int k) {
-        return blocks[index(i, j, k)];
+        return blocks.get(index(i, j, k));
     }
 
     @Override
@@ -40,7 +166,85 @@ public final class Leaf extends AbstractNode {
 
     @Override
     public void put(int i, int j, int k, int value, NodeFactory factory) {
-        blocks[index(i, j, k)] = (byte) value;
+        final int index = index(i, j, k);
+        final Blocks target = writable();
+        final int previous = target.get(index);
+        if (previous == (byte) value) {
+            return;
+        }
+        target.put(index, value);
+        changed();
+        if ((previous == 0) == (value == 0)) {
+            return;
+        }
+        final int column = index & ((1 << (2 * SIDE_SHIFT)) - 1);
+        if (value != 0) {
+            solid++;
+            columns[column >> 6] |= 1L << column;
+        } else {
+            solid--;
+            for (int n = column; n < Blocks.SIZE; n += 1 << (2 * SIDE_SHIFT)) {
+                if (target.get(n) != 0) {
+                    return;
+                }
+            }
+            columns[column >> 6] &= ~(1L << column);
+        }
+    }
+
+    @Override
+    public void fill(Box box, int value, NodeFactory factory) {
+        final int range = range();
+        final int i0 = Math.max(box.i0(), iorg) - iorg, i1 = Math.min(box.i1(), iorg + range) - iorg;
+        final int j0 = Math.max(box.j0(), jorg) - jorg, j1 = Math.min(box.j1(), jorg + range) - jorg;
+        final int k0 = Math.max(box.k0(), korg) - korg, k1 = Math.min(box.k1(), korg + range) - korg;
+        if (i0 >= i1 || j0 >= j1 || k0 >= k1) {
+            return;
+        }
+        final Blocks target = writable();
+        if (i0 == 0 && i1 == range) {
+            if (j0 == 0 && j1 == range) {
+                // whole planes
+                target.fill(k0 << (2 * SIDE_SHIFT), k1 << (2 * SIDE_SHIFT), value);
+            } else {
+                // whole rows
+                for (int k = k0; k < k1; k++) {
+                    final int base = k << (2 * SIDE_SHIFT);
+                    target.fill(base + (j0 << SIDE_SHIFT), base + (j1 << SIDE_SHIFT), value);
+                }
+            }
+        } else {
+            for (int k = k0; k < k1; k++) {
+                for (int j = j0; j < j1; j++) {
+                    final int base = (k << (2 * SIDE_SHIFT)) + (j << SIDE_SHIFT);
+                    target.fill(base + i0, base + i1, value);
+                }
+            }
+        }
+        recount();
+        changed();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return solid == 0;
+    }
+
+    /**
+     * @return number of non-zero blocks
+     */
+    public int solid() {
+        return solid;
+    }
+
+    /**
+     * @param i the i index relative to leaf origin
+     * @param j the j index relative to leaf origin
+     * @return {@code true} if all blocks with supplied i and j indices are zero
+     */
+    public boolean isColumnEmpty(int i, int j) {
+        final int column = i + (j << SIDE_SHIFT);
+        return (columns[column >> 6] & (1L << column)) == 0;
     }
 
     @Override
@@ -50,6 +254,16 @@ public final class Leaf extends AbstractNode {
         }
     }
 
+    @Override
+    public Node compact(NodeFactory factory) {
+        if (blocks.isUniform()) {
+            return new UniformNode()
+                    .init(iorg, jorg, korg, SIDE_SHIFT, blocks.get(0));
+        }
+        factory.intern(this);
+        return this;
+    }
+
     @Override
     public String toString() {
         return "Leaf{" +
@@ -59,7 +273,43 @@ public final class Leaf extends AbstractNode {
                 '}';
     }
 
+    /**
+     * Passes leaf blocks to supplied consumer. Depending on storage it may be a temporary copy so consumer should not
+     * modify supplied array. Use {@link #copyFrom(ByteBuffer)} or {@link #put(int, int, int, int, NodeFactory)} instead.
+     *
+     * @param consumer the consumer of blocks
+     */
     public void visit(Consumer<byte[]> consumer) {
-        consumer.accept(blocks);
+        blocks.visit(consumer);
+    }
+
+    /**
+     * Sets all blocks of this leaf to the same value.
+     *
+     * @param value the value to set
+     */
+    public void fill(int value) {
+        writable().fill(value);
+        solid = value != 0 ? Blocks.SIZE : 0;
+        Arrays.fill(columns, value != 0 ? -1L : 0);
+        changed();
+    }
+
+    /**
+     * Replaces all blocks of this leaf with next {@link Blocks#SIZE} bytes from supplied buffer.
+     *
+     * @param src the source buffer
+     */
+    public void copyFrom(ByteBuffer src) {
+        writable().copyFrom(src);
+        recount();
+        changed();
+    }
+
+    /**
+     * @return estimated heap size occupied by this leaf
+     */
+    public int sizeInBytes() {
+        return 16 + 12 + 8 + 4 + 8 + 16 + columns.length * 8 + 4 + 8 + 8 + blocks.sizeInBytes();
     }
 }
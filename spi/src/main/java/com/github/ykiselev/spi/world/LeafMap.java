@@ -0,0 +1,412 @@
+package com.github.ykiselev.spi.world;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Alternative to tree of {@link NormalNode}'s: single node storing all leaves in flat open-addressing hash table keyed
+ * by Morton code of leaf origin. Leaf lookup takes one hash probe instead of walking down the tree. Stored nodes are
+ * either {@link Leaf}'s or leaf-sized {@link UniformNode}'s.
+ * <p>
+ * Visiting is done in Z-order (over sorted snapshot of keys, rebuilt only after set of nodes has changed). Box-limited
+ * visiting ({@link #visit(Box, NodePredicate, Visitor)}) decomposes box into aligned cubes each of which occupies
+ * continuous interval of Morton codes.
+ * <p>
+ * Lookups are lock-free, insertions and replacements of nodes are synchronized, so world may be filled concurrently
+ * (as {@link com.github.ykiselev.spi.world.generation.WorldGenerator} does). Removed nodes leave tombstones which are
+ * purged by {@link #compact(NodeFactory)}.
+ */
+public final class LeafMap extends AbstractNode {
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final VarHandle NODES = MethodHandles.arrayElementVarHandle(Node[].class);
+
+    private static final long EMPTY = -1L;
+
+    private static final int MIN_CAPACITY = 64;
+
+    private int rangeShift;
+
+    private volatile Table table;
+
+    /**
+     * Number of occupied slots (including tombstones), guarded by {@code this}.
+     */
+    private int used;
+
+    /**
+     * Nodes sorted by Morton code or {@code null} if set of nodes has changed since last visit.
+     */
+    private volatile Entries entries;
+
+    /**
+     * @param iorg       i origin index
+     * @param jorg       j origin index
+     * @param korg       k origin index
+     * @param rangeShift index range for this node is 1 << rangeShift
+     */
+    public LeafMap init(int iorg, int jorg, int korg, int rangeShift) {
+        if (rangeShift - Leaf.SIDE_SHIFT > Morton.BITS) {
+            throw new IllegalArgumentException("Range shift is too big: " + rangeShift);
+        }
+        this.iorg = iorg;
+        this.jorg = jorg;
+        this.korg = korg;
+        this.rangeShift = rangeShift;
+        this.table = new Table(MIN_CAPACITY);
+        this.used = 0;
+        this.entries = null;
+        return this;
+    }
+
+    @Override
+    public int range() {
+        return 1 << rangeShift;
+    }
+
+    /**
+     * @return number of stored nodes
+     */
+    public int size() {
+        return entries().keys.length;
+    }
+
+    private long key(int i, int j, int k) {
+        return Morton.encode(
+                (i - iorg) >> Leaf.SIDE_SHIFT,
+                (j - jorg) >> Leaf.SIDE_SHIFT,
+                (k - korg) >> Leaf.SIDE_SHIFT
+        );
+    }
+
+    private Node find(long key) {
+        final Table t = table;
+        final int slot = t.slot(key);
+        return (long) KEYS.getAcquire(t.keys, slot) == key
+                ? (Node) NODES.getAcquire(t.nodes, slot)
+                : null;
+    }
+
+    /**
+     * @return stored leaf or uniform node containing supplied indices or {@code null}
+     */
+    Node node(int i, int j, int k) {
+        return find(key(i, j, k));
+    }
+
+    /**
+     * Stores node under supplied key, {@code null} node leaves tombstone.
+     */
+    private synchronized void store(long key, Node node) {
+        Table t = table;
+        int slot = t.slot(key);
+        if (t.keys[slot] != key) {
+            if (node == null) {
+                return;
+            }
+            if (2 * (used + 1) > t.keys.length) {
+                t = rehash(t.keys.length * 2);
+                slot = t.slot(key);
+            }
+            NODES.setRelease(t.nodes, slot, node);
+            KEYS.setRelease(t.keys, slot, key);
+            used++;
+        } else {
+            NODES.setRelease(t.nodes, slot, node);
+        }
+        entries = null;
+    }
+
+    /**
+     * Copies live nodes to new table with at least supplied capacity (or smaller one if there are many tombstones).
+     */
+    private Table rehash(int capacity) {
+        final Table old = table;
+        int live = 0;
+        for (Node node : old.nodes) {
+            if (node != null) {
+                live++;
+            }
+        }
+        final Table result = new Table(
+                Math.max(MIN_CAPACITY, Math.min(capacity, Integer.highestOneBit(Math.max(1, live * 4 - 1)) << 1))
+        );
+        for (int s = 0; s < old.keys.length; s++) {
+            final Node node = old.nodes[s];
+            if (node != null) {
+                final int slot = result.slot(old.keys[s]);
+                result.keys[slot] = old.keys[s];
+                result.nodes[slot] = node;
+            }
+        }
+        used = live;
+        table = result;
+        return result;
+    }
+
+    /**
+     * Creates missing leaf or splits uniform node.
+     */
+    private synchronized Leaf materialize(int i, int j, int k, NodeFactory factory) {
+        final long key = key(i, j, k);
+        final Node existing = find(key);
+        if (existing instanceof Leaf leaf) {
+            return leaf;
+        }
+        final int mask = -(1 << Leaf.SIDE_SHIFT);
+        final Node created = existing instanceof UniformNode uniform
+                ? uniform.split(factory)
+                : factory.create(i & mask, j & mask, k & mask, Leaf.SIDE_SHIFT);
+        if (!(created instanceof Leaf leaf)) {
+            throw new IllegalStateException("Expected leaf but got " + created);
+        }
+        store(key, leaf);
+        return leaf;
+    }
+
+    @Override
+    public int get(int i, int j, int k) {
+        final Node node = find(key(i, j, k));
+        return node != null
+                ? node.get(i, j, k)
+                : 0;
+    }
+
+    @Override
+    public Leaf leafForIndices(int i, int j, int k, NodeFactory factory) {
+        final Node node = find(key(i, j, k));
+        if (node instanceof Leaf leaf) {
+            return leaf;
+        }
+        return factory != null
+                ? materialize(i, j, k, factory)
+                : null;
+    }
+
+    @Override
+    public void put(int i, int j, int k, int value, NodeFactory factory) {
+        final Node node = find(key(i, j, k));
+        if (node instanceof Leaf leaf) {
+            leaf.put(i, j, k, value, factory);
+        } else if (node != null ? node.get(i, j, k) != value : value != 0) {
+            materialize(i, j, k, factory)
+                    .put(i, j, k, value, factory);
+        }
+    }
+
+    @Override
+    public void fill(Box box, int value, NodeFactory factory) {
+        final int range = range(), mask = -(1 << Leaf.SIDE_SHIFT), leafRange = 1 << Leaf.SIDE_SHIFT;
+        final int i0 = Math.max(box.i0(), iorg), j0 = Math.max(box.j0(), jorg), k0 = Math.max(box.k0(), korg);
+        final int i1 = Math.min(box.i1(), iorg + range), j1 = Math.min(box.j1(), jorg + range),
+                k1 = Math.min(box.k1(), korg + range);
+        for (int ck = k0 & mask; ck < k1; ck += leafRange) {
+            for (int cj = j0 & mask; cj < j1; cj += leafRange) {
+                for (int ci = i0 & mask; ci < i1; ci += leafRange) {
+                    final long key = key(ci, cj, ck);
+                    final Node node = find(key);
+                    if (node == null ? value == 0 : node instanceof UniformNode u && u.value() == value) {
+                        continue;
+                    }
+                    if (box.contains(ci, cj, ck, leafRange)) {
+                        store(key, value != 0
+                                ? new UniformNode().init(ci, cj, ck, Leaf.SIDE_SHIFT, value)
+                                : null);
+                    } else {
+                        materialize(ci, cj, ck, factory)
+                                .fill(box, value, factory);
+                    }
+                }
+            }
+        }
+    }
+
+    private Entries entries() {
+        Entries result = entries;
+        if (result == null) {
+            synchronized (this) {
+                result = entries;
+                if (result == null) {
+                    final Table t = table;
+                    long[] keys = new long[t.keys.length];
+                    int count = 0;
+                    for (int s = 0; s < t.keys.length; s++) {
+                        if (t.nodes[s] != null) {
+                            keys[count++] = t.keys[s];
+                        }
+                    }
+                    keys = Arrays.copyOf(keys, count);
+                    Arrays.sort(keys);
+                    final Node[] nodes = new Node[count];
+                    for (int n = 0; n < count; n++) {
+                        nodes[n] = find(keys[n]);
+                    }
+                    result = new Entries(keys, nodes);
+                    entries = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visits all non-empty stored nodes in Z-order.
+     */
+    @Override
+    public void visit(NodePredicate predicate, Visitor visitor) {
+        final Entries e = entries();
+        visit(e, 0, e.keys.length, predicate, visitor);
+    }
+
+    private static void visit(Entries e, int from, int to, NodePredicate predicate, Visitor visitor) {
+        for (int n = from; n < to; n++) {
+            final Node node = e.nodes[n];
+            if (!node.isEmpty()) {
+                predicate.beforeChild();
+                node.visit(predicate, visitor);
+                predicate.afterChild();
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Node node : entries().nodes) {
+            if (!node.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visits non-empty stored nodes intersecting supplied box in Z-order.
+     *
+     * @param box       the box
+     * @param predicate the predicate
+     * @param visitor   the visitor
+     */
+    public void visit(Box box, NodePredicate predicate, Visitor visitor) {
+        // box in leaf units relative to origin
+        final int range = range(), round = (1 << Leaf.SIDE_SHIFT) - 1;
+        final int i0 = Math.max(box.i0() - iorg, 0) >> Leaf.SIDE_SHIFT;
+        final int j0 = Math.max(box.j0() - jorg, 0) >> Leaf.SIDE_SHIFT;
+        final int k0 = Math.max(box.k0() - korg, 0) >> Leaf.SIDE_SHIFT;
+        final int i1 = (Math.min(box.i1() - iorg, range) + round) >> Leaf.SIDE_SHIFT;
+        final int j1 = (Math.min(box.j1() - jorg, range) + round) >> Leaf.SIDE_SHIFT;
+        final int k1 = (Math.min(box.k1() - korg, range) + round) >> Leaf.SIDE_SHIFT;
+        if (box.isEmpty() || i0 >= i1 || j0 >= j1 || k0 >= k1) {
+            return;
+        }
+        new RangeVisit(entries(), new Box(i0, j0, k0, i1, j1, k1), predicate, visitor)
+                .visit(0, 0, 0, 0, range >> Leaf.SIDE_SHIFT);
+    }
+
+    @Override
+    public Node compact(NodeFactory factory) {
+        synchronized (this) {
+            final Table t = table;
+            for (int s = 0; s < t.nodes.length; s++) {
+                final Node node = t.nodes[s];
+                if (node != null) {
+                    final Node compacted = node.compact(factory);
+                    t.nodes[s] = compacted instanceof UniformNode uniform && uniform.value() == 0
+                            ? null
+                            : compacted;
+                }
+            }
+            rehash(t.keys.length);
+            entries = null;
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "LeafMap{" +
+                "iorg=" + iorg +
+                ", jorg=" + jorg +
+                ", korg=" + korg +
+                ", rangeShift=" + rangeShift +
+                '}';
+    }
+
+    private static final class Table {
+
+        final long[] keys;
+
+        final Node[] nodes;
+
+        final int shift;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            nodes = new Node[capacity];
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        /**
+         * @return slot holding supplied key or first empty slot in probe sequence
+         */
+        int slot(long key) {
+            final int mask = keys.length - 1;
+            for (int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift); ; slot = (slot + 1) & mask) {
+                final long k = (long) KEYS.getAcquire(keys, slot);
+                if (k == key || k == EMPTY) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    private record Entries(long[] keys, Node[] nodes) {
+
+        /**
+         * @return index of first key which is not less than supplied one
+         */
+        int lowerBound(long key) {
+            final int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    /**
+     * Recursive decomposition of box (in leaf units) into aligned cubes of Morton space.
+     */
+    private record RangeVisit(Entries entries, Box cells, NodePredicate predicate, Visitor visitor) {
+
+        /**
+         * @param code the Morton code of cube's first cell
+         * @param ci   the cube i origin
+         * @param cj   the cube j origin
+         * @param ck   the cube k origin
+         * @param side the cube side
+         */
+        void visit(long code, int ci, int cj, int ck, int side) {
+            if (!cells.intersects(ci, cj, ck, side)) {
+                return;
+            }
+            final int from = entries.lowerBound(code);
+            final long end = code + (long) side * side * side;
+            if (from == entries.keys().length || entries.keys()[from] >= end) {
+                return;
+            }
+            if (cells.contains(ci, cj, ck, side)) {
+                LeafMap.visit(entries, from, entries.lowerBound(end), predicate, visitor);
+                return;
+            }
+            final int half = side >> 1;
+            final long step = (long) half * half * half;
+            for (int c = 0; c < 8; c++) {
+                visit(code + c * step,
+                        ci + (c & 1) * half,
+                        cj + ((c >> 1) & 1) * half,
+                        ck + ((c >> 2) & 1) * half,
+                        half);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.ykiselev.spi.world;
+
+import java.util.Objects;
+
+/**
+ * Node factory which creates flat {@link LeafMap} for any node larger than leaf (in practice - only for root node of
+ * {@link World}). Leaves are created and interned by delegate factory.
+ */
+public final class LeafMapNodeFactory implements NodeFactory {
+
+    private final NodeFactory delegate;
+
+    /**
+     * @param delegate the factory to create and intern leaves
+     */
+    public LeafMapNodeFactory(NodeFactory delegate) {
+        this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    public LeafMapNodeFactory() {
+        this(new DefaultNodeFactory());
+    }
+
+    @Override
+    public Node create(int iorg, int jorg, int korg, int rangeShift) {
+        if (rangeShift > Leaf.SIDE_SHIFT) {
+            return new LeafMap()
+                    .init(iorg, jorg, korg, rangeShift);
+        }
+        return delegate.create(iorg, jorg, korg, rangeShift);
+    }
+
+    @Override
+    public void intern(Leaf leaf) {
+        delegate.intern(leaf);
+    }
+}
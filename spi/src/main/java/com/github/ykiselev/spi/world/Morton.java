@@ -0,0 +1,58 @@
+package com.github.ykiselev.spi.world;
+
+/**
+ * Morton (Z-order) codes of 3d cells. Code interleaves bits of cell indices (i goes to lowest bit), so cells close in
+ * space tend to have close codes and each aligned cube of {@code 2^n} cells occupies continuous code interval.
+ */
+public final class Morton {
+
+    /**
+     * Maximum number of bits per index.
+     */
+    public static final int BITS = 21;
+
+    private Morton() {
+    }
+
+    /**
+     * @param i the i index (only lowest {@link #BITS} bits are used)
+     * @param j the j index
+     * @param k the k index
+     * @return the Morton code
+     */
+    public static long encode(int i, int j, int k) {
+        return spread(i) | (spread(j) << 1) | (spread(k) << 2);
+    }
+
+    public static int i(long code) {
+        return compact(code);
+    }
+
+    public static int j(long code) {
+        return compact(code >>> 1);
+    }
+
+    public static int k(long code) {
+        return compact(code >>> 2);
+    }
+
+    private static long spread(int value) {
+        long x = value & 0x1fffffL;
+        x = (x | x << 32) & 0x1f00000000ffffL;
+        x = (x | x << 16) & 0x1f0000ff0000ffL;
+        x = (x | x << 8) & 0x100f00f00f00f00fL;
+        x = (x | x << 4) & 0x10c30c30c30c30c3L;
+        x = (x | x << 2) & 0x1249249249249249L;
+        return x;
+    }
+
+    private static int compact(long code) {
+        long x = code & 0x1249249249249249L;
+        x = (x | x >>> 2) & 0x10c30c30c30c30c3L;
+        x = (x | x >>> 4) & 0x100f00f00f00f00fL;
+        x = (x | x >>> 8) & 0x1f0000ff0000ffL;
+        x = (x | x >>> 16) & 0x1f00000000ffffL;
+        x = (x | x >>> 32) & 0x1fffffL;
+        return (int) x;
+    }
+}
@@ -20,6 +20,36 @@ public interface Node {
 
     void put(int i, int j, int k, int value, NodeFactory factory);
 
+    /**
+     * Sets all blocks inside of intersection of this node and supplied box to the same value.
+     *
+     * @param box     the box to fill
+     * @param value   the value to set
+     * @param factory the node factory
+     */
+    void fill(Box box, int value, NodeFactory factory);
+
+    /**
+     * Visits this node and its non-empty descendants.
+     *
+     * @param predicate the predicate to prune visited subtrees
+     * @param visitor   the visitor
+     */
     void visit(NodePredicate predicate, Visitor visitor);
 
+    /**
+     * Checks occupancy summary of this node without touching block data.
+     *
+     * @return {@code true} if all blocks of this node are zero
+     */
+    boolean isEmpty();
+
+    /**
+     * Collapses parts of this node which have the same value for all blocks into {@link UniformNode}'s.
+     *
+     * @param factory the node factory
+     * @return the node to replace this node with in parent (may be {@code this})
+     */
+    Node compact(NodeFactory factory);
+
 }
@@ -1,5 +1,10 @@
 package com.github.ykiselev.spi.world;
 
+/**
+ * Creates nodes of the world tree. Implementation used by {@link com.github.ykiselev.spi.world.file.WorldFile} with
+ * several load workers is called concurrently, so it must be thread-safe. {@link DefaultNodeFactory},
+ * {@link LeafMapNodeFactory} and {@link DagNodeFactory} are.
+ */
 public interface NodeFactory {
 
     /**
@@ -10,4 +15,13 @@ public interface NodeFactory {
      * @return created node
      */
     Node create(int iorg, int jorg, int korg, int rangeShift);
+
+    /**
+     * Called for each non-uniform leaf during compaction. Implementation may replace leaf's storage with the shared
+     * one having the same content.
+     *
+     * @param leaf the leaf
+     */
+    default void intern(Leaf leaf) {
+    }
 }
@@ -13,6 +13,10 @@ public interface NodePredicate {
         return true;
     }
 
+    default boolean test(UniformNode node) {
+        return true;
+    }
+
     default void beforeChild() {
 
     }
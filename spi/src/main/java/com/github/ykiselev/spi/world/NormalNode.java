@@ -1,11 +1,25 @@
 package com.github.ykiselev.spi.world;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Arrays;
 
 public final class NormalNode extends AbstractNode {
 
     private static final int SIDE_SHIFT = 1;
 
+    private static final VarHandle CHILDREN = MethodHandles.arrayElementVarHandle(Node[].class);
+
+    private static final VarHandle OCCUPANCY;
+
+    static {
+        try {
+            OCCUPANCY = MethodHandles.lookup().findVarHandle(NormalNode.class, "occupancy", int.class);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new Error(e);
+        }
+    }
+
     /**
      * Child node index range is 1 << childShift
      */
@@ -13,6 +27,12 @@ public final class NormalNode extends AbstractNode {
 
     private final Node[] children = new Node[1 << (3 * SIDE_SHIFT)];
 
+    /**
+     * Bit {@code n} is set if child {@code n} may have non-zero blocks. Cleared bit means that child is either missing
+     * or empty.
+     */
+    private int occupancy;
+
     /**
      * @param iorg       i origin index
      * @param jorg       j origin index
@@ -25,6 +45,7 @@ public final class NormalNode extends AbstractNode {
         this.korg = korg;
         this.childRangeShift = Integer.numberOfTrailingZeros(1 << (rangeShift - SIDE_SHIFT));
         Arrays.fill(children, null);
+        this.occupancy = 0;
         return this;
     }
 
@@ -48,31 +69,181 @@ public final class NormalNode extends AbstractNode {
                 : 0;
     }
 
+    /**
+     * Leaf requested with factory is expected to be written directly, so all nodes on the path to it are marked as
+     * occupied.
+     */
     @Override
     public Leaf leafForIndices(int i, int j, int k, NodeFactory factory) {
         final Node child = getChild(i, j, k, factory);
-        return child != null
-                ? child.leafForIndices(i, j, k, factory)
-                : null;
+        if (child == null) {
+            return null;
+        }
+        if (factory != null) {
+            markOccupied(i, j, k);
+        }
+        return child.leafForIndices(i, j, k, factory);
     }
 
-    private Node getChild(int i, int j, int k, NodeFactory factory) {
+    /**
+     * Returns child node containing specified indices. If factory is supplied then missing child is created and
+     * uniform child is split. Creation and splitting are done with CAS so concurrent callers always get the same child.
+     */
+    Node getChild(int i, int j, int k, NodeFactory factory) {
         final int index = index(i, j, k);
-        final Node child;
-        if (children[index] == null && factory != null) {
-            final int mask = -(1 << childRangeShift);
-            child = factory.create(i & mask, j & mask, k & mask, childRangeShift);
-            children[index] = child;
-        } else {
-            child = children[index];
+        if (factory == null) {
+            return children[index];
         }
-        return child;
+        for (; ; ) {
+            final Node child = (Node) CHILDREN.getAcquire(children, index);
+            final Node created;
+            if (child == null) {
+                final int mask = -(1 << childRangeShift);
+                created = factory.create(i & mask, j & mask, k & mask, childRangeShift);
+            } else if (child instanceof UniformNode uniform) {
+                created = uniform.split(factory);
+            } else {
+                return child;
+            }
+            final Node witness = (Node) CHILDREN.compareAndExchange(children, index, child, created);
+            if (witness == child) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if all blocks of supplied child node have the specified value
+     */
+    private static boolean isUniform(Node child, int value) {
+        return child == null
+                ? value == 0
+                : child instanceof UniformNode uniform && uniform.value() == value;
+    }
+
+    /**
+     * Updates occupancy bit of modified child.
+     *
+     * @param index the child index
+     * @param child the child
+     * @param value the value which was written to child
+     */
+    private void updateOccupancy(int index, Node child, int value) {
+        final int bit = 1 << index;
+        if (value != 0) {
+            markOccupied(index);
+        } else if ((occupancy & bit) != 0 && (child == null || child.isEmpty())) {
+            OCCUPANCY.getAndBitwiseAnd(this, ~bit);
+        }
+    }
+
+    private void markOccupied(int index) {
+        final int bit = 1 << index;
+        if ((occupancy & bit) == 0) {
+            OCCUPANCY.getAndBitwiseOr(this, bit);
+        }
+    }
+
+    /**
+     * Marks child containing supplied indices as possibly non-empty.
+     */
+    void markOccupied(int i, int j, int k) {
+        markOccupied(index(i, j, k));
     }
 
     @Override
     public void put(int i, int j, int k, int value, NodeFactory factory) {
-        getChild(i, j, k, factory)
-                .put(i, j, k, value, factory);
+        final int index = index(i, j, k);
+        if (isUniform(children[index], value)) {
+            return;
+        }
+        final Node child = getChild(i, j, k, factory);
+        child.put(i, j, k, value, factory);
+        updateOccupancy(index, child, value);
+    }
+
+    @Override
+    public void fill(Box box, int value, NodeFactory factory) {
+        final int childRange = 1 << childRangeShift;
+        for (int index = 0; index < children.length; index++) {
+            final int ci = iorg + (index & 1) * childRange;
+            final int cj = jorg + ((index >> SIDE_SHIFT) & 1) * childRange;
+            final int ck = korg + ((index >> (2 * SIDE_SHIFT)) & 1) * childRange;
+            if (!box.intersects(ci, cj, ck, childRange)) {
+                continue;
+            }
+            if (box.contains(ci, cj, ck, childRange)) {
+                final Node child = value != 0
+                        ? new UniformNode().init(ci, cj, ck, childRangeShift, value)
+                        : null;
+                children[index] = child;
+                updateOccupancy(index, child, value);
+            } else if (!isUniform(children[index], value)) {
+                final Node child = getChild(ci, cj, ck, factory);
+                child.fill(box, value, factory);
+                updateOccupancy(index, child, value);
+            }
+        }
+    }
+
+    /**
+     * Replaces all children with uniform nodes having supplied value. Zero value means no children at all.
+     *
+     * @param value the value of all blocks
+     */
+    void fill(int value) {
+        if (value == 0) {
+            Arrays.fill(children, null);
+            occupancy = 0;
+            return;
+        }
+        occupancy = (1 << children.length) - 1;
+        final int childRange = 1 << childRangeShift;
+        for (int index = 0; index < children.length; index++) {
+            children[index] = new UniformNode().init(
+                    iorg + (index & 1) * childRange,
+                    jorg + ((index >> SIDE_SHIFT) & 1) * childRange,
+                    korg + ((index >> (2 * SIDE_SHIFT)) & 1) * childRange,
+                    childRangeShift,
+                    value
+            );
+        }
+    }
+
+    @Override
+    public Node compact(NodeFactory factory) {
+        int mask = 0;
+        for (int index = 0; index < children.length; index++) {
+            final Node child = children[index];
+            if (child != null) {
+                final Node compacted = child.compact(factory);
+                if (compacted.isEmpty()) {
+                    children[index] = null;
+                } else {
+                    children[index] = compacted;
+                    mask |= 1 << index;
+                }
+            }
+        }
+        occupancy = mask;
+        final Node first = children[0];
+        if (first == null) {
+            for (Node child : children) {
+                if (child != null) {
+                    return this;
+                }
+            }
+            return new UniformNode().init(iorg, jorg, korg, childRangeShift + SIDE_SHIFT, 0);
+        }
+        if (first instanceof UniformNode uniform) {
+            for (Node child : children) {
+                if (!(child instanceof UniformNode u) || u.value() != uniform.value()) {
+                    return this;
+                }
+            }
+            return new UniformNode().init(iorg, jorg, korg, childRangeShift + SIDE_SHIFT, uniform.value());
+        }
+        return this;
     }
 
     @Override
@@ -83,8 +254,9 @@ public final class NormalNode extends AbstractNode {
 
         visitor.visit(this);
 
-        for (Node child : children) {
-            if (child != null) {
+        for (int mask = occupancy; mask != 0; mask &= mask - 1) {
+            final Node child = children[Integer.numberOfTrailingZeros(mask)];
+            if (child != null && !child.isEmpty()) {
                 predicate.beforeChild();
                 child.visit(predicate, visitor);
                 predicate.afterChild();
@@ -92,6 +264,11 @@ public final class NormalNode extends AbstractNode {
         }
     }
 
+    @Override
+    public boolean isEmpty() {
+        return occupancy == 0;
+    }
+
     @Override
     public String toString() {
         return "NormalNode{" +
@@ -0,0 +1,192 @@
+package com.github.ykiselev.spi.world;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Palette-compressed storage. Each block is stored as 0, 1, 2, 4 or 8-bit index into small per-leaf palette of
+ * distinct values. Index width grows automatically on {@link #put(int, int)} when palette overflows. With 8-bit
+ * indices palette is not used anymore and indices are the block values themselves.
+ */
+public final class PaletteBlocks implements Blocks {
+
+    private static final int MAX_BITS = 8;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SIZE]);
+
+    private final byte[] palette = new byte[1 << (MAX_BITS >> 1)];
+
+    private int paletteSize = 1;
+
+    /**
+     * Number of bits per block (0, 1, 2, 4 or 8).
+     */
+    private int bits;
+
+    private long[] words;
+
+    public int bits() {
+        return bits;
+    }
+
+    private int index(int index) {
+        final int bitIndex = index * bits;
+        return (int) (words[bitIndex >>> 6] >>> (bitIndex & 63)) & ((1 << bits) - 1);
+    }
+
+    private void index(int index, int value) {
+        final int bitIndex = index * bits;
+        final int shift = bitIndex & 63;
+        final long mask = ((1L << bits) - 1) << shift;
+        final int w = bitIndex >>> 6;
+        words[w] = (words[w] & ~mask) | (((long) value << shift) & mask);
+    }
+
+    @Override
+    public int get(int index) {
+        if (bits == 0) {
+            return palette[0];
+        }
+        final int idx = index(index);
+        return bits == MAX_BITS ? (byte) idx : palette[idx];
+    }
+
+    private int find(byte value) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void put(int index, int value) {
+        final byte v = (byte) value;
+        if (bits == MAX_BITS) {
+            index(index, v & 0xff);
+            return;
+        }
+        int idx = find(v);
+        if (idx < 0) {
+            if (paletteSize == 1 << bits) {
+                widen();
+                if (bits == MAX_BITS) {
+                    index(index, v & 0xff);
+                    return;
+                }
+            }
+            idx = paletteSize;
+            palette[paletteSize++] = v;
+        }
+        if (bits > 0) {
+            index(index, idx);
+        }
+    }
+
+    private void widen() {
+        final int newBits = bits == 0 ? 1 : bits << 1;
+        final long[] newWords = new long[(SIZE * newBits) >>> 6];
+        final int mask = (1 << newBits) - 1;
+        for (int i = 0; i < SIZE; i++) {
+            final int value = newBits == MAX_BITS
+                    ? get(i) & 0xff
+                    : bits == 0 ? 0 : index(i);
+            final int bitIndex = i * newBits;
+            newWords[bitIndex >>> 6] |= (long) (value & mask) << (bitIndex & 63);
+        }
+        bits = newBits;
+        words = newWords;
+    }
+
+    @Override
+    public void fill(int value) {
+        palette[0] = (byte) value;
+        paletteSize = 1;
+        bits = 0;
+        words = null;
+    }
+
+    @Override
+    public void fill(int from, int to, int value) {
+        if (from == 0 && to == SIZE) {
+            fill(value);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            put(i, value);
+        }
+    }
+
+    @Override
+    public boolean isUniform() {
+        if (bits == 0) {
+            return true;
+        }
+        final int first = get(0);
+        for (int i = 1; i < SIZE; i++) {
+            if (get(i) != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void copyFrom(ByteBuffer src) {
+        final byte[] scratch = SCRATCH.get();
+        src.get(scratch);
+        copyFrom(scratch);
+    }
+
+    private void copyFrom(byte[] values) {
+        final boolean[] seen = new boolean[256];
+        int distinct = 0;
+        for (byte value : values) {
+            if (!seen[value & 0xff]) {
+                seen[value & 0xff] = true;
+                if (distinct < palette.length) {
+                    palette[distinct] = value;
+                }
+                distinct++;
+            }
+        }
+        int newBits = 0;
+        while ((1 << newBits) < distinct) {
+            newBits = newBits == 0 ? 1 : newBits << 1;
+        }
+        bits = newBits;
+        words = bits > 0 ? new long[(SIZE * bits) >>> 6] : null;
+        paletteSize = Math.min(distinct, palette.length);
+        if (bits == 0) {
+            return;
+        }
+        for (int i = 0; i < SIZE; i++) {
+            index(i, bits == MAX_BITS ? values[i] & 0xff : find(values[i]));
+        }
+    }
+
+    @Override
+    public void visit(Consumer<byte[]> consumer) {
+        final byte[] scratch = SCRATCH.get();
+        for (int i = 0; i < SIZE; i++) {
+            scratch[i] = (byte) get(i);
+        }
+        consumer.accept(scratch);
+    }
+
+    @Override
+    public Blocks copy() {
+        final PaletteBlocks result = new PaletteBlocks();
+        System.arraycopy(palette, 0, result.palette, 0, palette.length);
+        result.paletteSize = paletteSize;
+        result.bits = bits;
+        result.words = words != null ? words.clone() : null;
+        return result;
+    }
+
+    @Override
+    public int sizeInBytes() {
+        return 16 + 4 + 4 + 8 + 16 + palette.length + (words != null ? 16 + 8 * words.length : 0);
+    }
+}
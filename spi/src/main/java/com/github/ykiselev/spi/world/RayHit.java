@@ -0,0 +1,14 @@
+package com.github.ykiselev.spi.world;
+
+/**
+ * Result of tracing ray through the world (see {@code World#raycast}).
+ *
+ * @param i        the i index of hit block
+ * @param j        the j index of hit block
+ * @param k        the k index of hit block
+ * @param value    the value of hit block
+ * @param face     the face of hit block through which ray has entered it or {@code null} if ray started inside of block
+ * @param distance the distance from ray origin to the hit point
+ */
+public record RayHit(int i, int j, int k, int value, Face face, float distance) {
+}
@@ -0,0 +1,166 @@
+package com.github.ykiselev.spi.world;
+
+/**
+ * Ray traversal with 3d DDA (Amanatides & Woo) operating on cells of variable size: missing and empty subtrees,
+ * empty leaves and empty leaf columns are crossed in one step each, only non-empty parts of leaves are traversed
+ * block by block. Each step costs one descent from root so open space is crossed in {@code O(log n)} per empty
+ * region.
+ */
+final class Raycast {
+
+    private final Node root;
+
+    private final double[] o = new double[3], d = new double[3];
+
+    private final int[] v = new int[3];
+
+    /**
+     * Current cell bounds (upper bounds are exclusive).
+     */
+    private final int[] c0 = new int[3], c1 = new int[3];
+
+    Raycast(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @return hit or {@code null} if there is no non-zero block within supplied distance
+     */
+    RayHit trace(double ox, double oy, double oz, double dx, double dy, double dz, double maxDistance) {
+        final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0) {
+            throw new IllegalArgumentException("Zero direction!");
+        }
+        o[0] = ox;
+        o[1] = oy;
+        o[2] = oz;
+        d[0] = dx / length;
+        d[1] = dy / length;
+        d[2] = dz / length;
+
+        // Clip ray by world bounds
+        final int range = root.range();
+        final int[] lo = {root.iorg(), root.jorg(), root.korg()};
+        double t = 0, end = maxDistance;
+        Face face = null;
+        for (int a = 0; a < 3; a++) {
+            if (d[a] == 0) {
+                if (o[a] < lo[a] || o[a] >= lo[a] + range) {
+                    return null;
+                }
+                continue;
+            }
+            final double t1 = (lo[a] - o[a]) / d[a], t2 = (lo[a] + range - o[a]) / d[a];
+            final double near = Math.min(t1, t2);
+            if (near > t) {
+                t = near;
+                face = Face.of(a, d[a] < 0);
+            }
+            end = Math.min(end, Math.max(t1, t2));
+        }
+        if (t > end) {
+            return null;
+        }
+        for (int a = 0; a < 3; a++) {
+            v[a] = clamp((int) Math.floor(o[a] + d[a] * t), lo[a], lo[a] + range - 1);
+        }
+
+        for (; ; ) {
+            final int value = probe(v[0], v[1], v[2]);
+            if (value != 0) {
+                return new RayHit(v[0], v[1], v[2], value, face, (float) t);
+            }
+            // exit from current cell
+            double exit = Double.POSITIVE_INFINITY;
+            int axis = -1;
+            for (int a = 0; a < 3; a++) {
+                if (d[a] != 0) {
+                    final double te = ((d[a] > 0 ? c1[a] : c0[a]) - o[a]) / d[a];
+                    if (te < exit) {
+                        exit = te;
+                        axis = a;
+                    }
+                }
+            }
+            t = Math.max(t, exit);
+            if (t > end) {
+                return null;
+            }
+            for (int a = 0; a < 3; a++) {
+                if (a == axis) {
+                    v[a] = d[a] > 0 ? c1[a] : c0[a] - 1;
+                } else {
+                    v[a] = clamp((int) Math.floor(o[a] + d[a] * t), c0[a], c1[a] - 1);
+                }
+            }
+            if (v[axis] < lo[axis] || v[axis] >= lo[axis] + range) {
+                return null;
+            }
+            face = Face.of(axis, d[axis] < 0);
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private void cell(int i, int j, int k, int si, int sj, int sk) {
+        c0[0] = i;
+        c0[1] = j;
+        c0[2] = k;
+        c1[0] = i + si;
+        c1[1] = j + sj;
+        c1[2] = k + sk;
+    }
+
+    private void cell(Node node) {
+        final int range = node.range();
+        cell(node.iorg(), node.jorg(), node.korg(), range, range, range);
+    }
+
+    /**
+     * Finds the largest known empty cell containing supplied block.
+     *
+     * @return the value of block or 0 if block is empty (in this case cell bounds are set)
+     */
+    private int probe(int i, int j, int k) {
+        Node node = root;
+        for (; ; ) {
+            final Node child;
+            if (node instanceof NormalNode normal) {
+                child = normal.getChild(i, j, k, null);
+            } else if (node instanceof LeafMap map) {
+                child = map.node(i, j, k);
+            } else {
+                break;
+            }
+            if (child == null) {
+                // nodes are aligned to their range
+                final int range = node instanceof NormalNode
+                        ? node.range() >> 1
+                        : 1 << Leaf.SIDE_SHIFT;
+                final int mask = -range;
+                cell(i & mask, j & mask, k & mask, range, range, range);
+                return 0;
+            }
+            node = child;
+        }
+        if (node.isEmpty()) {
+            cell(node);
+            return 0;
+        }
+        if (node instanceof UniformNode uniform) {
+            return uniform.value();
+        }
+        final Leaf leaf = (Leaf) node;
+        final int value = leaf.get(i, j, k);
+        if (value == 0) {
+            if (leaf.isColumnEmpty(i - leaf.iorg(), j - leaf.jorg())) {
+                cell(i, j, leaf.korg(), 1, 1, leaf.range());
+            } else {
+                cell(i, j, k, 1, 1, 1);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.ykiselev.spi.world;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Residency of world regions. Region is a cube of {@code 1 << shift} blocks aligned to its size and is identified by
+ * Morton key of its origin in region units. Storage loading world by parts marks regions as loaded, regions which are
+ * not marked were either never loaded or evicted (see {@link World#unload(long)}). Thread-safe.
+ */
+public final class Regions {
+
+    private final int shift;
+
+    private final Set<Long> loaded = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param shift region range is 1 << shift
+     */
+    public Regions(int shift) {
+        this.shift = shift;
+    }
+
+    public int shift() {
+        return shift;
+    }
+
+    /**
+     * @return the key of region containing supplied block indices
+     */
+    public long key(int i, int j, int k) {
+        return Morton.encode(i >> shift, j >> shift, k >> shift);
+    }
+
+    /**
+     * @return the box covered by region
+     */
+    public Box box(long key) {
+        final int i = Morton.i(key) << shift, j = Morton.j(key) << shift, k = Morton.k(key) << shift;
+        final int range = 1 << shift;
+        return new Box(i, j, k, i + range, j + range, k + range);
+    }
+
+    public boolean isLoaded(long key) {
+        return loaded.contains(key);
+    }
+
+    /**
+     * @return {@code true} if region was not marked as loaded before
+     */
+    public boolean markLoaded(long key) {
+        return loaded.add(key);
+    }
+
+    /**
+     * @return {@code true} if region was marked as loaded before
+     */
+    public boolean markUnloaded(long key) {
+        return loaded.remove(key);
+    }
+
+    /**
+     * @return the keys of loaded regions in ascending order
+     */
+    public long[] loaded() {
+        return loaded.stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.ykiselev.spi.world;
+
+/**
+ * Node with all blocks having the same value. Such node has no children and answers {@link #get(int, int, int)} in
+ * constant time. Parent node replaces it with materialized subtree (see {@link #split(NodeFactory)}) on first
+ * {@code put} of different value.
+ */
+public final class UniformNode extends AbstractNode {
+
+    private int rangeShift;
+
+    private int value;
+
+    /**
+     * @param iorg       i origin index
+     * @param jorg       j origin index
+     * @param korg       k origin index
+     * @param rangeShift index range for this node is 1 << rangeShift
+     * @param value      the value of all blocks
+     */
+    public UniformNode init(int iorg, int jorg, int korg, int rangeShift, int value) {
+        this.iorg = iorg;
+        this.jorg = jorg;
+        this.korg = korg;
+        this.rangeShift = rangeShift;
+        this.value = value;
+        return this;
+    }
+
+    public int value() {
+        return value;
+    }
+
+    public int rangeShift() {
+        return rangeShift;
+    }
+
+    @Override
+    public int range() {
+        return 1 << rangeShift;
+    }
+
+    @Override
+    public int get(int i, int j, int k) {
+        return value;
+    }
+
+    /**
+     * Uniform node has no leaves. Parent node is expected to split this node if leaf is required.
+     *
+     * @return always {@code null}
+     */
+    @Override
+    public Leaf leafForIndices(int i, int j, int k, NodeFactory factory) {
+        return null;
+    }
+
+    @Override
+    public void put(int i, int j, int k, int value, NodeFactory factory) {
+        if (value != this.value) {
+            throw new IllegalStateException("Uniform node should be split by parent first!");
+        }
+    }
+
+    @Override
+    public void fill(Box box, int value, NodeFactory factory) {
+        put(iorg, jorg, korg, value, factory);
+    }
+
+    @Override
+    public void visit(NodePredicate predicate, Visitor visitor) {
+        if (predicate.test(this)) {
+            visitor.visit(this);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return value == 0;
+    }
+
+    @Override
+    public Node compact(NodeFactory factory) {
+        return this;
+    }
+
+    /**
+     * Creates node of the same range filled with this node's value. Only one level is materialized: if created
+     * node is {@link NormalNode} then its children will be uniform nodes.
+     *
+     * @param factory the node factory
+     * @return the new node
+     */
+    public Node split(NodeFactory factory) {
+        final Node node = factory.create(iorg, jorg, korg, rangeShift);
+        if (node instanceof Leaf leaf) {
+            leaf.fill(value);
+        } else if (node instanceof NormalNode normalNode) {
+            normalNode.fill(value);
+        } else {
+            throw new IllegalStateException("Unable to split into " + node);
+        }
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        return "UniformNode{" +
+                "iorg=" + iorg +
+                ", jorg=" + jorg +
+                ", korg=" + korg +
+                ", rangeShift=" + rangeShift +
+                ", value=" + value +
+                '}';
+    }
+}
@@ -9,4 +9,8 @@ public interface Visitor {
     default void visit(Leaf leaf) {
 
     }
+
+    default void visit(UniformNode node) {
+
+    }
 }
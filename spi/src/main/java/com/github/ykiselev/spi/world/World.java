@@ -1,5 +1,10 @@
 package com.github.ykiselev.spi.world;
 
+import com.github.ykiselev.opengl.matrices.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -7,6 +12,10 @@ import java.util.Objects;
  */
 public final class World {
 
+    private static final int DEFAULT_JOURNAL_CAPACITY = 1 << 16;
+
+    private static final int DEFAULT_REGION_SHIFT = 9;
+
     private final Node root;
 
     private final NodeFactory factory;
@@ -15,6 +24,15 @@ public final class World {
 
     private final byte leafRangeShift;
 
+    private final ChangeJournal journal;
+
+    private final Regions regions;
+
+    /**
+     * Incremented each time existing nodes may be detached from the tree (see {@link WorldCursor}).
+     */
+    private int structure;
+
     public byte rangeShift() {
         return rangeShift;
     }
@@ -23,14 +41,66 @@ public final class World {
         return leafRangeShift;
     }
 
-    public World(NodeFactory factory, byte globalRangeShift) {
+    /**
+     * @param factory          the node factory
+     * @param globalRangeShift index range of world is 1 << globalRangeShift
+     * @param journalCapacity  the capacity of change journal
+     * @param regionShift      index range of region is 1 << regionShift (see {@link Regions})
+     */
+    public World(NodeFactory factory, byte globalRangeShift, int journalCapacity, int regionShift) {
         if (globalRangeShift <= Leaf.SIDE_SHIFT) {
             throw new IllegalArgumentException("Global range shift should be greater than leaf side shift!");
         }
+        if (regionShift < Leaf.SIDE_SHIFT || regionShift > globalRangeShift) {
+            throw new IllegalArgumentException("Bad region shift: " + regionShift);
+        }
         this.rangeShift = globalRangeShift;
         this.leafRangeShift = Leaf.SIDE_SHIFT;
-        this.factory = Objects.requireNonNull(factory);
-        this.root = factory.create(0, 0, 0, globalRangeShift);
+        this.journal = new ChangeJournal(journalCapacity);
+        this.regions = new Regions(regionShift);
+        this.factory = new JournalingNodeFactory(factory, journal);
+        this.root = this.factory.create(0, 0, 0, globalRangeShift);
+    }
+
+    public World(NodeFactory factory, byte globalRangeShift, int journalCapacity) {
+        this(factory, globalRangeShift, journalCapacity, Math.min(DEFAULT_REGION_SHIFT, globalRangeShift));
+    }
+
+    public World(NodeFactory factory, byte globalRangeShift) {
+        this(factory, globalRangeShift, DEFAULT_JOURNAL_CAPACITY);
+    }
+
+    /**
+     * @return the journal of modified leaves
+     */
+    public ChangeJournal journal() {
+        return journal;
+    }
+
+    /**
+     * @return the residency of regions of this world
+     */
+    public Regions regions() {
+        return regions;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    NodeFactory factory() {
+        return factory;
+    }
+
+    int structure() {
+        return structure;
+    }
+
+    /**
+     * @return new cursor to access blocks of this world
+     */
+    public WorldCursor cursor() {
+        return new WorldCursor(this);
     }
 
     public int get(int i, int j, int k) {
@@ -45,7 +115,219 @@ public final class World {
         root.put(i, j, k, value, factory);
     }
 
+    /**
+     * Sets all blocks in box {@code [i0, i1) x [j0, j1) x [k0, k1)} to the same value. Completely covered subtrees are
+     * replaced with {@link UniformNode}'s, partially covered leaves are filled row by row (or plane by plane).
+     */
+    public void fill(int i0, int j0, int k0, int i1, int j1, int k1, int value) {
+        fill(new Box(i0, j0, k0, i1, j1, k1), value);
+    }
+
+    public void fill(Box box, int value) {
+        if (!box.isEmpty()) {
+            structure++;
+            root.fill(box, value, factory);
+            // Replaced subtrees are not tracked by leaves (partially covered leaves record themselves)
+            record(box);
+        }
+    }
+
+    /**
+     * Records all leaf cells completely covered by box.
+     */
+    private void record(Box box) {
+        final int range = root.range(), leafRange = 1 << Leaf.SIDE_SHIFT, mask = -leafRange;
+        final int i1 = Math.min(box.i1(), range) & mask, j1 = Math.min(box.j1(), range) & mask,
+                k1 = Math.min(box.k1(), range) & mask;
+        for (int k = (Math.max(box.k0(), 0) + leafRange - 1) & mask; k < k1; k += leafRange) {
+            for (int j = (Math.max(box.j0(), 0) + leafRange - 1) & mask; j < j1; j += leafRange) {
+                for (int i = (Math.max(box.i0(), 0) + leafRange - 1) & mask; i < i1; i += leafRange) {
+                    journal.record(i, j, k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies blocks from source box to the box of the same size with origin at (i, j, k). Source regions without
+     * leaves (empty or uniform) are copied with {@link #fill(Box, int)}, others are copied leaf row by leaf row.
+     *
+     * @param src the source box
+     * @param i   the destination origin i index
+     * @param j   the destination origin j index
+     * @param k   the destination origin k index
+     */
+    public void copy(Box src, int i, int j, int k) {
+        final int di = i - src.i0(), dj = j - src.j0(), dk = k - src.k0();
+        if (src.isEmpty() || (di == 0 && dj == 0 && dk == 0)) {
+            return;
+        }
+        if (src.intersects(src.translate(di, dj, dk))) {
+            copyOverlapping(src, di, dj, dk);
+            return;
+        }
+        final int leafRange = 1 << Leaf.SIDE_SHIFT;
+        final int mask = -leafRange;
+        for (int ck = src.k0() & mask; ck < src.k1(); ck += leafRange) {
+            for (int cj = src.j0() & mask; cj < src.j1(); cj += leafRange) {
+                for (int ci = src.i0() & mask; ci < src.i1(); ci += leafRange) {
+                    final Box cell = new Box(
+                            Math.max(ci, src.i0()), Math.max(cj, src.j0()), Math.max(ck, src.k0()),
+                            Math.min(ci + leafRange, src.i1()), Math.min(cj + leafRange, src.j1()), Math.min(ck + leafRange, src.k1())
+                    );
+                    final Leaf leaf = leafForIndices(ci, cj, ck, false);
+                    if (leaf == null) {
+                        fill(cell.translate(di, dj, dk), get(ci, cj, ck));
+                    } else {
+                        copy(leaf, cell, di, dj, dk);
+                    }
+                }
+            }
+        }
+    }
+
+    private void copy(Leaf leaf, Box cell, int di, int dj, int dk) {
+        for (int k = cell.k0(); k < cell.k1(); k++) {
+            for (int j = cell.j0(); j < cell.j1(); j++) {
+                Leaf dest = null;
+                for (int i = cell.i0(); i < cell.i1(); i++) {
+                    final int ti = i + di;
+                    if (dest == null || ((ti - dest.iorg()) >>> Leaf.SIDE_SHIFT) != 0) {
+                        dest = leafForIndices(ti, j + dj, k + dk, true);
+                    }
+                    dest.put(ti, j + dj, k + dk, leaf.get(i, j, k), factory);
+                }
+            }
+        }
+    }
+
+    private void copyOverlapping(Box src, int di, int dj, int dk) {
+        // Iterate in direction opposite to shift so source blocks are read before being overwritten
+        final int si = di > 0 ? -1 : 1, sj = dj > 0 ? -1 : 1, sk = dk > 0 ? -1 : 1;
+        for (int k = sk > 0 ? src.k0() : src.k1() - 1; k >= src.k0() && k < src.k1(); k += sk) {
+            for (int j = sj > 0 ? src.j0() : src.j1() - 1; j >= src.j0() && j < src.j1(); j += sj) {
+                for (int i = si > 0 ? src.i0() : src.i1() - 1; i >= src.i0() && i < src.i1(); i += si) {
+                    put(i + di, j + dj, k + dk, get(i, j, k));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds first non-zero block on the ray.
+     *
+     * @param origin      the ray origin
+     * @param direction   the ray direction (not necessarily normalized)
+     * @param maxDistance the maximum distance to trace
+     * @return the hit or {@code null} if there is no non-zero block within supplied distance
+     */
+    public RayHit raycast(Vector3f origin, Vector3f direction, float maxDistance) {
+        return new Raycast(root).trace(origin.x, origin.y, origin.z,
+                direction.x, direction.y, direction.z, maxDistance);
+    }
+
+    /**
+     * Traces rays in parallel (using common fork/join pool). World should not be modified meanwhile.
+     *
+     * @param origins     the ray origins
+     * @param directions  the ray directions
+     * @param maxDistance the maximum distance to trace
+     * @return the array of hits, element is {@code null} if corresponding ray has hit nothing
+     */
+    public RayHit[] raycast(Vector3f[] origins, Vector3f[] directions, float maxDistance) {
+        if (origins.length != directions.length) {
+            throw new IllegalArgumentException("Number of origins and directions differ!");
+        }
+        final RayHit[] result = new RayHit[origins.length];
+        Arrays.parallelSetAll(result, n -> raycast(origins[n], directions[n], maxDistance));
+        return result;
+    }
+
     public void visit(NodePredicate predicate, Visitor visitor) {
         root.visit(predicate, visitor);
     }
+
+    /**
+     * Takes snapshot of all non-empty leaves and uniform nodes in visiting order. Leaves are copied with
+     * {@link Leaf#snapshot()} and uniform nodes are never modified in place, so snapshot may be read by other thread
+     * while this world is modified. Should be called on the thread modifying world.
+     *
+     * @return the snapshot
+     */
+    public WorldSnapshot snapshot() {
+        final List<Node> nodes = new ArrayList<>();
+        root.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                if (!leaf.isEmpty()) {
+                    nodes.add(leaf.snapshot());
+                }
+            }
+
+            @Override
+            public void visit(UniformNode node) {
+                if (!node.isEmpty()) {
+                    nodes.add(node);
+                }
+            }
+        });
+        return new WorldSnapshot(rangeShift, List.copyOf(nodes));
+    }
+
+    /**
+     * Drops all blocks of region and marks region as unloaded. Leaf cells which had blocks are recorded to journal, so
+     * consumers depending on neighbouring blocks (like culled meshes) see the change. Modified region should be saved
+     * first.
+     *
+     * @param region the region key (see {@link Regions#key(int, int, int)})
+     */
+    public void unload(long region) {
+        final Box box = regions.box(region);
+        root.visit(new NodePredicate() {
+            @Override
+            public boolean test(NormalNode node) {
+                return box.intersects(Box.of(node));
+            }
+
+            @Override
+            public boolean test(Leaf leaf) {
+                return box.intersects(Box.of(leaf));
+            }
+
+            @Override
+            public boolean test(UniformNode node) {
+                return box.intersects(Box.of(node));
+            }
+        }, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                if (!leaf.isEmpty()) {
+                    journal.record(leaf.iorg(), leaf.jorg(), leaf.korg());
+                }
+            }
+
+            @Override
+            public void visit(UniformNode node) {
+                if (!node.isEmpty()) {
+                    record(new Box(Math.max(box.i0(), node.iorg()), Math.max(box.j0(), node.jorg()),
+                            Math.max(box.k0(), node.korg()), Math.min(box.i1(), node.iorg() + node.range()),
+                            Math.min(box.j1(), node.jorg() + node.range()),
+                            Math.min(box.k1(), node.korg() + node.range())));
+                }
+            }
+        });
+        structure++;
+        root.fill(box, 0, factory);
+        regions.markUnloaded(region);
+    }
+
+    /**
+     * Replaces subtrees having the same value for all blocks with {@link UniformNode}'s and drops empty ones.
+     * Root node itself is never replaced. Node factory may also share storage of identical leaves
+     * (see {@link NodeFactory#intern(Leaf)}).
+     */
+    public void compact() {
+        structure++;
+        root.compact(factory);
+    }
 }
@@ -0,0 +1,145 @@
+package com.github.ykiselev.spi.world;
+
+import java.util.Objects;
+
+/**
+ * Reusable accessor of world blocks optimized for spatially coherent access. Cursor remembers last resolved leaf and
+ * the chain of nodes leading to it from root. Access to the same leaf costs single bounds check, on a miss cursor climbs
+ * up only until node containing requested indices is found and then descends from there.
+ * <p>
+ * Cursor is not thread-safe. Cached chain is dropped automatically after structural changes of world (fill, copy,
+ * compaction).
+ */
+public final class WorldCursor {
+
+    private final World world;
+
+    private final NodeFactory factory;
+
+    /**
+     * Chain of normal nodes from root, {@code path[depth - 1]} is the deepest one.
+     */
+    private final NormalNode[] path;
+
+    private int depth;
+
+    private Leaf leaf;
+
+    private int structure;
+
+    WorldCursor(World world) {
+        this.world = Objects.requireNonNull(world);
+        this.factory = world.factory();
+        this.path = new NormalNode[world.rangeShift() - Leaf.SIDE_SHIFT];
+        reset();
+    }
+
+    /**
+     * Drops cached nodes.
+     */
+    public void reset() {
+        leaf = null;
+        depth = 0;
+        if (world.root() instanceof NormalNode root) {
+            path[depth++] = root;
+        }
+        structure = world.structure();
+    }
+
+    private static boolean contains(Node node, int i, int j, int k) {
+        return (((i - node.iorg()) | (j - node.jorg()) | (k - node.korg())) & -node.range()) == 0;
+    }
+
+    private static boolean contains(Leaf leaf, int i, int j, int k) {
+        return (((i - leaf.iorg()) | (j - leaf.jorg()) | (k - leaf.korg())) >>> Leaf.SIDE_SHIFT) == 0;
+    }
+
+    /**
+     * Climbs up the cached chain until node containing requested indices is found.
+     *
+     * @return {@code false} if indices are outside of world or root is not a normal node
+     */
+    private boolean climb(int i, int j, int k) {
+        if (structure != world.structure()) {
+            reset();
+        }
+        leaf = null;
+        while (depth > 0 && !contains(path[depth - 1], i, j, k)) {
+            depth--;
+        }
+        return depth > 0;
+    }
+
+    /**
+     * Descends from the deepest cached node.
+     *
+     * @param factory the factory to create missing nodes or {@code null}
+     * @return the child which is not a normal node (leaf, uniform node or {@code null})
+     */
+    private Node descend(int i, int j, int k, NodeFactory factory) {
+        for (; ; ) {
+            final Node child = path[depth - 1].getChild(i, j, k, factory);
+            if (child instanceof NormalNode node) {
+                path[depth++] = node;
+            } else {
+                if (child instanceof Leaf l) {
+                    leaf = l;
+                }
+                return child;
+            }
+        }
+    }
+
+    public int get(int i, int j, int k) {
+        final Leaf l = leaf;
+        if (l != null && contains(l, i, j, k) && structure == world.structure()) {
+            return l.get(i, j, k);
+        }
+        if (!climb(i, j, k)) {
+            return world.get(i, j, k);
+        }
+        final Node child = descend(i, j, k, null);
+        return child != null
+                ? child.get(i, j, k)
+                : 0;
+    }
+
+    /**
+     * @return the leaf containing requested indices or {@code null} if there is no such leaf
+     */
+    public Leaf leaf(int i, int j, int k) {
+        final Leaf l = leaf;
+        if (l != null && contains(l, i, j, k) && structure == world.structure()) {
+            return l;
+        }
+        if (!climb(i, j, k)) {
+            return world.leafForIndices(i, j, k, false);
+        }
+        return descend(i, j, k, null) instanceof Leaf result ? result : null;
+    }
+
+    public void put(int i, int j, int k, int value) {
+        Leaf target = leaf;
+        if (target == null || !contains(target, i, j, k) || structure != world.structure()) {
+            if (!climb(i, j, k)) {
+                world.put(i, j, k, value);
+                return;
+            }
+            final Node existing = descend(i, j, k, null);
+            if (existing instanceof Leaf l) {
+                target = l;
+            } else if (existing != null ? existing.get(i, j, k) == value : value == 0) {
+                return;
+            } else {
+                target = (Leaf) descend(i, j, k, factory);
+            }
+        }
+        if (value != 0 && target.isEmpty()) {
+            // leaf is written directly so nodes on the path should learn it's not empty anymore
+            for (int d = 0; d < depth; d++) {
+                path[d].markOccupied(i, j, k);
+            }
+        }
+        target.put(i, j, k, value, factory);
+    }
+}
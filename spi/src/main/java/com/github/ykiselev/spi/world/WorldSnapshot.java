@@ -0,0 +1,12 @@
+package com.github.ykiselev.spi.world;
+
+import java.util.List;
+
+/**
+ * Immutable view of world taken by {@link World#snapshot()}.
+ *
+ * @param rangeShift index range of world is 1 << rangeShift
+ * @param nodes      the non-empty leaves and uniform nodes in visiting order
+ */
+public record WorldSnapshot(byte rangeShift, List<Node> nodes) {
+}
@@ -0,0 +1,152 @@
+package com.github.ykiselev.spi.world.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Collects chunks into ring of large direct buffers which are written by separate thread with gathering writes, so
+ * encoding of chunks overlaps with I/O and number of write calls is small. Chunks are copied, so caller may reuse
+ * passed buffer. Call {@link #finish()} to write the rest and wait for writer thread.
+ */
+final class BatchWriter implements Consumer<ByteBuffer>, AutoCloseable {
+
+    static final int BATCH_SIZE = 1 << 20;
+
+    static final int BATCHES = 4;
+
+    /**
+     * Marks the end of batches.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final GatheringByteChannel channel;
+
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BATCHES);
+
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BATCHES + 1);
+
+    private final Thread writer;
+
+    private volatile Throwable error;
+
+    private ByteBuffer current;
+
+    BatchWriter(GatheringByteChannel channel) {
+        this.channel = Objects.requireNonNull(channel);
+        for (int n = 0; n < BATCHES; n++) {
+            free.add(ByteBuffer.allocateDirect(BATCH_SIZE));
+        }
+        current = free.remove();
+        writer = new Thread(this::run, "world-writer");
+        writer.start();
+    }
+
+    @Override
+    public void accept(ByteBuffer chunk) {
+        if (current.remaining() < chunk.remaining()) {
+            submit();
+            current = take(free);
+        }
+        current.put(chunk);
+    }
+
+    private void submit() {
+        if (error != null) {
+            throw new RuntimeException("Write failed!", error);
+        }
+        put(current.flip());
+    }
+
+    private void put(ByteBuffer buffer) {
+        try {
+            full.put(buffer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted!", e);
+        }
+    }
+
+    private static ByteBuffer take(BlockingQueue<ByteBuffer> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted!", e);
+        }
+    }
+
+    /**
+     * Writes all available batches at once. After failure batches are just recycled until the end so producer is
+     * never blocked.
+     */
+    private void run() {
+        final List<ByteBuffer> batches = new ArrayList<>(BATCHES + 1);
+        boolean end = false;
+        while (!end) {
+            try {
+                batches.add(full.take());
+            } catch (InterruptedException e) {
+                // producer has failed
+                return;
+            }
+            full.drainTo(batches);
+            end = batches.remove(END);
+            if (error == null && !batches.isEmpty()) {
+                try {
+                    write(batches.toArray(ByteBuffer[]::new));
+                } catch (IOException | RuntimeException e) {
+                    error = e;
+                }
+            }
+            for (ByteBuffer batch : batches) {
+                free.add(batch.clear());
+            }
+            batches.clear();
+        }
+    }
+
+    private void write(ByteBuffer[] batches) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer batch : batches) {
+            remaining += batch.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(batches);
+        }
+    }
+
+    /**
+     * Writes pending chunks and waits for writer thread to finish.
+     */
+    void finish() {
+        if (current.position() > 0) {
+            submit();
+            current = null;
+        }
+        put(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted!", e);
+        }
+        if (error != null) {
+            throw new RuntimeException("Write failed!", error);
+        }
+    }
+
+    /**
+     * Stops writer thread if {@link #finish()} was not called (i.e. on failure of producer).
+     */
+    @Override
+    public void close() {
+        writer.interrupt();
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.Blocks;
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.World;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes chunks of world file (version 2 and above) and writes them to world. Instance is reusable but not
+ * thread-safe.
+ */
+final class ChunkDecoder {
+
+    private final byte[] blocks = new byte[Blocks.SIZE];
+
+    /**
+     * @param src the buffer having at least chunk header remaining
+     * @return the size of chunk at current position of supplied buffer (including header)
+     */
+    static int chunkSize(ByteBuffer src) {
+        return WorldFile.CHUNK_HEADER_SIZE + Short.toUnsignedInt(src.getShort(src.position() + WorldFile.CHUNK_HEADER_SIZE - 2));
+    }
+
+    /**
+     * Reads chunk starting at current position of supplied buffer. Buffer should contain whole chunk.
+     *
+     * @param src    the source buffer
+     * @param world  the world to write to
+     * @param region the region to load or {@code null} to load every chunk
+     */
+    void read(ByteBuffer src, World world, Box region) {
+        final LeafCodec codec = LeafCodec.of(src.get());
+        final int iorg = src.getInt();
+        final int jorg = src.getInt();
+        final int korg = src.getInt();
+        final int length = Short.toUnsignedInt(src.getShort());
+        final int end = src.position() + length;
+        if (codec == LeafCodec.UNIFORM) {
+            final byte value = src.get();
+            final int range = 1 << src.get();
+            if (region == null || region.intersects(iorg, jorg, korg, range)) {
+                world.fill(new Box(iorg, jorg, korg, iorg + range, jorg + range, korg + range), value);
+            }
+        } else if (region != null && !region.intersects(iorg, jorg, korg, 1 << Leaf.SIDE_SHIFT)) {
+            src.position(end);
+        } else if (codec == LeafCodec.RAW) {
+            // bulk copy straight from source, no need to go through scratch array
+            if (length != Blocks.SIZE) {
+                throw new RuntimeException("Bad raw leaf: " + length + " bytes");
+            }
+            world.leafForIndices(iorg, jorg, korg, true)
+                    .copyFrom(src);
+        } else {
+            codec.decode(src, length, blocks);
+            world.leafForIndices(iorg, jorg, korg, true)
+                    .copyFrom(ByteBuffer.wrap(blocks));
+        }
+        if (src.position() != end) {
+            throw new RuntimeException("Chunk payload size mismatch!");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.World;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Final stages of load pipeline. With single worker chunks are decoded and inserted into world on the calling thread.
+ * Otherwise caller (the reading stage) collects chunks into batches which are decoded and inserted by worker threads,
+ * number of batches in flight is limited to keep memory bounded. Workers insert leaves directly since
+ * {@link World#leafForIndices(int, int, int, boolean)} is safe to call concurrently and chunks never overlap. Node
+ * factory must be thread-safe (see {@link com.github.ykiselev.spi.world.NodeFactory}).
+ */
+final class ChunkLoader implements AutoCloseable {
+
+    static final int BATCH_SIZE = 256 * 1024;
+
+    private final World world;
+
+    private final Box region;
+
+    private final ChunkDecoder decoder = new ChunkDecoder();
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final List<Future<?>> tasks = new ArrayList<>();
+
+    private ByteBuffer batch;
+
+    /**
+     * @param world   the world to load to
+     * @param region  the region to load or {@code null} to load every chunk
+     * @param workers the number of worker threads
+     */
+    ChunkLoader(World world, Box region, int workers) {
+        this.world = world;
+        this.region = region;
+        if (workers > 1) {
+            executor = Executors.newFixedThreadPool(workers, r -> {
+                final Thread thread = new Thread(r, "world-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            permits = new Semaphore(2 * workers);
+        } else {
+            executor = null;
+            permits = null;
+        }
+    }
+
+    /**
+     * Accepts single chunk at current position of supplied buffer. Buffer is advanced past the chunk.
+     *
+     * @param src  the buffer
+     * @param size the size of chunk (including header)
+     */
+    void chunk(ByteBuffer src, int size) {
+        if (executor == null) {
+            decoder.read(src, world, region);
+            return;
+        }
+        if (batch != null && batch.remaining() < size) {
+            dispatch();
+        }
+        if (batch == null) {
+            batch = ByteBuffer.allocate(Math.max(BATCH_SIZE, size))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        batch.put(src.slice(src.position(), size));
+        src.position(src.position() + size);
+    }
+
+    /**
+     * Accepts buffer holding whole chunks between its position and limit. Buffer should not be modified afterwards.
+     */
+    void chunks(ByteBuffer src) {
+        if (executor == null) {
+            while (src.hasRemaining()) {
+                decoder.read(src, world, region);
+            }
+        } else {
+            submit(src);
+        }
+    }
+
+    private void dispatch() {
+        if (batch != null) {
+            submit(batch.flip());
+            batch = null;
+        }
+    }
+
+    private void submit(ByteBuffer src) {
+        permits.acquireUninterruptibly();
+        try {
+            tasks.add(executor.submit(() -> {
+                try {
+                    final ChunkDecoder decoder = new ChunkDecoder();
+                    while (src.hasRemaining()) {
+                        decoder.read(src, world, region);
+                    }
+                } finally {
+                    permits.release();
+                }
+            }));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for all submitted chunks to be inserted into world.
+     */
+    void finish() {
+        dispatch();
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted!", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        tasks.clear();
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.Blocks;
+import com.github.ykiselev.spi.world.Leaf;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodings of leaf chunk payload used by world file v2. Encoder picks the one producing the least number of bytes.
+ */
+enum LeafCodec {
+
+    /**
+     * All blocks of cube have the same value. Payload is value and range shift of cube (so this codec is also used
+     * to store whole uniform nodes).
+     */
+    UNIFORM(1) {
+        @Override
+        int size(Analysis analysis) {
+            return analysis.paletteSize == 1 ? 2 : Integer.MAX_VALUE;
+        }
+
+        @Override
+        void encode(byte[] data, Analysis analysis, ByteBuffer dest) {
+            dest.put(data[0])
+                    .put((byte) Leaf.SIDE_SHIFT);
+        }
+
+        @Override
+        void decode(ByteBuffer src, int length, byte[] dest) {
+            final byte value = src.get();
+            if (src.get() != Leaf.SIDE_SHIFT) {
+                throw new IllegalArgumentException("Not a leaf!");
+            }
+            Arrays.fill(dest, value);
+        }
+    },
+    /**
+     * Runs of the same value along i axis (in linear order) stored as pairs of value and run length minus one.
+     */
+    RLE(2) {
+        @Override
+        int size(Analysis analysis) {
+            return 2 * analysis.runs;
+        }
+
+        @Override
+        void encode(byte[] data, Analysis analysis, ByteBuffer dest) {
+            for (int start = 0; start < data.length; ) {
+                final byte value = data[start];
+                int end = start + 1;
+                while (end < data.length && data[end] == value && end - start < MAX_RUN) {
+                    end++;
+                }
+                dest.put(value)
+                        .put((byte) (end - start - 1));
+                start = end;
+            }
+        }
+
+        @Override
+        void decode(ByteBuffer src, int length, byte[] dest) {
+            int offset = 0;
+            for (int n = 0; n < length; n += 2) {
+                final byte value = src.get();
+                final int run = Byte.toUnsignedInt(src.get()) + 1;
+                Arrays.fill(dest, offset, offset + run, value);
+                offset += run;
+            }
+            if (offset != dest.length) {
+                throw new IllegalArgumentException("Bad run-length encoded leaf: " + offset + " blocks");
+            }
+        }
+    },
+    /**
+     * Palette of up to 16 values followed by bit-packed palette indices (1, 2 or 4 bits per block).
+     */
+    PALETTE(3) {
+        @Override
+        int size(Analysis analysis) {
+            final int bits = bits(analysis.paletteSize);
+            return bits > 0 ? 1 + analysis.paletteSize + Blocks.SIZE * bits / 8 : Integer.MAX_VALUE;
+        }
+
+        @Override
+        void encode(byte[] data, Analysis analysis, ByteBuffer dest) {
+            final int bits = bits(analysis.paletteSize);
+            dest.put((byte) analysis.paletteSize)
+                    .put(analysis.palette, 0, analysis.paletteSize);
+            final byte[] indices = analysis.indices;
+            for (int n = 0; n < analysis.paletteSize; n++) {
+                indices[analysis.palette[n] & 0xff] = (byte) n;
+            }
+            final int perByte = 8 / bits;
+            for (int offset = 0; offset < data.length; offset += perByte) {
+                int packed = 0;
+                for (int n = 0; n < perByte; n++) {
+                    packed |= indices[data[offset + n] & 0xff] << (n * bits);
+                }
+                dest.put((byte) packed);
+            }
+        }
+
+        @Override
+        void decode(ByteBuffer src, int length, byte[] dest) {
+            final int size = src.get();
+            final byte[] palette = new byte[size];
+            src.get(palette);
+            final int bits = bits(size), mask = (1 << bits) - 1, perByte = 8 / bits;
+            if (bits == 0 || length != size(size, bits)) {
+                throw new IllegalArgumentException("Bad palette leaf: " + size + " values, " + length + " bytes");
+            }
+            for (int offset = 0; offset < dest.length; offset += perByte) {
+                final int packed = Byte.toUnsignedInt(src.get());
+                for (int n = 0; n < perByte; n++) {
+                    dest[offset + n] = palette[(packed >> (n * bits)) & mask];
+                }
+            }
+        }
+
+        private int size(int paletteSize, int bits) {
+            return 1 + paletteSize + Blocks.SIZE * bits / 8;
+        }
+    },
+    /**
+     * Blocks as is.
+     */
+    RAW(4) {
+        @Override
+        int size(Analysis analysis) {
+            return Blocks.SIZE;
+        }
+
+        @Override
+        void encode(byte[] data, Analysis analysis, ByteBuffer dest) {
+            dest.put(data);
+        }
+
+        @Override
+        void decode(ByteBuffer src, int length, byte[] dest) {
+            if (length != dest.length) {
+                throw new IllegalArgumentException("Bad raw leaf: " + length + " bytes");
+            }
+            src.get(dest);
+        }
+    };
+
+    private static final int MAX_RUN = 256;
+
+    private static final int MAX_PALETTE = 16;
+
+    private static final LeafCodec[] VALUES = values();
+
+    private final byte type;
+
+    LeafCodec(int type) {
+        this.type = (byte) type;
+    }
+
+    byte type() {
+        return type;
+    }
+
+    /**
+     * @return encoded size or {@link Integer#MAX_VALUE} if codec is not applicable
+     */
+    abstract int size(Analysis analysis);
+
+    abstract void encode(byte[] data, Analysis analysis, ByteBuffer dest);
+
+    /**
+     * @param src    the source buffer positioned at the start of payload
+     * @param length the payload length
+     * @param dest   the destination array of {@link Blocks#SIZE} blocks
+     */
+    abstract void decode(ByteBuffer src, int length, byte[] dest);
+
+    private static int bits(int paletteSize) {
+        if (paletteSize <= 2) {
+            return 1;
+        } else if (paletteSize <= 4) {
+            return 2;
+        } else if (paletteSize <= MAX_PALETTE) {
+            return 4;
+        }
+        return 0;
+    }
+
+    static LeafCodec of(byte type) {
+        for (LeafCodec codec : VALUES) {
+            if (codec.type == type) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown leaf codec: " + type);
+    }
+
+    /**
+     * @return the codec producing the least number of bytes for analyzed data
+     */
+    static LeafCodec choose(Analysis analysis) {
+        LeafCodec result = RAW;
+        for (LeafCodec codec : VALUES) {
+            if (codec.size(analysis) < result.size(analysis)) {
+                result = codec;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Statistics of leaf blocks used to select codec. Instance is reusable.
+     */
+    static final class Analysis {
+
+        /**
+         * Distinct values in order of appearance, only first {@code MAX_PALETTE + 1} are kept.
+         */
+        private final byte[] palette = new byte[MAX_PALETTE + 1];
+
+        private final boolean[] seen = new boolean[256];
+
+        /**
+         * Scratch table of palette indices used by encoder.
+         */
+        private final byte[] indices = new byte[256];
+
+        private int paletteSize;
+
+        /**
+         * Number of runs no longer than {@code MAX_RUN}.
+         */
+        private int runs;
+
+        Analysis analyze(byte[] data) {
+            Arrays.fill(seen, false);
+            paletteSize = 0;
+            runs = 0;
+            int run = 0;
+            byte previous = 0;
+            for (int n = 0; n < data.length; n++) {
+                final byte value = data[n];
+                if (n == 0 || value != previous || run == MAX_RUN) {
+                    runs++;
+                    run = 0;
+                    previous = value;
+                }
+                run++;
+                if (!seen[value & 0xff]) {
+                    seen[value & 0xff] = true;
+                    if (paletteSize < palette.length) {
+                        palette[paletteSize] = value;
+                    }
+                    paletteSize++;
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.Morton;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Index of world file chunks sorted by Morton key of chunk origin (in leaf units). Each entry holds chunk offset in
+ * file, chunk size (including header) and range shift of cube covered by chunk.
+ */
+final class LeafIndex {
+
+    static final int ENTRY_SIZE = 8 + 8 + 4 + 1;
+
+    private long[] keys;
+
+    private long[] offsets;
+
+    private int[] sizes;
+
+    private byte[] shifts;
+
+    private int count;
+
+    LeafIndex(int capacity) {
+        keys = new long[capacity];
+        offsets = new long[capacity];
+        sizes = new int[capacity];
+        shifts = new byte[capacity];
+    }
+
+    LeafIndex() {
+        this(64);
+    }
+
+    int count() {
+        return count;
+    }
+
+    long offset(int index) {
+        return offsets[index];
+    }
+
+    int size(int index) {
+        return sizes[index];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    void add(int iorg, int jorg, int korg, int rangeShift, long offset, int size) {
+        if (count == keys.length) {
+            final int capacity = 2 * count;
+            keys = Arrays.copyOf(keys, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            shifts = Arrays.copyOf(shifts, capacity);
+        }
+        keys[count] = Morton.encode(iorg >> Leaf.SIDE_SHIFT, jorg >> Leaf.SIDE_SHIFT, korg >> Leaf.SIDE_SHIFT);
+        offsets[count] = offset;
+        sizes[count] = size;
+        shifts[count] = (byte) rangeShift;
+        count++;
+    }
+
+    /**
+     * Sorts entries by key. Tree traversal already goes in Morton order, so usually there is nothing to do.
+     */
+    void sort() {
+        for (int n = 1; n < count; n++) {
+            if (keys[n - 1] > keys[n]) {
+                final Integer[] order = IntStream.range(0, count).boxed().toArray(Integer[]::new);
+                Arrays.sort(order, Comparator.comparingLong(o -> keys[o]));
+                final LeafIndex sorted = new LeafIndex(count);
+                for (Integer o : order) {
+                    sorted.keys[sorted.count] = keys[o];
+                    sorted.offsets[sorted.count] = offsets[o];
+                    sorted.sizes[sorted.count] = sizes[o];
+                    sorted.shifts[sorted.count] = shifts[o];
+                    sorted.count++;
+                }
+                keys = sorted.keys;
+                offsets = sorted.offsets;
+                sizes = sorted.sizes;
+                shifts = sorted.shifts;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if cube covered by chunk intersects supplied box
+     */
+    boolean intersects(int index, Box box) {
+        final long key = keys[index];
+        return box.intersects(
+                Morton.i(key) << Leaf.SIDE_SHIFT,
+                Morton.j(key) << Leaf.SIDE_SHIFT,
+                Morton.k(key) << Leaf.SIDE_SHIFT,
+                1 << shifts[index]
+        );
+    }
+
+    /**
+     * Writes entries to buffer passing it to consumer each time it's full and at the end.
+     */
+    void write(ByteBuffer buffer, Consumer<ByteBuffer> dest) {
+        buffer.clear();
+        for (int n = 0; n < count; n++) {
+            if (buffer.remaining() < ENTRY_SIZE) {
+                dest.accept(buffer.flip());
+                buffer.clear();
+            }
+            buffer.putLong(keys[n])
+                    .putLong(offsets[n])
+                    .putInt(sizes[n])
+                    .put(shifts[n]);
+        }
+        dest.accept(buffer.flip());
+    }
+
+    /**
+     * Reads next entry from buffer.
+     */
+    void read(ByteBuffer buffer) {
+        final long key = buffer.getLong();
+        final long offset = buffer.getLong();
+        final int size = buffer.getInt();
+        final byte shift = buffer.get();
+        add(Morton.i(key) << Leaf.SIDE_SHIFT, Morton.j(key) << Leaf.SIDE_SHIFT, Morton.k(key) << Leaf.SIDE_SHIFT,
+                shift, offset, size);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.ykiselev.spi.world.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+/**
+ * Read-only memory mapping of file region. Since single mapping can't exceed 2GB, file is mapped by windows of
+ * {@link #WINDOW_SIZE} bytes which are re-mapped when requested range goes outside of current window.
+ */
+final class MappedWindow {
+
+    static final int WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel file;
+
+    private final long fileSize;
+
+    private MappedByteBuffer buffer;
+
+    private long base;
+
+    MappedWindow(FileChannel file) throws IOException {
+        this.file = Objects.requireNonNull(file);
+        this.fileSize = file.size();
+    }
+
+    /**
+     * @param position the file position
+     * @param bytes    the number of bytes required
+     * @return the buffer positioned at supplied file position with at least {@code bytes} remaining
+     */
+    ByteBuffer at(long position, int bytes) throws IOException {
+        if (position + bytes > fileSize) {
+            throw new RuntimeException("Unexpected end of file at " + position);
+        }
+        if (buffer == null || position < base || position + bytes > base + buffer.capacity()) {
+            base = position;
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(Math.max(bytes, WINDOW_SIZE), fileSize - position));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return buffer.limit(buffer.capacity())
+                .position((int) (position - base));
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.services.FileSystem;
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.Morton;
+import com.github.ykiselev.spi.world.NodePredicate;
+import com.github.ykiselev.spi.world.NormalNode;
+import com.github.ykiselev.spi.world.Regions;
+import com.github.ykiselev.spi.world.UniformNode;
+import com.github.ykiselev.spi.world.Visitor;
+import com.github.ykiselev.spi.world.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Region-partitioned world storage. Each region of world (see {@link Regions}) is kept in its own plain file
+ * {@code universe/<name>/<i>.<j>.<k>.region} having the same format as {@link WorldFile} (so each region file has its
+ * own chunk index). Files are created lazily when region is saved, region without file is empty. Loaded regions are
+ * marked in {@link World#regions()} so world may hold only part of all regions.
+ * <p>
+ * Store is not thread-safe.
+ */
+public final class RegionStore {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final FileSystem fileSystem;
+
+    private final String name;
+
+    private final WorldFile worldFile = new WorldFile(WorldFile.Container.PLAIN);
+
+    public RegionStore(FileSystem fileSystem, String name) {
+        this.fileSystem = Objects.requireNonNull(fileSystem);
+        this.name = Objects.requireNonNull(name);
+    }
+
+    private String path(long region) {
+        return WorldFile.path(name) + "/" + Morton.i(region) + "." + Morton.j(region) + "." + Morton.k(region)
+                + ".region";
+    }
+
+    /**
+     * @return {@code true} if region has file
+     */
+    public boolean exists(long region) {
+        final Optional<ReadableByteChannel> channel = fileSystem.open(path(region));
+        channel.ifPresent(c -> {
+            try {
+                c.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return channel.isPresent();
+    }
+
+    /**
+     * Writes all blocks of region to region file. Uniform nodes larger than region are clipped to region. File is
+     * written to temporary file first which then replaces region file.
+     *
+     * @param world  the world
+     * @param region the region key
+     */
+    public void save(World world, long region) {
+        final Regions regions = world.regions();
+        final Box box = regions.box(region);
+        final int shift = regions.shift();
+        // written aside and moved over existing file so interrupted save does not destroy region
+        final String tmp = path(region) + ".tmp";
+        try (FileChannel file = fileSystem.truncate(tmp)) {
+            worldFile.save(file, world.rangeShift(), visitor ->
+                    world.visit(new RegionPredicate(box), new Visitor() {
+                        @Override
+                        public void visit(Leaf leaf) {
+                            visitor.visit(leaf);
+                        }
+
+                        @Override
+                        public void visit(UniformNode node) {
+                            if (node.rangeShift() <= shift) {
+                                visitor.visit(node);
+                            } else if (node.value() != 0) {
+                                visitor.uniform(box.i0(), box.j0(), box.k0(), shift, node.value());
+                            }
+                        }
+                    }));
+            file.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fileSystem.replace(tmp, path(region));
+    }
+
+    /**
+     * Saves all loaded regions of world.
+     */
+    public void save(World world) {
+        final long[] loaded = world.regions().loaded();
+        for (long region : loaded) {
+            save(world, region);
+        }
+        logger.info("World \"{}\" has been saved ({} regions).", name, loaded.length);
+    }
+
+    /**
+     * Loads region into world (replacing current blocks of region) and marks it as loaded.
+     *
+     * @param world  the world
+     * @param region the region key
+     * @return {@code false} if region has no file (and so is empty)
+     */
+    public boolean load(World world, long region) {
+        world.unload(region);
+        final boolean exists = exists(region);
+        if (exists) {
+            try (FileChannel file = fileSystem.open(path(region), StandardOpenOption.READ)) {
+                worldFile.load(file, world);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        world.regions().markLoaded(region);
+        return exists;
+    }
+
+    /**
+     * Skips subtrees not intersecting region.
+     */
+    record RegionPredicate(Box box) implements NodePredicate {
+
+        @Override
+        public boolean test(NormalNode node) {
+            return box.intersects(Box.of(node));
+        }
+
+        @Override
+        public boolean test(Leaf leaf) {
+            return box.intersects(Box.of(leaf));
+        }
+
+        @Override
+        public boolean test(UniformNode node) {
+            return box.intersects(Box.of(node));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.ykiselev.spi.world.file;
 
 import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.UniformNode;
 import com.github.ykiselev.spi.world.Visitor;
 
 import java.nio.ByteBuffer;
@@ -9,29 +10,103 @@ import java.util.function.Consumer;
 
 final class SaveLeafVisitor implements Visitor {
 
-    private final LeafEmptinessChecker checker = new LeafEmptinessChecker();
+    private final LeafCodec.Analysis analysis = new LeafCodec.Analysis();
+
+    private final LeafIndex index = new LeafIndex();
 
     private ByteBuffer buffer;
 
     private Consumer<ByteBuffer> dest;
 
-    public void init(Consumer<ByteBuffer> dest, ByteBuffer buffer) {
+    /**
+     * File offset of next chunk.
+     */
+    private long offset;
+
+    private int iorg, jorg, korg, rangeShift;
+
+    /**
+     * @param dest   the consumer of chunks
+     * @param buffer the buffer to use
+     * @param offset the file offset of first chunk
+     */
+    public void init(Consumer<ByteBuffer> dest, ByteBuffer buffer, long offset) {
         this.dest = Objects.requireNonNull(dest);
         this.buffer = Objects.requireNonNull(buffer);
+        this.offset = offset;
+        index.clear();
+    }
+
+    /**
+     * @return index of written chunks
+     */
+    LeafIndex index() {
+        return index;
+    }
+
+    /**
+     * @return file offset of next chunk
+     */
+    long offset() {
+        return offset;
+    }
+
+    private void header(LeafCodec codec, int iorg, int jorg, int korg, int rangeShift) {
+        this.iorg = iorg;
+        this.jorg = jorg;
+        this.korg = korg;
+        this.rangeShift = rangeShift;
+        buffer.clear()
+                .put(codec.type())
+                .putInt(iorg)
+                .putInt(jorg)
+                .putInt(korg)
+                .putShort((short) 0);
+    }
+
+    /**
+     * Writes payload length to chunk header, adds chunk to index and passes it to consumer.
+     */
+    private void flush() {
+        buffer.putShort(WorldFile.CHUNK_HEADER_SIZE - 2, (short) (buffer.position() - WorldFile.CHUNK_HEADER_SIZE))
+                .flip();
+        final int size = buffer.remaining();
+        index.add(iorg, jorg, korg, rangeShift, offset, size);
+        offset += size;
+        dest.accept(buffer);
     }
 
     @Override
     public void visit(Leaf leaf) {
-        leaf.visit(checker);
-        if (!checker.isEmpty()) {
-            buffer.clear()
-                    .put(WorldFile.LEAF_SIGNATURE)
-                    .putInt(leaf.iorg())
-                    .putInt(leaf.jorg())
-                    .putInt(leaf.korg());
-            leaf.visit(buffer::put);
-            buffer.flip();
-            dest.accept(buffer);
+        if (leaf.isEmpty()) {
+            return;
+        }
+        leaf.visit(data -> {
+            final LeafCodec codec = LeafCodec.choose(analysis.analyze(data));
+            header(codec, leaf.iorg(), leaf.jorg(), leaf.korg(), Leaf.SIDE_SHIFT);
+            codec.encode(data, analysis, buffer);
+            flush();
+        });
+    }
+
+    /**
+     * Uniform node is written as single chunk regardless of its size.
+     */
+    @Override
+    public void visit(UniformNode node) {
+        if (node.value() == 0) {
+            return;
         }
+        uniform(node.iorg(), node.jorg(), node.korg(), node.rangeShift(), node.value());
+    }
+
+    /**
+     * Writes chunk of cube filled with the same value (which may be zero).
+     */
+    void uniform(int iorg, int jorg, int korg, int rangeShift, int value) {
+        header(LeafCodec.UNIFORM, iorg, jorg, korg, rangeShift);
+        buffer.put((byte) value)
+                .put((byte) rangeShift);
+        flush();
     }
 }
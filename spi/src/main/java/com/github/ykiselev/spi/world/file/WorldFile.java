@@ -1,10 +1,15 @@
 package com.github.ykiselev.spi.world.file;
 
 import com.github.ykiselev.spi.services.FileSystem;
+import com.github.ykiselev.spi.services.schedule.Schedule;
+import com.github.ykiselev.spi.world.Blocks;
+import com.github.ykiselev.spi.world.Box;
 import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.Node;
 import com.github.ykiselev.spi.world.NodeFactory;
 import com.github.ykiselev.spi.world.NodePredicate;
 import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.WorldSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,28 +19,136 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+/**
+ * World file. Version 1 stores each non-empty leaf as raw chunk. Version 2 stores each leaf or uniform node as chunk
+ * with header holding codec type, origin and payload length (see {@link LeafCodec}). Version 3 (the one being written)
+ * adds footer with chunk index sorted by Morton key (see {@link LeafIndex}) followed by fixed-size trailer, so regions
+ * of world may be loaded without reading the whole file.
+ * <p>
+ * File is stored either as entry of zip archive or as plain file (see {@link Container}). The latter is loaded through
+ * memory mapping so large worlds are read at the speed of page-ins. Chunks are written in large batches by separate
+ * thread (see {@link BatchWriter}) and may be decoded in parallel (see {@link ChunkLoader}).
+ */
 public final class WorldFile {
 
-    private static final short FILE_VERSION = 1;
+    private static final short FILE_VERSION = 3;
 
     private static final byte[] FILE_SIGNATURE = new byte[]{'w', 'r', 'l', 'd'};
 
     static final byte[] LEAF_SIGNATURE = new byte[]{'l', 'e', 'a', 'f'};
+
+    static final byte[] INDEX_SIGNATURE = new byte[]{'i', 'n', 'd', 'x'};
     public static final int FILE_HEADER_SIZE = 4 + 2 + 1 + 1;
-    public static final int LEAF_CHUNK_SIZE = 4 + 4 + 4 + 4 + (1 << (3 * Leaf.SIDE_SHIFT));
+    /**
+     * Size of leaf chunk in version 1.
+     */
+    public static final int LEAF_CHUNK_SIZE = 4 + 4 + 4 + 4 + Blocks.SIZE;
+    /**
+     * Size of chunk header since version 2: codec type, origin and payload length.
+     */
+    public static final int CHUNK_HEADER_SIZE = 1 + 4 + 4 + 4 + 2;
+    /**
+     * Size of trailer since version 3: number of index entries, index offset and signature.
+     */
+    public static final int TRAILER_SIZE = 4 + 8 + 4;
+
+    /**
+     * Each asynchronous save gets its own non-daemon thread, so application doesn't exit in the middle of write.
+     */
+    private static final Executor SAVER = task -> new Thread(task, "world-saver").start();
+
+    private static final long PROGRESS_INTERVAL = 100;
+
+    /**
+     * The way world file is stored in file system.
+     */
+    public enum Container {
+        /**
+         * Entry of zip archive {@code universe/<name>}.
+         */
+        ARCHIVE,
+        /**
+         * Uncompressed file {@code universe/<name>.world} in writable folder, loaded through memory mapping.
+         */
+        PLAIN
+    }
+
+    /**
+     * Listener of asynchronous save. Methods are called by {@link Schedule} (usually on main thread).
+     */
+    public interface SaveProgress {
+
+        /**
+         * @param saved the number of nodes saved so far
+         * @param total the total number of nodes to save
+         */
+        void progress(int saved, int total);
+
+        /**
+         * Called once when save is finished.
+         *
+         * @param error the error or {@code null} if save succeeded
+         */
+        void completed(Throwable error);
+    }
+
+    private record Header(short version, byte rangeShift) {
+    }
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final Container container;
+
+    private final int workers;
+
+    /**
+     * The last asynchronous save.
+     */
+    private CompletableFuture<Void> saving = CompletableFuture.completedFuture(null);
+
     private final SaveLeafVisitor visitor = new SaveLeafVisitor();
 
-    private final ByteBuffer buffer = ByteBuffer.allocate(8 * 1024)
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024)
             .order(ByteOrder.LITTLE_ENDIAN);
 
-    private String path(String name) {
+    private final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * @param container the way file is stored
+     * @param workers   the number of threads decoding chunks on load, chunks are decoded by calling thread if this
+     *                  number is less than 2. With more workers world's node factory is called concurrently and
+     *                  must be thread-safe (see {@link NodeFactory})
+     */
+    public WorldFile(Container container, int workers) {
+        this.container = Objects.requireNonNull(container);
+        this.workers = workers;
+    }
+
+    public WorldFile(Container container) {
+        this(container, 1);
+    }
+
+    public WorldFile() {
+        this(Container.ARCHIVE);
+    }
+
+    static String path(String name) {
         return "universe/" + name;
     }
 
+    private String plainPath(String name) {
+        return path(name) + ".world";
+    }
+
     private static void write(FileChannel file, ByteBuffer buf) {
         final int remaining = buf.remaining();
         final int written;
@@ -49,38 +162,141 @@ public final class WorldFile {
         }
     }
 
-    private static void read(FileChannel file, ByteBuffer buf) {
-        final int remaining = buf.remaining();
-        try {
-            final int read = file.read(buf);
-            if (read != remaining) {
-                throw new RuntimeException("Incomplete read (" + read + " of " + remaining + " bytes)!");
+    /**
+     * Makes sure buffer (in read mode) has at least supplied number of bytes remaining.
+     *
+     * @return {@code false} if end of file is reached and there is no more data in buffer
+     */
+    private static boolean ensure(FileChannel file, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes) {
+            return true;
+        }
+        buf.compact();
+        while (buf.position() < bytes) {
+            if (file.read(buf) < 0) {
+                break;
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
         }
+        buf.flip();
+        if (buf.remaining() >= bytes) {
+            return true;
+        }
+        if (buf.hasRemaining()) {
+            throw new RuntimeException("Incomplete read (" + buf.remaining() + " of " + bytes + " bytes)!");
+        }
+        return false;
+    }
 
+    /**
+     * Reads exactly {@code buf.remaining()} bytes starting at supplied file position.
+     */
+    private static void read(FileChannel file, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            final int read = file.read(buf, position);
+            if (read < 0) {
+                throw new RuntimeException("Unexpected end of file at " + position);
+            }
+            position += read;
+        }
     }
 
     public void save(FileSystem fileSystem, World world, String name) {
-        try (FileSystem zipFs = fileSystem.mapArchive(path(name), true, false)) {
-            try (FileChannel file = zipFs.truncate("world")) {
-                buffer.clear();
-                buffer.put(FILE_SIGNATURE)
-                        .putShort(FILE_VERSION)
-                        .put(world.rangeShift())
-                        .put(world.leafRangeShift())
-                        .flip();
-                write(file, buffer);
-
-                visitor.init(buf -> write(file, buf), buffer);
-                world.visit(NodePredicate.DEFAULT, visitor);
-
-                logger.info("World \"{}\" has been saved.", name);
+        save(fileSystem, world.rangeShift(), visitor -> world.visit(NodePredicate.DEFAULT, visitor), name);
+    }
+
+    private void save(FileSystem fileSystem, byte rangeShift, Consumer<SaveLeafVisitor> nodes, String name) {
+        final int chunks;
+        if (container == Container.PLAIN) {
+            // written aside and moved over existing file so interrupted save does not destroy previous one
+            final String tmp = plainPath(name) + ".tmp";
+            try (FileChannel file = fileSystem.truncate(tmp)) {
+                chunks = save(file, rangeShift, nodes);
+                file.force(true);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
+            fileSystem.replace(tmp, plainPath(name));
+        } else {
+            try (FileSystem zipFs = fileSystem.mapArchive(path(name), true, false)) {
+                try (FileChannel file = zipFs.truncate("world")) {
+                    chunks = save(file, rangeShift, nodes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
         }
+        logger.info("World \"{}\" has been saved ({} chunks).", name, chunks);
+    }
+
+    /**
+     * @param nodes the action passing visitor to nodes to save
+     * @return the number of written chunks
+     */
+    int save(FileChannel file, byte rangeShift, Consumer<SaveLeafVisitor> nodes) {
+        buffer.clear();
+        buffer.put(FILE_SIGNATURE)
+                .putShort(FILE_VERSION)
+                .put(rangeShift)
+                .put((byte) Leaf.SIDE_SHIFT)
+                .flip();
+        write(file, buffer);
+
+        try (BatchWriter writer = new BatchWriter(file)) {
+            visitor.init(writer, buffer, FILE_HEADER_SIZE);
+            nodes.accept(visitor);
+            writer.finish();
+        }
+
+        final LeafIndex index = visitor.index();
+        index.sort();
+        index.write(buffer, buf -> write(file, buf));
+        buffer.clear()
+                .putInt(index.count())
+                .putLong(visitor.offset())
+                .put(INDEX_SIGNATURE)
+                .flip();
+        write(file, buffer);
+        return index.count();
+    }
+
+    /**
+     * Saves world on background thread. Snapshot of world is taken on calling thread (see {@link World#snapshot()}) so
+     * world may be modified right after this method returns. Asynchronous saves are done one after another in order
+     * of calls.
+     *
+     * @param fileSystem the file system
+     * @param world      the world to save
+     * @param name       the world name
+     * @param schedule   the schedule to report progress through
+     * @param progress   the progress listener called by schedule
+     * @return the future completed when file is written
+     */
+    public CompletableFuture<Void> saveAsync(FileSystem fileSystem, World world, String name, Schedule schedule, SaveProgress progress) {
+        final WorldSnapshot snapshot = world.snapshot();
+        final List<Node> nodes = snapshot.nodes();
+        final AtomicInteger saved = new AtomicInteger();
+        final CompletableFuture<Void> result;
+        synchronized (this) {
+            result = saving.handle((v, e) -> null)
+                    .thenRunAsync(() ->
+                            // buffers of this instance may be in use by other thread
+                            new WorldFile(container, workers).save(fileSystem, snapshot.rangeShift(), visitor -> {
+                                for (Node node : nodes) {
+                                    node.visit(NodePredicate.DEFAULT, visitor);
+                                    saved.lazySet(saved.get() + 1);
+                                }
+                            }, name), SAVER);
+            saving = result;
+        }
+        schedule.schedule(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS, () -> {
+            progress.progress(saved.get(), nodes.size());
+            if (!result.isDone()) {
+                return true;
+            }
+            progress.completed(result.handle((v, e) -> e).join());
+            return false;
+        });
+        return result;
     }
 
     public static void checkSignature(ByteBuffer buf, byte[] expected) {
@@ -92,41 +308,253 @@ public final class WorldFile {
         }
     }
 
-    public World load(FileSystem fileSystem, String name, NodeFactory factory) {
+    /**
+     * Reads next {@link #FILE_HEADER_SIZE} bytes from supplied buffer.
+     */
+    private static Header readHeader(ByteBuffer src) {
+        checkSignature(src, FILE_SIGNATURE);
+        final short version = src.getShort();
+        if (version <= 0 || version > FILE_VERSION) {
+            throw new RuntimeException("Unsupported version: " + version);
+        }
+        final byte rangeShift = src.get();
+        final byte leafRangeShift = src.get();
+        if (leafRangeShift != Leaf.SIDE_SHIFT) {
+            throw new RuntimeException("Incompatible leaf range shift: " + leafRangeShift);
+        }
+        return new Header(version, rangeShift);
+    }
+
+    /**
+     * Reads trailer and (if supplied) index using positional reads. Note that index is read through {@link #buffer}.
+     *
+     * @param index the index to fill or {@code null}
+     * @return the offset of index (which is also the end of chunks)
+     */
+    private long readTrailer(FileChannel file, LeafIndex index) throws IOException {
+        read(file, trailer.clear(), file.size() - TRAILER_SIZE);
+        trailer.flip();
+        final int count = trailer.getInt();
+        final long offset = trailer.getLong();
+        checkSignature(trailer, INDEX_SIGNATURE);
+        if (index != null) {
+            index.clear();
+            long position = offset;
+            for (int remaining = count; remaining > 0; ) {
+                final int entries = Math.min(remaining, buffer.capacity() / LeafIndex.ENTRY_SIZE);
+                buffer.clear().limit(entries * LeafIndex.ENTRY_SIZE);
+                read(file, buffer, position);
+                buffer.flip();
+                for (int n = 0; n < entries; n++) {
+                    index.read(buffer);
+                }
+                position += buffer.limit();
+                remaining -= entries;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @return the size of saved world file in bytes
+     */
+    long size(FileSystem fileSystem, String name) {
+        if (container == Container.PLAIN) {
+            try (FileChannel file = fileSystem.open(plainPath(name), StandardOpenOption.READ)) {
+                return file.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         try (FileSystem zipFs = fileSystem.mapArchive(path(name), false, true)) {
             try (FileChannel file = zipFs.open("world", StandardOpenOption.READ)) {
-                buffer.clear().limit(FILE_HEADER_SIZE);
-                read(file, buffer);
+                return file.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public World load(FileSystem fileSystem, String name, NodeFactory factory) {
+        return load(fileSystem, name, factory, null);
+    }
+
+    /**
+     * Loads chunks intersecting supplied box. Files of version 3 are read using index, older ones are scanned.
+     *
+     * @param fileSystem the file system
+     * @param name       the world name
+     * @param box        the region to load
+     * @param factory    the node factory
+     * @return the world with only part of blocks loaded (at least all blocks inside the box)
+     */
+    public World loadRegion(FileSystem fileSystem, String name, Box box, NodeFactory factory) {
+        return load(fileSystem, name, factory, box);
+    }
+
+    private World load(FileSystem fileSystem, String name, NodeFactory factory, Box region) {
+        final World world;
+        if (container == Container.PLAIN) {
+            try (FileChannel file = fileSystem.open(plainPath(name), StandardOpenOption.READ)) {
+                world = loadMapped(file, factory, region);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            try (FileSystem zipFs = fileSystem.mapArchive(path(name), false, true)) {
+                try (FileChannel file = zipFs.open("world", StandardOpenOption.READ)) {
+                    world = load(file, factory, region);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        logger.info("World \"{}\" has been loaded.", name);
+        return world;
+    }
+
+    private World load(FileChannel file, NodeFactory factory, Box region) throws IOException {
+        final Header header = readHeader(file);
+        final World world = new World(factory, header.rangeShift());
+        load(file, header, world, region);
+        return world;
+    }
+
+    /**
+     * Loads the whole file into existing world.
+     */
+    void load(FileChannel file, World world) throws IOException {
+        final Header header = readHeader(file);
+        if (header.rangeShift() != world.rangeShift()) {
+            throw new RuntimeException("World range shift mismatch: " + header.rangeShift());
+        }
+        load(file, header, world, null);
+    }
+
+    private Header readHeader(FileChannel file) throws IOException {
+        buffer.clear().flip();
+        if (!ensure(file, buffer, FILE_HEADER_SIZE)) {
+            throw new RuntimeException("Empty file!");
+        }
+        return readHeader(buffer);
+    }
+
+    private void load(FileChannel file, Header header, World world, Box region) throws IOException {
+        if (header.version() == 1) {
+            loadV1(file, world, region);
+        } else if (header.version() == 2) {
+            loadV2(file, world, region, Long.MAX_VALUE);
+        } else if (region == null) {
+            // trailer is read with positional read so sequential reading is not disturbed
+            loadV2(file, world, null, readTrailer(file, null));
+        } else {
+            loadIndexed(file, world, region);
+        }
+    }
+
+    private void loadV1(FileChannel file, World world, Box region) throws IOException {
+        final int range = 1 << Leaf.SIDE_SHIFT;
+        while (ensure(file, buffer, LEAF_CHUNK_SIZE)) {
+            checkSignature(buffer, LEAF_SIGNATURE);
+            final int iorg = buffer.getInt();
+            final int jorg = buffer.getInt();
+            final int korg = buffer.getInt();
+            if (region != null && !region.intersects(iorg, jorg, korg, range)) {
+                buffer.position(buffer.position() + Blocks.SIZE);
+                continue;
+            }
+            final Leaf leaf = world.leafForIndices(iorg, jorg, korg, true);
+            leaf.copyFrom(buffer);
+        }
+    }
+
+    /**
+     * Reads chunks sequentially.
+     *
+     * @param end the file offset of the end of chunks
+     */
+    private void loadV2(FileChannel file, World world, Box region, long end) throws IOException {
+        try (ChunkLoader loader = new ChunkLoader(world, region, workers)) {
+            for (long position = FILE_HEADER_SIZE; position < end && ensure(file, buffer, CHUNK_HEADER_SIZE); ) {
+                final int size = ChunkDecoder.chunkSize(buffer);
+                if (!ensure(file, buffer, size)) {
+                    throw new RuntimeException("Missing chunk payload!");
+                }
+                loader.chunk(buffer, size);
+                position += size;
+            }
+            loader.finish();
+        }
+    }
+
+    /**
+     * Reads chunks intersecting region using index. Adjacent chunks are read at once.
+     */
+    private void loadIndexed(FileChannel file, World world, Box region) throws IOException {
+        final LeafIndex index = new LeafIndex();
+        readTrailer(file, index);
+        try (ChunkLoader loader = new ChunkLoader(world, null, workers)) {
+            for (int n = 0; n < index.count(); ) {
+                if (!index.intersects(n, region)) {
+                    n++;
+                    continue;
+                }
+                final long offset = index.offset(n);
+                long end = offset + index.size(n);
+                int last = n + 1;
+                while (last < index.count() && index.offset(last) == end
+                        && end + index.size(last) - offset <= buffer.capacity() && index.intersects(last, region)) {
+                    end += index.size(last);
+                    last++;
+                }
+                buffer.clear().limit((int) (end - offset));
+                read(file, buffer, offset);
                 buffer.flip();
-                checkSignature(buffer, FILE_SIGNATURE);
-                final short version = buffer.getShort();
-                if (version <= 0 || version > FILE_VERSION) {
-                    throw new RuntimeException("Unsupported version: " + version);
+                for (; n < last; n++) {
+                    loader.chunk(buffer, index.size(n));
                 }
-                final byte rangeShift = buffer.get();
-                final byte leafRangeShift = buffer.get();
-                if (leafRangeShift != Leaf.SIDE_SHIFT) {
-                    throw new RuntimeException("Incompatible leaf range shift: " + leafRangeShift);
+            }
+            loader.finish();
+        }
+    }
+
+    /**
+     * Loads file through memory mapping. Only versions with chunk headers (2 and above) are supported.
+     */
+    private World loadMapped(FileChannel file, NodeFactory factory, Box region) throws IOException {
+        final MappedWindow window = new MappedWindow(file);
+        final Header header = readHeader(window.at(0, FILE_HEADER_SIZE));
+        if (header.version() < 2) {
+            throw new RuntimeException("Unsupported version of plain file: " + header.version());
+        }
+        final World world = new World(factory, header.rangeShift());
+        try (ChunkLoader loader = new ChunkLoader(world, region, workers)) {
+            if (region != null && header.version() > 2) {
+                final LeafIndex index = new LeafIndex();
+                readTrailer(file, index);
+                for (int n = 0; n < index.count(); n++) {
+                    if (index.intersects(n, region)) {
+                        loader.chunk(window.at(index.offset(n), index.size(n)), index.size(n));
+                    }
                 }
-                final World world = new World(factory, rangeShift);
-                buffer.clear().limit(LEAF_CHUNK_SIZE);
-                int leafs = 0;
-                while (file.read(buffer) == buffer.limit()) {
-                    buffer.flip();
-                    checkSignature(buffer, LEAF_SIGNATURE);
-                    final int iorg = buffer.getInt();
-                    final int jorg = buffer.getInt();
-                    final int korg = buffer.getInt();
-                    final Leaf leaf = world.leafForIndices(iorg, jorg, korg, true);
-                    leaf.visit(buffer::get);
-                    leafs++;
-                    buffer.clear().limit(LEAF_CHUNK_SIZE);
+            } else {
+                final long end = header.version() > 2
+                        ? readTrailer(file, null)
+                        : file.size();
+                // chunks are passed in batches of slices of mapping so workers decode them without copying
+                long start = FILE_HEADER_SIZE;
+                for (long position = start; position < end; ) {
+                    position += ChunkDecoder.chunkSize(window.at(position, CHUNK_HEADER_SIZE));
+                    if (position - start >= ChunkLoader.BATCH_SIZE || position >= end) {
+                        final int length = (int) (position - start);
+                        final ByteBuffer src = window.at(start, length);
+                        loader.chunks(src.slice(src.position(), length).order(ByteOrder.LITTLE_ENDIAN));
+                        start = position;
+                    }
                 }
-                logger.info("World \"{}\" has been loaded ({} leafs).", name, leafs);
-                return world;
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
             }
+            loader.finish();
         }
+        return world;
     }
 }
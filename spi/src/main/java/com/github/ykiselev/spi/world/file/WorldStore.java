@@ -0,0 +1,438 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.services.FileSystem;
+import com.github.ykiselev.spi.services.schedule.Schedule;
+import com.github.ykiselev.spi.world.Blocks;
+import com.github.ykiselev.spi.world.ChangeJournal;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.Morton;
+import com.github.ykiselev.spi.world.NodeFactory;
+import com.github.ykiselev.spi.world.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Log-structured world storage. World is kept as base file (see {@link WorldFile}) plus plain log file
+ * {@code universe/<name>.log}. Each {@link #save(World)} appends single segment to log holding only leaf cells
+ * modified since previous save (as reported by {@link ChangeJournal}). Segment starts with small header (signature,
+ * sequence number, number of chunks and payload length) followed by chunks in the same format as in base file; cells
+ * without leaf are written as uniform chunks (possibly of zero value) so replay also clears removed leaves.
+ * <p>
+ * When log grows past {@code compactionRatio} of base file size, base is rewritten asynchronously from world snapshot
+ * (see {@link WorldFile#saveAsync}) and segments written before the snapshot are dropped from log. The whole world is
+ * also rewritten this way on first save or if journal has overflowed.
+ * <p>
+ * Base is kept in one of two slots ({@code <name>} and {@code <name>.1}), compaction writes new base to the slot not
+ * in use. Small manifest {@code universe/<name>.manifest} names current slot and sequence number of the last segment
+ * covered by its base. Manifest is replaced atomically once new base is saved, so base and log always agree: load
+ * skips covered segments even if process was stopped before they were dropped from log.
+ * <p>
+ * Store is not thread-safe, it is expected to be used on the thread processing {@link Schedule}.
+ */
+public final class WorldStore {
+
+    private static final byte[] SEGMENT_SIGNATURE = new byte[]{'d', 'l', 't', 'a'};
+
+    private static final int SEGMENT_HEADER_SIZE = 4 + 8 + 4 + 4;
+
+    private static final byte[] MANIFEST_SIGNATURE = new byte[]{'m', 'n', 'f', 's'};
+
+    private static final int MANIFEST_SIZE = 4 + 1 + 8;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final FileSystem fileSystem;
+
+    private final WorldFile worldFile;
+
+    private final Schedule schedule;
+
+    private final String name;
+
+    private final double compactionRatio;
+
+    private final SaveLeafVisitor visitor = new SaveLeafVisitor();
+
+    private final ByteBuffer chunk = ByteBuffer.allocate(2 * Blocks.SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    private ByteBuffer segment = ByteBuffer.allocate(64 * 1024)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Morton keys of modified leaf cells.
+     */
+    private long[] modified = new long[256];
+
+    private int count;
+
+    private World world;
+
+    private ChangeJournal.Cursor cursor;
+
+    private long baseSize;
+
+    private long logSize = -1;
+
+    /**
+     * Slot of current base file or negative value if manifest is not read yet.
+     */
+    private int slot = -1;
+
+    /**
+     * Sequence number of the last segment covered by current base.
+     */
+    private long covered = -1;
+
+    /**
+     * Sequence number of the next segment.
+     */
+    private long sequence;
+
+    private boolean compacting;
+
+    private boolean compactionRequested;
+
+    /**
+     * @param fileSystem      the file system
+     * @param worldFile       the base file format
+     * @param schedule        the schedule used to report completion of compaction
+     * @param name            the world name
+     * @param compactionRatio the ratio of log size to base size which triggers compaction
+     */
+    public WorldStore(FileSystem fileSystem, WorldFile worldFile, Schedule schedule, String name, double compactionRatio) {
+        this.fileSystem = Objects.requireNonNull(fileSystem);
+        this.worldFile = Objects.requireNonNull(worldFile);
+        this.schedule = Objects.requireNonNull(schedule);
+        this.name = Objects.requireNonNull(name);
+        this.compactionRatio = compactionRatio;
+    }
+
+    public WorldStore(FileSystem fileSystem, WorldFile worldFile, Schedule schedule, String name) {
+        this(fileSystem, worldFile, schedule, name, 0.5);
+    }
+
+    private String logPath() {
+        return WorldFile.path(name) + ".log";
+    }
+
+    private String manifestPath() {
+        return WorldFile.path(name) + ".manifest";
+    }
+
+    private String baseName(int slot) {
+        return slot == 0 ? name : name + "." + slot;
+    }
+
+    /**
+     * @return the size of log in bytes
+     */
+    public long logSize() {
+        if (logSize < 0) {
+            try (FileChannel log = fileSystem.append(logPath())) {
+                logSize = log.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return logSize;
+    }
+
+    /**
+     * @return {@code true} if base file is being rewritten
+     */
+    public boolean isCompacting() {
+        return compacting;
+    }
+
+    /**
+     * Loads base file and replays log. Segments covered by base and incomplete segment at the end of log (left by
+     * interrupted write) are skipped, the latter is also dropped. Subsequent saves of returned world will be
+     * incremental.
+     *
+     * @param factory the node factory
+     * @return the loaded world
+     */
+    public World load(NodeFactory factory) {
+        readManifest();
+        final World result = worldFile.load(fileSystem, baseName(slot), factory);
+        baseSize = worldFile.size(fileSystem, baseName(slot));
+        replay(result);
+        attach(result);
+        return result;
+    }
+
+    private void readManifest() {
+        slot = 0;
+        covered = -1;
+        final Optional<ReadableByteChannel> channel = fileSystem.open(manifestPath());
+        if (channel.isEmpty()) {
+            return;
+        }
+        final ByteBuffer buf = ByteBuffer.allocate(MANIFEST_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try (ReadableByteChannel manifest = channel.get()) {
+            while (buf.hasRemaining()) {
+                if (manifest.read(buf) < 0) {
+                    throw new RuntimeException("Incomplete manifest of world \"" + name + "\"!");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.flip();
+        WorldFile.checkSignature(buf, MANIFEST_SIGNATURE);
+        slot = buf.get();
+        covered = buf.getLong();
+    }
+
+    private void writeManifest(int slot, long covered) {
+        final ByteBuffer buf = ByteBuffer.allocate(MANIFEST_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .put(MANIFEST_SIGNATURE)
+                .put((byte) slot)
+                .putLong(covered)
+                .flip();
+        final String tmp = manifestPath() + ".tmp";
+        try (FileChannel manifest = fileSystem.truncate(tmp)) {
+            while (buf.hasRemaining()) {
+                manifest.write(buf);
+            }
+            manifest.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fileSystem.replace(tmp, manifestPath());
+    }
+
+    /**
+     * Reads segment headers of log to find next sequence number, drops incomplete segment at the end of log.
+     *
+     * @param world the world to apply segments not covered by base to or {@code null} to only read headers
+     */
+    private void replay(World world) {
+        final ChunkDecoder decoder = new ChunkDecoder();
+        int segments = 0;
+        sequence = covered + 1;
+        try (FileChannel log = fileSystem.open(logPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final long size = log.size();
+            long position = 0;
+            while (position + SEGMENT_HEADER_SIZE <= size) {
+                segment.clear().limit(SEGMENT_HEADER_SIZE);
+                read(log, segment, position);
+                segment.flip();
+                WorldFile.checkSignature(segment, SEGMENT_SIGNATURE);
+                final long number = segment.getLong();
+                final int chunks = segment.getInt();
+                final int length = segment.getInt();
+                if (position + SEGMENT_HEADER_SIZE + length > size) {
+                    break;
+                }
+                if (world != null && number > covered) {
+                    ensureCapacity(length);
+                    segment.clear().limit(length);
+                    read(log, segment, position + SEGMENT_HEADER_SIZE);
+                    segment.flip();
+                    for (int n = 0; n < chunks; n++) {
+                        decoder.read(segment, world, null);
+                    }
+                    if (segment.hasRemaining()) {
+                        throw new RuntimeException("Segment size mismatch!");
+                    }
+                    segments++;
+                }
+                sequence = Math.max(sequence, number + 1);
+                position += SEGMENT_HEADER_SIZE + length;
+            }
+            if (position < size) {
+                logger.warn("Dropping {} bytes of incomplete log of world \"{}\"", size - position, name);
+                log.truncate(position);
+            }
+            logSize = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (world != null) {
+            logger.info("World \"{}\" log has been replayed ({} segments).", name, segments);
+        }
+    }
+
+    private static void read(FileChannel file, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            final int read = file.read(buf, position);
+            if (read < 0) {
+                throw new RuntimeException("Unexpected end of file at " + position);
+            }
+            position += read;
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (segment.capacity() < bytes) {
+            segment = ByteBuffer.allocate(Math.max(bytes, 2 * segment.capacity()))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private void attach(World world) {
+        this.world = world;
+        this.cursor = world.journal().cursor();
+    }
+
+    /**
+     * Saves modifications made to world since previous save. If supplied world is not the one previously loaded or
+     * saved by this store or some modifications were lost due to journal overflow then the whole world is rewritten.
+     *
+     * @param world the world to save
+     */
+    public void save(World world) {
+        if (slot < 0) {
+            readManifest();
+            replay(null);
+        }
+        count = 0;
+        if (world != this.world || !cursor.drain(this::modified)) {
+            attach(world);
+            compact();
+            return;
+        }
+        if (count > 0) {
+            append();
+        }
+        if (!compacting && baseSize > 0 && logSize() > compactionRatio * baseSize) {
+            compact();
+        }
+    }
+
+    private void modified(int iorg, int jorg, int korg) {
+        if (count == modified.length) {
+            modified = Arrays.copyOf(modified, 2 * count);
+        }
+        modified[count++] = Morton.encode(iorg >> Leaf.SIDE_SHIFT, jorg >> Leaf.SIDE_SHIFT, korg >> Leaf.SIDE_SHIFT);
+    }
+
+    private void append() {
+        Arrays.sort(modified, 0, count);
+        segment.clear().position(SEGMENT_HEADER_SIZE);
+        visitor.init(this::put, chunk, 0);
+        int chunks = 0;
+        for (int n = 0; n < count; n++) {
+            final long key = modified[n];
+            if (n > 0 && modified[n - 1] == key) {
+                continue;
+            }
+            final int iorg = Morton.i(key) << Leaf.SIDE_SHIFT;
+            final int jorg = Morton.j(key) << Leaf.SIDE_SHIFT;
+            final int korg = Morton.k(key) << Leaf.SIDE_SHIFT;
+            final Leaf leaf = world.leafForIndices(iorg, jorg, korg, false);
+            if (leaf != null && !leaf.isEmpty()) {
+                visitor.visit(leaf);
+            } else {
+                // cell is either part of uniform node or has no blocks at all
+                visitor.uniform(iorg, jorg, korg, Leaf.SIDE_SHIFT, leaf != null ? 0 : world.get(iorg, jorg, korg));
+            }
+            chunks++;
+        }
+        segment.put(0, SEGMENT_SIGNATURE)
+                .putLong(4, sequence)
+                .putInt(12, chunks)
+                .putInt(16, segment.position() - SEGMENT_HEADER_SIZE)
+                .flip();
+        try (FileChannel log = fileSystem.append(logPath())) {
+            while (segment.hasRemaining()) {
+                log.write(segment);
+            }
+            logSize = log.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        sequence++;
+    }
+
+    private void put(ByteBuffer src) {
+        if (segment.remaining() < src.remaining()) {
+            final ByteBuffer grown = ByteBuffer.allocate(2 * segment.capacity() + src.remaining())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            segment = grown.put(segment.flip());
+        }
+        segment.put(src);
+    }
+
+    /**
+     * Rewrites base file (to the other slot) from snapshot of world. Log segments written so far are covered by
+     * snapshot, once base is saved manifest is switched to the new slot and covered segments are dropped from log.
+     */
+    private void compact() {
+        if (compacting) {
+            compactionRequested = true;
+            return;
+        }
+        compacting = true;
+        final long bytes = logSize();
+        final long last = sequence - 1;
+        final int target = 1 - slot;
+        worldFile.saveAsync(fileSystem, world, baseName(target), schedule, new WorldFile.SaveProgress() {
+            @Override
+            public void progress(int saved, int total) {
+            }
+
+            @Override
+            public void completed(Throwable error) {
+                compacting = false;
+                if (error != null) {
+                    logger.error("Unable to compact world \"{}\"!", name, error);
+                    return;
+                }
+                writeManifest(target, last);
+                slot = target;
+                covered = last;
+                dropHead(bytes);
+                baseSize = worldFile.size(fileSystem, baseName(slot));
+                if (compactionRequested) {
+                    compactionRequested = false;
+                    compact();
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes first {@code bytes} of log keeping segments appended after that. Remaining segments are written to
+     * temporary file which then replaces log, so log is never left partially written.
+     */
+    private void dropHead(long bytes) {
+        final int tail;
+        try (FileChannel log = fileSystem.open(logPath(), StandardOpenOption.READ)) {
+            tail = (int) (log.size() - bytes);
+            ensureCapacity(tail);
+            segment.clear().limit(tail);
+            read(log, segment, bytes);
+            segment.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final String tmp = logPath() + ".tmp";
+        try (FileChannel log = fileSystem.truncate(tmp)) {
+            while (segment.hasRemaining()) {
+                log.write(segment);
+            }
+            log.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fileSystem.replace(tmp, logPath());
+        logSize = tail;
+    }
+}
@@ -0,0 +1,503 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.services.FileSystem;
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.ChangeJournal;
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.Morton;
+import com.github.ykiselev.spi.world.Node;
+import com.github.ykiselev.spi.world.Regions;
+import com.github.ykiselev.spi.world.UniformNode;
+import com.github.ykiselev.spi.world.Visitor;
+import com.github.ykiselev.spi.world.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps regions of world around the viewer resident (see {@link RegionStore}). Missing regions within load radius are
+ * requested nearest first, region files are read and decoded by worker threads into private staging worlds and then
+ * inserted into world on the calling thread, at most {@link Settings#insertBudget()} nodes per {@link #update} call.
+ * Regions beyond unload radius are evicted (modified regions are saved first). If estimated size of resident leaves
+ * exceeds the budget no new loads are started and farthest regions are swapped for nearer missing ones.
+ * <p>
+ * Leaf cells modified while their region is loading are kept intact by insertion and region is saved once inserted
+ * (such region is inserted even if it is beyond unload radius already or its file could not be read).
+ * <p>
+ * Modified regions are found with own journal cursor, so streamer should be the only writer of world except the
+ * thread calling {@link #update}. Streamer is not thread-safe, all methods should be called on the same thread.
+ */
+public final class WorldStreamer implements AutoCloseable {
+
+    /**
+     * @param loadRadius   the distance (in blocks) from viewer to region within which region should be loaded
+     * @param unloadRadius the distance (in blocks) from viewer to region beyond which region is evicted
+     * @param budget       the estimated heap size of resident leaves in megabytes
+     * @param insertBudget the maximum number of nodes inserted into world per update
+     */
+    public record Settings(int loadRadius, int unloadRadius, int budget, int insertBudget) {
+
+        public Settings {
+            if (loadRadius < 0 || unloadRadius < loadRadius) {
+                throw new IllegalArgumentException("Bad radii: " + loadRadius + ", " + unloadRadius);
+            }
+            if (budget < 1 || insertBudget < 1) {
+                throw new IllegalArgumentException("Bad budget: " + budget + ", " + insertBudget);
+            }
+        }
+    }
+
+    /**
+     * @param queued         the number of regions waiting to be requested
+     * @param loading        the number of regions being read or inserted
+     * @param resident       the number of resident regions
+     * @param residentBytes  the estimated heap size of resident leaves
+     * @param loads          the total number of loaded regions
+     * @param averageLatency the average time from request to insertion of last node in milliseconds
+     * @param maxLatency     the maximum time from request to insertion of last node in milliseconds
+     */
+    public record Metrics(int queued, int loading, int resident, long residentBytes, long loads,
+                          double averageLatency, double maxLatency) {
+    }
+
+    private record Load(long region, long requested, List<Node> nodes, RuntimeException error) {
+    }
+
+    private record Candidate(long region, long distance) {
+    }
+
+    private static final ChangeJournal.Origins DISCARD = (i, j, k) -> {
+    };
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final World world;
+
+    private final Regions regions;
+
+    private final Settings settings;
+
+    private final RegionStore store;
+
+    private final ThreadLocal<RegionStore> loaders;
+
+    private final ExecutorService executor;
+
+    private final int maxLoading;
+
+    private final ChangeJournal.Cursor changes;
+
+    /**
+     * Resident regions and estimated sizes of their leaves.
+     */
+    private final Map<Long, Long> resident = new HashMap<>();
+
+    /**
+     * Modified regions, either resident or loading.
+     */
+    private final Set<Long> dirty = new HashSet<>();
+
+    /**
+     * Morton keys of leaf cells modified while their regions were loading.
+     */
+    private final Set<Long> edited = new HashSet<>();
+
+    /**
+     * Regions requested but not inserted yet.
+     */
+    private final Set<Long> loading = new HashSet<>();
+
+    /**
+     * Regions which failed to load, these are never requested again.
+     */
+    private final Set<Long> failed = new HashSet<>();
+
+    private final Queue<Load> completed = new ConcurrentLinkedQueue<>();
+
+    private final List<Candidate> candidates = new ArrayList<>();
+
+    private Load inserting;
+
+    private int next;
+
+    private long insertedBytes;
+
+    private long residentBytes;
+
+    private int i, j, k, queued;
+
+    private long loads, totalLatency, maxLatency;
+
+    /**
+     * @param fileSystem the file system
+     * @param name       the name of world
+     * @param world      the world to stream regions to (its region shift should match the one used to save regions)
+     * @param settings   the streaming settings
+     * @param workers    the number of worker threads
+     */
+    public WorldStreamer(FileSystem fileSystem, String name, World world, Settings settings, int workers) {
+        this.world = Objects.requireNonNull(world);
+        this.regions = world.regions();
+        this.settings = Objects.requireNonNull(settings);
+        this.store = new RegionStore(fileSystem, name);
+        this.loaders = ThreadLocal.withInitial(() -> new RegionStore(fileSystem, name));
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            final Thread thread = new Thread(r, "world-streamer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxLoading = 2 * workers;
+        this.changes = world.journal().cursor();
+    }
+
+    /**
+     * Should be called once per frame.
+     *
+     * @param x the viewer x coordinate
+     * @param y the viewer y coordinate
+     * @param z the viewer z coordinate
+     */
+    public void update(float x, float y, float z) {
+        i = (int) Math.floor(x);
+        j = (int) Math.floor(y);
+        k = (int) Math.floor(z);
+        trackChanges();
+        insert();
+        // drop records made by insertion (and unloading of replaced region)
+        changes.drain(DISCARD);
+        collectCandidates();
+        evict();
+        request();
+    }
+
+    /**
+     * Saves all modified resident regions. Modified regions which are still loading are saved after insertion.
+     */
+    public void save() {
+        trackChanges();
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext(); ) {
+            final long region = it.next();
+            if (resident.containsKey(region)) {
+                store.save(world, region);
+                it.remove();
+            }
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(queued, loading.size(), resident.size(), residentBytes, loads,
+                loads > 0 ? totalLatency / 1e6 / loads : 0, maxLatency / 1e6);
+    }
+
+    public String formatStats() {
+        final Metrics m = metrics();
+        return String.format("regions: %d (%.1f MB), queued: %d, loading: %d, latency (ms): avg: %.1f, max: %.1f",
+                m.resident(), m.residentBytes() / (1024.0 * 1024.0), m.queued(), m.loading(),
+                m.averageLatency(), m.maxLatency());
+    }
+
+    /**
+     * Saves modified regions and stops worker threads.
+     */
+    @Override
+    public void close() {
+        try {
+            save();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void trackChanges() {
+        if (!changes.drain(this::changed)) {
+            dirty.addAll(resident.keySet());
+            for (long region : loading) {
+                protect(region);
+            }
+        }
+    }
+
+    /**
+     * Marks loading region as modified treating all its non-empty leaf cells as edited. Used when journal has
+     * overflowed and actual edits are unknown. Cells of partially inserted region already hold loaded blocks, so
+     * keeping them intact is safe.
+     */
+    private void protect(long region) {
+        dirty.add(region);
+        final Box box = regions.box(region);
+        final int range = 1 << Leaf.SIDE_SHIFT;
+        world.visit(new RegionStore.RegionPredicate(box), new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                if (!leaf.isEmpty()) {
+                    edited.add(Morton.encode(leaf.iorg() >> Leaf.SIDE_SHIFT, leaf.jorg() >> Leaf.SIDE_SHIFT,
+                            leaf.korg() >> Leaf.SIDE_SHIFT));
+                }
+            }
+
+            @Override
+            public void visit(UniformNode node) {
+                if (node.isEmpty()) {
+                    return;
+                }
+                final int i1 = Math.min(box.i1(), node.iorg() + node.range()),
+                        j1 = Math.min(box.j1(), node.jorg() + node.range()),
+                        k1 = Math.min(box.k1(), node.korg() + node.range());
+                for (int k = Math.max(box.k0(), node.korg()); k < k1; k += range) {
+                    for (int j = Math.max(box.j0(), node.jorg()); j < j1; j += range) {
+                        for (int i = Math.max(box.i0(), node.iorg()); i < i1; i += range) {
+                            edited.add(Morton.encode(i >> Leaf.SIDE_SHIFT, j >> Leaf.SIDE_SHIFT, k >> Leaf.SIDE_SHIFT));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void changed(int iorg, int jorg, int korg) {
+        final long region = regions.key(iorg, jorg, korg);
+        if (resident.containsKey(region)) {
+            dirty.add(region);
+        } else if (loading.contains(region)) {
+            dirty.add(region);
+            edited.add(Morton.encode(iorg >> Leaf.SIDE_SHIFT, jorg >> Leaf.SIDE_SHIFT, korg >> Leaf.SIDE_SHIFT));
+        }
+    }
+
+    private void insert() {
+        int budget = settings.insertBudget();
+        while (budget > 0) {
+            if (inserting == null && !begin()) {
+                break;
+            }
+            final List<Node> nodes = inserting.nodes();
+            for (; next < nodes.size() && budget > 0; next++, budget--) {
+                insert(nodes.get(next));
+            }
+            if (next == nodes.size()) {
+                finish();
+            }
+        }
+    }
+
+    private boolean begin() {
+        Load load;
+        while ((load = completed.poll()) != null) {
+            final boolean modified = dirty.contains(load.region());
+            if (load.error() != null) {
+                logger.error("Unable to load region {}!", regions.box(load.region()), load.error());
+                if (!modified) {
+                    failed.add(load.region());
+                } else {
+                    // region becomes resident holding only edited cells so these are saved
+                    load = new Load(load.region(), load.requested(), List.of(), null);
+                }
+            }
+            // modified region is inserted even if it is too far already, eviction then saves it
+            if (load.error() == null && (modified || distance(load.region()) <= square(settings.unloadRadius()))) {
+                final List<Node> kept = edits(load.region());
+                world.unload(load.region());
+                inserting = load;
+                next = 0;
+                insertedBytes = 0;
+                for (Node node : kept) {
+                    put(node);
+                }
+                return true;
+            }
+            loading.remove(load.region());
+        }
+        return false;
+    }
+
+    /**
+     * @return copies of edited leaf cells of region
+     */
+    private List<Node> edits(long region) {
+        final List<Node> result = new ArrayList<>();
+        for (long cell : edited) {
+            final int iorg = Morton.i(cell) << Leaf.SIDE_SHIFT;
+            final int jorg = Morton.j(cell) << Leaf.SIDE_SHIFT;
+            final int korg = Morton.k(cell) << Leaf.SIDE_SHIFT;
+            if (regions.key(iorg, jorg, korg) == region) {
+                final Leaf leaf = world.leafForIndices(iorg, jorg, korg, false);
+                result.add(leaf != null
+                        ? leaf.snapshot()
+                        : new UniformNode().init(iorg, jorg, korg, Leaf.SIDE_SHIFT, world.get(iorg, jorg, korg)));
+            }
+        }
+        return result;
+    }
+
+    private void forget(long region) {
+        edited.removeIf(cell -> regions.key(Morton.i(cell) << Leaf.SIDE_SHIFT, Morton.j(cell) << Leaf.SIDE_SHIFT,
+                Morton.k(cell) << Leaf.SIDE_SHIFT) == region);
+    }
+
+    /**
+     * Inserts loaded node skipping edited leaf cells.
+     */
+    private void insert(Node node) {
+        if (edited.isEmpty()) {
+            put(node);
+        } else if (node instanceof Leaf leaf) {
+            if (!edited.contains(Morton.encode(leaf.iorg() >> Leaf.SIDE_SHIFT, leaf.jorg() >> Leaf.SIDE_SHIFT,
+                    leaf.korg() >> Leaf.SIDE_SHIFT))) {
+                put(leaf);
+            }
+        } else if (node instanceof UniformNode uniform) {
+            fill(Box.of(uniform), uniform.value());
+        }
+    }
+
+    private void fill(Box box, int value) {
+        final int range = 1 << Leaf.SIDE_SHIFT;
+        if (edited.stream().noneMatch(cell -> box.contains(Morton.i(cell) << Leaf.SIDE_SHIFT,
+                Morton.j(cell) << Leaf.SIDE_SHIFT, Morton.k(cell) << Leaf.SIDE_SHIFT, range))) {
+            world.fill(box, value);
+            return;
+        }
+        for (int k = box.k0(); k < box.k1(); k += range) {
+            for (int j = box.j0(); j < box.j1(); j += range) {
+                for (int i = box.i0(); i < box.i1(); i += range) {
+                    final long cell = Morton.encode(i >> Leaf.SIDE_SHIFT, j >> Leaf.SIDE_SHIFT, k >> Leaf.SIDE_SHIFT);
+                    if (!edited.contains(cell)) {
+                        world.fill(new Box(i, j, k, i + range, j + range, k + range), value);
+                    }
+                }
+            }
+        }
+    }
+
+    private void put(Node node) {
+        if (node instanceof Leaf leaf) {
+            final Leaf dest = world.leafForIndices(leaf.iorg(), leaf.jorg(), leaf.korg(), true);
+            leaf.visit(blocks -> dest.copyFrom(ByteBuffer.wrap(blocks)));
+            insertedBytes += dest.sizeInBytes();
+        } else if (node instanceof UniformNode uniform) {
+            world.fill(Box.of(uniform), uniform.value());
+        }
+    }
+
+    private void finish() {
+        final long region = inserting.region();
+        final long latency = System.nanoTime() - inserting.requested();
+        loading.remove(region);
+        forget(region);
+        regions.markLoaded(region);
+        resident.put(region, insertedBytes);
+        residentBytes += insertedBytes;
+        loads++;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+        inserting = null;
+    }
+
+    private void collectCandidates() {
+        candidates.clear();
+        final int shift = regions.shift(), radius = settings.loadRadius();
+        final int last = (1 << world.rangeShift() >> shift) - 1;
+        final long limit = square(radius);
+        for (int rk = Math.max(0, (k - radius) >> shift); rk <= Math.min(last, (k + radius) >> shift); rk++) {
+            for (int rj = Math.max(0, (j - radius) >> shift); rj <= Math.min(last, (j + radius) >> shift); rj++) {
+                for (int ri = Math.max(0, (i - radius) >> shift); ri <= Math.min(last, (i + radius) >> shift); ri++) {
+                    final long region = regions.key(ri << shift, rj << shift, rk << shift);
+                    if (resident.containsKey(region) || loading.contains(region) || failed.contains(region)) {
+                        continue;
+                    }
+                    final long distance = distance(region);
+                    if (distance <= limit) {
+                        candidates.add(new Candidate(region, distance));
+                    }
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(Candidate::distance));
+    }
+
+    private void evict() {
+        final long limit = square(settings.unloadRadius());
+        final List<Candidate> byDistance = new ArrayList<>(resident.size());
+        for (long region : resident.keySet()) {
+            byDistance.add(new Candidate(region, distance(region)));
+        }
+        byDistance.sort(Comparator.comparingLong(Candidate::distance).reversed());
+        final long nearest = candidates.isEmpty() ? Long.MAX_VALUE : candidates.get(0).distance();
+        for (Candidate c : byDistance) {
+            if (c.distance() > limit
+                    || (residentBytes >= budgetBytes() && c.distance() > nearest)) {
+                evict(c.region());
+            }
+        }
+    }
+
+    private void evict(long region) {
+        if (dirty.remove(region)) {
+            store.save(world, region);
+        }
+        world.unload(region);
+        residentBytes -= resident.remove(region);
+    }
+
+    private void request() {
+        int n = 0;
+        for (; n < candidates.size() && loading.size() < maxLoading && residentBytes < budgetBytes(); n++) {
+            final long region = candidates.get(n).region(), requested = System.nanoTime();
+            loading.add(region);
+            executor.execute(() -> completed.add(load(region, requested)));
+        }
+        queued = candidates.size() - n;
+    }
+
+    /**
+     * Reads region into staging world. Called by worker threads.
+     */
+    private Load load(long region, long requested) {
+        try {
+            final World staging = new World(DefaultNodeFactory.palette(), world.rangeShift(), 1, regions.shift());
+            loaders.get().load(staging, region);
+            return new Load(region, requested, staging.snapshot().nodes(), null);
+        } catch (RuntimeException e) {
+            return new Load(region, requested, List.of(), e);
+        }
+    }
+
+    private long budgetBytes() {
+        return settings.budget() * 1024L * 1024L;
+    }
+
+    /**
+     * @return the squared distance from viewer to the nearest block of region
+     */
+    private long distance(long region) {
+        final Box box = regions.box(region);
+        return square(axis(i, box.i0(), box.i1())) + square(axis(j, box.j0(), box.j1()))
+                + square(axis(k, box.k0(), box.k1()));
+    }
+
+    private static long axis(int value, int from, int to) {
+        if (value < from) {
+            return from - value;
+        }
+        return value >= to ? value - to + 1 : 0;
+    }
+
+    private static long square(long value) {
+        return value * value;
+    }
+}
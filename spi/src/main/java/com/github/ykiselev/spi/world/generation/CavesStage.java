@@ -0,0 +1,38 @@
+package com.github.ykiselev.spi.world.generation;
+
+import java.util.Objects;
+
+/**
+ * Carves caves in solid blocks where 3d noise exceeds threshold. Bottom layer (k = 0) is never carved.
+ */
+public final class CavesStage implements GenerationStage {
+
+    private final PerlinNoise noise;
+
+    private final double scale;
+
+    private final double threshold;
+
+    public CavesStage(PerlinNoise noise, double scale, double threshold) {
+        this.noise = Objects.requireNonNull(noise);
+        this.scale = scale;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void apply(Column column) {
+        for (int k = 1; k < column.top(); k++) {
+            for (int j = 0; j < Column.SIDE; j++) {
+                for (int i = 0; i < Column.SIDE; i++) {
+                    if (column.get(i, j, k) == 0) {
+                        continue;
+                    }
+                    final double n = noise.get((column.iorg() + i) * scale, (column.jorg() + j) * scale, k * scale);
+                    if (n > threshold) {
+                        column.put(i, j, k, 0);
+                    }
+                }
+            }
+        }
+    }
+}
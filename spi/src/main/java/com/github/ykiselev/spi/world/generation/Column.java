@@ -0,0 +1,99 @@
+package com.github.ykiselev.spi.world.generation;
+
+import com.github.ykiselev.spi.world.Blocks;
+import com.github.ykiselev.spi.world.Leaf;
+
+import java.util.Arrays;
+
+/**
+ * Column of leaves being generated. Blocks are laid out the same way as in stacked leaves so each leaf-sized slice
+ * ({@link Blocks#SIZE} bytes starting at {@code (k >> Leaf.SIDE_SHIFT) * Blocks.SIZE}) may be copied to leaf at once.
+ */
+public final class Column {
+
+    public static final int SIDE = 1 << Leaf.SIDE_SHIFT;
+
+    private final byte[] data;
+
+    private final int height;
+
+    private int iorg, jorg;
+
+    /**
+     * All blocks at k >= top are zero
+     */
+    private int top;
+
+    public Column(int height) {
+        this.height = height;
+        this.data = new byte[SIDE * SIDE * height];
+    }
+
+    public Column init(int iorg, int jorg) {
+        this.iorg = iorg;
+        this.jorg = jorg;
+        Arrays.fill(data, 0, index(0, 0, top), (byte) 0);
+        this.top = 0;
+        return this;
+    }
+
+    public int iorg() {
+        return iorg;
+    }
+
+    public int jorg() {
+        return jorg;
+    }
+
+    /**
+     * @return number of blocks along k axis
+     */
+    public int height() {
+        return height;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    /**
+     * @return the k index above which all blocks are zero
+     */
+    public int top() {
+        return top;
+    }
+
+    private static int index(int i, int j, int k) {
+        return i + (j << Leaf.SIDE_SHIFT) + (k << (2 * Leaf.SIDE_SHIFT));
+    }
+
+    /**
+     * @param i the i index relative to column origin
+     * @param j the j index relative to column origin
+     * @param k the absolute k index
+     * @return the block value
+     */
+    public int get(int i, int j, int k) {
+        return data[index(i, j, k)];
+    }
+
+    public void put(int i, int j, int k, int value) {
+        data[index(i, j, k)] = (byte) value;
+        if (value != 0 && k >= top) {
+            top = k + 1;
+        }
+    }
+
+    /**
+     * Sets blocks from k0 (inclusive) to k1 (exclusive) at (i, j) to the same value.
+     */
+    public void fill(int i, int j, int k0, int k1, int value) {
+        final int to = Math.min(k1, height);
+        for (int k = Math.max(k0, 0); k < to; k++) {
+            data[index(i, j, k)] = (byte) value;
+        }
+        if (value != 0 && to > top) {
+            top = to;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.ykiselev.spi.world.generation;
+
+/**
+ * Flat slab of blocks starting from k = 0.
+ */
+public final class FloorStage implements GenerationStage {
+
+    private final int height;
+
+    private final int value;
+
+    public FloorStage(int height, int value) {
+        this.height = height;
+        this.value = value;
+    }
+
+    @Override
+    public void apply(Column column) {
+        for (int j = 0; j < Column.SIDE; j++) {
+            for (int i = 0; i < Column.SIDE; i++) {
+                column.fill(i, j, 0, height, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.ykiselev.spi.world.generation;
+
+/**
+ * Single step of world generation. Stages are applied in order to each column of leaves and may be called from
+ * several threads at once, so implementations should be thread-safe (ideally stateless).
+ */
+public interface GenerationStage {
+
+    void apply(Column column);
+}
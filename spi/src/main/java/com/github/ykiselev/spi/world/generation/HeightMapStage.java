@@ -0,0 +1,45 @@
+package com.github.ykiselev.spi.world.generation;
+
+import java.util.Objects;
+
+/**
+ * Fills each (i, j) column from k = 0 up to the height taken from 2d noise.
+ */
+public final class HeightMapStage implements GenerationStage {
+
+    private final PerlinNoise noise;
+
+    private final double scale;
+
+    private final int base;
+
+    private final int amplitude;
+
+    private final int value;
+
+    /**
+     * @param noise     the noise
+     * @param scale     the noise coordinates per block
+     * @param base      the average height
+     * @param amplitude the maximum deviation from average height
+     * @param value     the block value
+     */
+    public HeightMapStage(PerlinNoise noise, double scale, int base, int amplitude, int value) {
+        this.noise = Objects.requireNonNull(noise);
+        this.scale = scale;
+        this.base = base;
+        this.amplitude = amplitude;
+        this.value = value;
+    }
+
+    @Override
+    public void apply(Column column) {
+        for (int j = 0; j < Column.SIDE; j++) {
+            for (int i = 0; i < Column.SIDE; i++) {
+                final double n = noise.octaves((column.iorg() + i) * scale, (column.jorg() + j) * scale, 0, 4, 0.5);
+                final int height = base + (int) (amplitude * n);
+                column.fill(i, j, 0, Math.max(height, 1), value);
+            }
+        }
+    }
+}
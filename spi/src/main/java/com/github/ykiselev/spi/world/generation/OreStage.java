@@ -0,0 +1,51 @@
+package com.github.ykiselev.spi.world.generation;
+
+/**
+ * Replaces random solid blocks below specified height with ore. Choice is a pure function of block position and seed
+ * so result does not depend on the order of column processing.
+ */
+public final class OreStage implements GenerationStage {
+
+    private final long seed;
+
+    private final int value;
+
+    private final double chance;
+
+    private final int maxHeight;
+
+    /**
+     * @param seed      the seed
+     * @param value     the ore block value
+     * @param chance    the probability of solid block to become ore
+     * @param maxHeight ore is placed only below this height
+     */
+    public OreStage(long seed, int value, double chance, int maxHeight) {
+        this.seed = seed;
+        this.value = value;
+        this.chance = chance;
+        this.maxHeight = maxHeight;
+    }
+
+    private long hash(int i, int j, int k) {
+        long h = seed ^ (i * 0x9E3779B97F4A7C15L) ^ (j * 0xC2B2AE3D27D4EB4FL) ^ (k * 0x165667B19E3779F9L);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    @Override
+    public void apply(Column column) {
+        final long limit = (long) (chance * (1L << 53));
+        for (int k = 0; k < Math.min(maxHeight, column.top()); k++) {
+            for (int j = 0; j < Column.SIDE; j++) {
+                for (int i = 0; i < Column.SIDE; i++) {
+                    if (column.get(i, j, k) != 0
+                            && (hash(column.iorg() + i, column.jorg() + j, k) >>> 11) < limit) {
+                        column.put(i, j, k, value);
+                    }
+                }
+            }
+        }
+    }
+}
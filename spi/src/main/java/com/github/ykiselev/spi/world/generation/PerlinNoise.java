@@ -0,0 +1,80 @@
+package com.github.ykiselev.spi.world.generation;
+
+import java.util.Random;
+
+/**
+ * Improved Perlin noise with seeded permutation. Instances are immutable and thread-safe.
+ */
+public final class PerlinNoise {
+
+    private final int[] p = new int[512];
+
+    public PerlinNoise(long seed) {
+        final int[] permutation = new int[256];
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = i;
+        }
+        final Random rnd = new Random(seed);
+        for (int i = permutation.length - 1; i > 0; i--) {
+            final int j = rnd.nextInt(i + 1);
+            final int t = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = t;
+        }
+        for (int i = 0; i < p.length; i++) {
+            p[i] = permutation[i & 255];
+        }
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    private static double grad(int hash, double x, double y, double z) {
+        final int h = hash & 15;
+        final double u = h < 8 ? x : y;
+        final double v = h < 4 ? y : h == 12 || h == 14 ? x : z;
+        return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
+    }
+
+    /**
+     * @return noise value in range [-1, 1]
+     */
+    public double get(double x, double y, double z) {
+        final double fx = Math.floor(x), fy = Math.floor(y), fz = Math.floor(z);
+        final int X = (int) fx & 255, Y = (int) fy & 255, Z = (int) fz & 255;
+        x -= fx;
+        y -= fy;
+        z -= fz;
+        final double u = fade(x), v = fade(y), w = fade(z);
+        final int A = p[X] + Y, AA = p[A] + Z, AB = p[A + 1] + Z,
+                B = p[X + 1] + Y, BA = p[B] + Z, BB = p[B + 1] + Z;
+        return lerp(w,
+                lerp(v,
+                        lerp(u, grad(p[AA], x, y, z), grad(p[BA], x - 1, y, z)),
+                        lerp(u, grad(p[AB], x, y - 1, z), grad(p[BB], x - 1, y - 1, z))),
+                lerp(v,
+                        lerp(u, grad(p[AA + 1], x, y, z - 1), grad(p[BA + 1], x - 1, y, z - 1)),
+                        lerp(u, grad(p[AB + 1], x, y - 1, z - 1), grad(p[BB + 1], x - 1, y - 1, z - 1))));
+    }
+
+    /**
+     * Sum of several octaves of noise, each next one having doubled frequency and amplitude multiplied by persistence.
+     *
+     * @return normalized noise value in range [-1, 1]
+     */
+    public double octaves(double x, double y, double z, int octaves, double persistence) {
+        double total = 0, frequency = 1, amplitude = 1, max = 0;
+        for (int i = 0; i < octaves; i++) {
+            total += get(x * frequency, y * frequency, z * frequency) * amplitude;
+            max += amplitude;
+            amplitude *= persistence;
+            frequency *= 2;
+        }
+        return total / max;
+    }
+}
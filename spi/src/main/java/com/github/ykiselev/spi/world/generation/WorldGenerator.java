@@ -1,20 +1,137 @@
 package com.github.ykiselev.spi.world.generation;
 
+import com.github.ykiselev.spi.world.Blocks;
+import com.github.ykiselev.spi.world.Leaf;
 import com.github.ykiselev.spi.world.NodeFactory;
 import com.github.ykiselev.spi.world.World;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates world column by column applying {@link GenerationStage}'s to each column of leaves. Columns are split
+ * between threads of {@link ForkJoinPool}, each generated leaf is written to world at once. Node factory should be
+ * thread-safe.
+ */
 public final class WorldGenerator {
 
+    /**
+     * Maximum number of columns processed by single fork/join task.
+     */
+    private static final int COLUMNS_PER_TASK = 8;
+
+    private final ForkJoinPool pool;
+
+    private final List<GenerationStage> stages;
+
+    public WorldGenerator(ForkJoinPool pool, List<GenerationStage> stages) {
+        this.pool = Objects.requireNonNull(pool);
+        this.stages = List.copyOf(stages);
+    }
+
+    public WorldGenerator(List<GenerationStage> stages) {
+        this(ForkJoinPool.commonPool(), stages);
+    }
+
+    /**
+     * Creates generator of flat 8 blocks thick floor.
+     */
+    public WorldGenerator() {
+        this(List.of(new FloorStage(8, 1)));
+    }
+
+    public List<GenerationStage> stages() {
+        return stages;
+    }
+
+    /**
+     * @param seed the seed
+     * @return generator of noise-based terrain with caves and ores
+     */
+    public static WorldGenerator terrain(long seed) {
+        return new WorldGenerator(
+                List.of(
+                        new HeightMapStage(new PerlinNoise(seed), 1.0 / 256, 64, 48, 1),
+                        new CavesStage(new PerlinNoise(seed + 1), 1.0 / 32, 0.35),
+                        new OreStage(seed + 2, 2, 0.01, 48)
+                )
+        );
+    }
+
     public World generate(NodeFactory factory, int dimSize) {
         World world = new World(factory, (byte) Integer.numberOfTrailingZeros(dimSize));
+        final int columns = dimSize >> Leaf.SIDE_SHIFT;
+        pool.invoke(new ColumnsTask(world, 0, 0, columns, columns));
+        return world;
+    }
 
-        for (int k = 0; k < Math.min(8, dimSize / 8); k++) {
-            for (int j = 0; j < dimSize; j++) {
-                for (int i = 0; i < dimSize; i++) {
-                    world.put(i, j, k, 1);
+    private void generate(World world, Column column) {
+        for (GenerationStage stage : stages) {
+            stage.apply(column);
+        }
+        final byte[] data = column.data();
+        final int leafRange = 1 << Leaf.SIDE_SHIFT;
+        final int end = ((column.top() + leafRange - 1) >> Leaf.SIDE_SHIFT) * Blocks.SIZE;
+        for (int offset = 0, korg = 0; offset < end; offset += Blocks.SIZE, korg += leafRange) {
+            final byte first = data[offset];
+            boolean uniform = true;
+            for (int i = offset + 1; i < offset + Blocks.SIZE; i++) {
+                if (data[i] != first) {
+                    uniform = false;
+                    break;
+                }
+            }
+            if (uniform) {
+                if (first != 0) {
+                    world.fill(column.iorg(), column.jorg(), korg,
+                            column.iorg() + leafRange, column.jorg() + leafRange, korg + leafRange, first);
                 }
+            } else {
+                world.leafForIndices(column.iorg(), column.jorg(), korg, true)
+                        .copyFrom(ByteBuffer.wrap(data, offset, Blocks.SIZE));
+            }
+        }
+    }
+
+    /**
+     * Generates rectangle of columns [ci0, ci1) x [cj0, cj1) (in leaf units).
+     */
+    private final class ColumnsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final World world;
+
+        private final int ci0, cj0, ci1, cj1;
+
+        ColumnsTask(World world, int ci0, int cj0, int ci1, int cj1) {
+            this.world = world;
+            this.ci0 = ci0;
+            this.cj0 = cj0;
+            this.ci1 = ci1;
+            this.cj1 = cj1;
+        }
+
+        @Override
+        protected void compute() {
+            final int di = ci1 - ci0, dj = cj1 - cj0;
+            if (di * dj <= COLUMNS_PER_TASK) {
+                final Column column = new Column(1 << world.rangeShift());
+                for (int cj = cj0; cj < cj1; cj++) {
+                    for (int ci = ci0; ci < ci1; ci++) {
+                        generate(world, column.init(ci << Leaf.SIDE_SHIFT, cj << Leaf.SIDE_SHIFT));
+                    }
+                }
+            } else if (di >= dj) {
+                final int mid = ci0 + di / 2;
+                invokeAll(new ColumnsTask(world, ci0, cj0, mid, cj1), new ColumnsTask(world, mid, cj0, ci1, cj1));
+            } else {
+                final int mid = cj0 + dj / 2;
+                invokeAll(new ColumnsTask(world, ci0, cj0, ci1, mid), new ColumnsTask(world, ci0, mid, ci1, cj1));
             }
         }
-        return world;
     }
 }
@@ -0,0 +1,22 @@
+package com.github.ykiselev.spi.world.mesh;
+
+/**
+ * Rendering properties of block values needed for meshing.
+ */
+@FunctionalInterface
+public interface BlockMaterials {
+
+    /**
+     * @param value the block value
+     * @return {@code true} if block has material and so should be drawn
+     */
+    boolean isVisible(int value);
+
+    /**
+     * @param value the block value
+     * @return {@code true} if block completely hides faces of adjacent blocks
+     */
+    default boolean isOpaque(int value) {
+        return isVisible(value);
+    }
+}
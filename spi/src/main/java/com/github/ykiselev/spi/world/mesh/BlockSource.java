@@ -0,0 +1,38 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.World;
+
+/**
+ * Read access to blocks around meshed leaf.
+ */
+@FunctionalInterface
+public interface BlockSource {
+
+    BlockSource EMPTY = (i, j, k) -> 0;
+
+    /**
+     * @return the value of block with supplied world indices
+     */
+    int get(int i, int j, int k);
+
+    /**
+     * Returns source which may be read by other thread while this source is modified. Returned source is only required
+     * to provide blocks adjacent to faces of supplied leaf. Default implementation returns this source, so it is
+     * only suitable for sources which are never modified.
+     *
+     * @param leaf the leaf
+     * @return the source of blocks around leaf
+     */
+    default BlockSource snapshot(Leaf leaf) {
+        return this;
+    }
+
+    /**
+     * @param world the world
+     * @return the source reading blocks of world, blocks outside of world are empty
+     */
+    static BlockSource of(World world) {
+        return new WorldBlockSource(world);
+    }
+}
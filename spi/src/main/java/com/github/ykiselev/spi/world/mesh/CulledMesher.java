@@ -0,0 +1,43 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+
+/**
+ * Emits exposed faces of visible blocks one quad per face (see {@link CullingMesher}).
+ */
+public final class CulledMesher extends CullingMesher {
+
+    public CulledMesher(BlockMaterials materials) {
+        super(materials);
+    }
+
+    @Override
+    void mesh(Leaf leaf, byte[] data) {
+        for (int j = 0; j < SIDE; j++) {
+            for (int i = 0; i < SIDE; i++) {
+                if (leaf.isColumnEmpty(i, j)) {
+                    continue;
+                }
+                for (int k = 0; k < SIDE; k++) {
+                    final int value = data[i + j * SIDE + k * PLANE];
+                    if (!isVisible(value)) {
+                        continue;
+                    }
+                    face(data, i, j, k, Face.I_NEG, value);
+                    face(data, i, j, k, Face.I_POS, value);
+                    face(data, i, j, k, Face.J_NEG, value);
+                    face(data, i, j, k, Face.J_POS, value);
+                    face(data, i, j, k, Face.K_NEG, value);
+                    face(data, i, j, k, Face.K_POS, value);
+                }
+            }
+        }
+    }
+
+    private void face(byte[] data, int i, int j, int k, Face face, int value) {
+        if (isExposed(value, neighbour(data, i, j, k, face))) {
+            builder.add(LeafMesh.pack(i, j, k, face, 1, 1), value);
+        }
+    }
+}
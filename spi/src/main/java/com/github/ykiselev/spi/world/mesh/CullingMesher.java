@@ -0,0 +1,108 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+
+import java.util.Objects;
+
+/**
+ * Base class of meshers emitting only faces of visible blocks which are not hidden by adjacent block: face is exposed if
+ * adjacent block is empty, invisible or not opaque (unless it has the same value, so inner faces of transparent volumes
+ * are hidden too). Blocks adjacent to leaf boundary are read from neighbours once per leaf.
+ */
+abstract class CullingMesher implements LeafMesher {
+
+    static final int SIDE = 1 << Leaf.SIDE_SHIFT;
+
+    static final int LAST = SIDE - 1;
+
+    static final int PLANE = SIDE * SIDE;
+
+    private static final int VISIBLE = 1, OPAQUE = 2;
+
+    private final BlockMaterials materials;
+
+    final LeafMesh.Builder builder = new LeafMesh.Builder();
+
+    /**
+     * Flags of block values (indexed by unsigned value).
+     */
+    private final byte[] flags = new byte[256];
+
+    /**
+     * Blocks adjacent to leaf for each face, indexed by {@code a + b * SIDE} where (a, b) are the remaining two indices
+     * in (i, j, k) order.
+     */
+    private final int[][] borders = new int[6][PLANE];
+
+    CullingMesher(BlockMaterials materials) {
+        this.materials = Objects.requireNonNull(materials);
+    }
+
+    @Override
+    public final LeafMesh mesh(Leaf leaf, BlockSource neighbours) {
+        builder.clear();
+        if (!leaf.isEmpty()) {
+            prepare(leaf, neighbours);
+            leaf.visit(data -> mesh(leaf, data));
+        }
+        return builder.build(leaf.iorg(), leaf.jorg(), leaf.korg());
+    }
+
+    /**
+     * Adds quads of leaf to {@link #builder}.
+     *
+     * @param leaf the leaf
+     * @param data the leaf blocks
+     */
+    abstract void mesh(Leaf leaf, byte[] data);
+
+    private void prepare(Leaf leaf, BlockSource neighbours) {
+        for (int v = 1; v < flags.length; v++) {
+            final byte value = (byte) v;
+            flags[v] = (byte) ((materials.isVisible(value) ? VISIBLE : 0) | (materials.isOpaque(value) ? OPAQUE : 0));
+        }
+        final int i0 = leaf.iorg(), j0 = leaf.jorg(), k0 = leaf.korg();
+        for (int b = 0; b < SIDE; b++) {
+            for (int a = 0; a < SIDE; a++) {
+                final int n = a + b * SIDE;
+                borders[0][n] = neighbours.get(i0 - 1, j0 + a, k0 + b);
+                borders[1][n] = neighbours.get(i0 + SIDE, j0 + a, k0 + b);
+                borders[2][n] = neighbours.get(i0 + a, j0 - 1, k0 + b);
+                borders[3][n] = neighbours.get(i0 + a, j0 + SIDE, k0 + b);
+                borders[4][n] = neighbours.get(i0 + a, j0 + b, k0 - 1);
+                borders[5][n] = neighbours.get(i0 + a, j0 + b, k0 + SIDE);
+            }
+        }
+    }
+
+    final boolean isVisible(int value) {
+        return (flags[value & 0xff] & VISIBLE) != 0;
+    }
+
+    /**
+     * @return the value of block adjacent to block {@code (i, j, k)} (relative to leaf) across supplied face
+     */
+    final int neighbour(byte[] data, int i, int j, int k, Face face) {
+        final int idx = i + j * SIDE + k * PLANE;
+        return switch (face) {
+            case I_NEG -> i > 0 ? data[idx - 1] : borders[0][j + k * SIDE];
+            case I_POS -> i < LAST ? data[idx + 1] : borders[1][j + k * SIDE];
+            case J_NEG -> j > 0 ? data[idx - SIDE] : borders[2][i + k * SIDE];
+            case J_POS -> j < LAST ? data[idx + SIDE] : borders[3][i + k * SIDE];
+            case K_NEG -> k > 0 ? data[idx - PLANE] : borders[4][i + j * SIDE];
+            case K_POS -> k < LAST ? data[idx + PLANE] : borders[5][i + j * SIDE];
+        };
+    }
+
+    /**
+     * @return {@code true} if face of visible block is not hidden by neighbour
+     */
+    final boolean isExposed(int value, int neighbour) {
+        final int f = flags[neighbour & 0xff];
+        if ((f & VISIBLE) == 0) {
+            return true;
+        }
+        return (f & OPAQUE) == 0 && neighbour != value;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+
+/**
+ * Merges exposed faces (see {@link CullingMesher}) of blocks with the same value lying in the same slice of leaf into
+ * rectangles. Each slice is scanned row by row, rectangle is first grown along quad width axis and then along height
+ * axis while the whole row matches. Textures of merged quads are expected to repeat once per block.
+ */
+public final class GreedyMesher extends CullingMesher {
+
+    private static final Face[] FACES = Face.values();
+
+    /**
+     * Values of exposed faces in slice indexed by {@code u + v * SIDE} (0 means no face).
+     */
+    private final int[] mask = new int[PLANE];
+
+    private final int[] index = new int[3];
+
+    public GreedyMesher(BlockMaterials materials) {
+        super(materials);
+    }
+
+    @Override
+    void mesh(Leaf leaf, byte[] data) {
+        for (Face face : FACES) {
+            final int u = LeafMesh.uAxis(face), v = LeafMesh.vAxis(face), n = 3 - u - v;
+            for (int d = 0; d < SIDE; d++) {
+                index[n] = d;
+                if (slice(data, face, u, v)) {
+                    merge(face, u, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the mask for slice set in {@link #index}.
+     *
+     * @return {@code true} if there is at least one exposed face
+     */
+    private boolean slice(byte[] data, Face face, int u, int v) {
+        boolean result = false;
+        for (int b = 0; b < SIDE; b++) {
+            index[v] = b;
+            for (int a = 0; a < SIDE; a++) {
+                index[u] = a;
+                final int i = index[0], j = index[1], k = index[2];
+                final int value = data[i + j * SIDE + k * PLANE];
+                final boolean exposed = isVisible(value) && isExposed(value, neighbour(data, i, j, k, face));
+                mask[a + b * SIDE] = exposed ? value : 0;
+                result |= exposed;
+            }
+        }
+        return result;
+    }
+
+    private void merge(Face face, int u, int v) {
+        for (int b = 0; b < SIDE; b++) {
+            for (int a = 0; a < SIDE; ) {
+                final int value = mask[a + b * SIDE];
+                if (value == 0) {
+                    a++;
+                    continue;
+                }
+                int w = 1;
+                while (a + w < SIDE && mask[a + w + b * SIDE] == value) {
+                    w++;
+                }
+                int h = 1;
+                while (b + h < SIDE && isRow(a, b + h, w, value)) {
+                    h++;
+                }
+                for (int y = b; y < b + h; y++) {
+                    for (int x = a; x < a + w; x++) {
+                        mask[x + y * SIDE] = 0;
+                    }
+                }
+                index[u] = a;
+                index[v] = b;
+                builder.add(LeafMesh.pack(index[0], index[1], index[2], face, w, h), value);
+                a += w;
+            }
+        }
+    }
+
+    private boolean isRow(int a, int b, int w, int value) {
+        for (int x = a; x < a + w; x++) {
+            if (mask[x + b * SIDE] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
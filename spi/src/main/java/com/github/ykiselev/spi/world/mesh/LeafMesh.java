@@ -0,0 +1,176 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+
+import java.util.Arrays;
+
+/**
+ * Quads of single leaf. Each quad takes two ints: packed geometry (see {@link #pack(int, int, int, Face, int, int)})
+ * and block value. Quad lies on the face of block {@code (i, j, k)} (relative to leaf origin) and spans
+ * {@code width x height} blocks along face axes (see {@link #uAxis(Face)} and {@link #vAxis(Face)}). Mesh is immutable.
+ */
+public final class LeafMesh {
+
+    public static final LeafMesh EMPTY = new LeafMesh(0, 0, 0, new int[0], 0);
+
+    private static final int MASK = (1 << Leaf.SIDE_SHIFT) - 1;
+
+    private static final Face[] FACES = Face.values();
+
+    /**
+     * First and second axes of each face (0 - i, 1 - j, 2 - k). Axes are chosen so that their cross product is the
+     * outward normal and counter-clockwise quad corners are (0, 0), (1, 0), (1, 1), (0, 1).
+     */
+    private static final int[] U_AXIS = {2, 1, 0, 2, 1, 0};
+
+    private static final int[] V_AXIS = {1, 2, 2, 0, 0, 1};
+
+    private final int iorg, jorg, korg;
+
+    private final int[] data;
+
+    private final int quads;
+
+    LeafMesh(int iorg, int jorg, int korg, int[] data, int quads) {
+        this.iorg = iorg;
+        this.jorg = jorg;
+        this.korg = korg;
+        this.data = data;
+        this.quads = quads;
+    }
+
+    /**
+     * Packs quad geometry into single int: 4 bits per block index, 3 bits of face and 4 bits per size (minus one).
+     *
+     * @param i      the block i index relative to leaf origin
+     * @param j      the block j index relative to leaf origin
+     * @param k      the block k index relative to leaf origin
+     * @param face   the face of block
+     * @param width  the number of blocks along the first face axis
+     * @param height the number of blocks along the second face axis
+     * @return the packed geometry
+     */
+    public static int pack(int i, int j, int k, Face face, int width, int height) {
+        return i | (j << 4) | (k << 8) | (face.ordinal() << 12) | ((width - 1) << 15) | ((height - 1) << 19);
+    }
+
+    public static int i(int geometry) {
+        return geometry & MASK;
+    }
+
+    public static int j(int geometry) {
+        return (geometry >>> 4) & MASK;
+    }
+
+    public static int k(int geometry) {
+        return (geometry >>> 8) & MASK;
+    }
+
+    public static Face face(int geometry) {
+        return FACES[(geometry >>> 12) & 7];
+    }
+
+    public static int width(int geometry) {
+        return ((geometry >>> 15) & MASK) + 1;
+    }
+
+    public static int height(int geometry) {
+        return ((geometry >>> 19) & MASK) + 1;
+    }
+
+    /**
+     * @return the axis along which quad width is measured (0 - i, 1 - j, 2 - k)
+     */
+    public static int uAxis(Face face) {
+        return U_AXIS[face.ordinal()];
+    }
+
+    /**
+     * @return the axis along which quad height is measured (0 - i, 1 - j, 2 - k)
+     */
+    public static int vAxis(Face face) {
+        return V_AXIS[face.ordinal()];
+    }
+
+    public int iorg() {
+        return iorg;
+    }
+
+    public int jorg() {
+        return jorg;
+    }
+
+    public int korg() {
+        return korg;
+    }
+
+    public int quads() {
+        return quads;
+    }
+
+    public boolean isEmpty() {
+        return quads == 0;
+    }
+
+    /**
+     * @param n the index of quad
+     * @return the packed geometry of quad
+     */
+    public int geometry(int n) {
+        return data[2 * n];
+    }
+
+    /**
+     * @param n the index of quad
+     * @return the block value of quad
+     */
+    public int value(int n) {
+        return data[2 * n + 1];
+    }
+
+    @Override
+    public String toString() {
+        return "LeafMesh{" +
+                "iorg=" + iorg +
+                ", jorg=" + jorg +
+                ", korg=" + korg +
+                ", quads=" + quads +
+                '}';
+    }
+
+    /**
+     * Growable quad list reused between meshes. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private int[] data = new int[256];
+
+        private int quads;
+
+        public Builder clear() {
+            quads = 0;
+            return this;
+        }
+
+        public int quads() {
+            return quads;
+        }
+
+        public void add(int geometry, int value) {
+            if (2 * quads == data.length) {
+                data = Arrays.copyOf(data, 2 * data.length);
+            }
+            data[2 * quads] = geometry;
+            data[2 * quads + 1] = value;
+            quads++;
+        }
+
+        public LeafMesh build(int iorg, int jorg, int korg) {
+            if (quads == 0) {
+                return EMPTY;
+            }
+            return new LeafMesh(iorg, jorg, korg, Arrays.copyOf(data, 2 * quads), quads);
+        }
+    }
+}
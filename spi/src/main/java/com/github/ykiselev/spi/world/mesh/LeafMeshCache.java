@@ -0,0 +1,297 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.common.closeables.Closeables;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.Morton;
+import com.github.ykiselev.spi.world.PaletteBlocks;
+import com.github.ykiselev.spi.world.UniformNode;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Caches meshes of leaves between frames. Entry is keyed by leaf origin and is rebuilt only when leaf at that origin
+ * is replaced, its version changes or entry is explicitly invalidated (meshers looking at neighbour leaves need
+ * entry to be rebuilt when neighbour changes, see {@link #invalidate(int, int, int)}). Mesh is converted by
+ * {@code upload} function into value of type {@code M} (e.g. GPU buffer) which is closed when entry is rebuilt or
+ * evicted. Entries not requested for more than {@code maxIdleFrames} frames are evicted by {@link #endFrame()}.
+ * <p>
+ * Leaf sized cells of uniform nodes are cached the same way (see {@link #get(UniformNode, int, int, int, BlockSource)}),
+ * such entry is rebuilt when node at that place is replaced or entry is invalidated.
+ * <p>
+ * Cache either builds meshes synchronously with own mesher or submits leaf snapshots to {@link MeshingService}. In the
+ * latter case previous mesh of leaf (if any) is returned until new one is picked up by {@link #upload(long, long)}.
+ * Not thread-safe.
+ *
+ * @param <M> the type of uploaded mesh
+ */
+public final class LeafMeshCache<M extends AutoCloseable> implements AutoCloseable {
+
+    private LeafMesher mesher;
+
+    private final MeshingService service;
+
+    private final Function<LeafMesh, M> upload;
+
+    private final int maxIdleFrames;
+
+    private final Map<Long, Entry<M>> entries = new HashMap<>();
+
+    private int frame;
+
+    private long builds, evictions, tickets;
+
+    private static final class Entry<M> {
+
+        Leaf leaf;
+
+        UniformNode node;
+
+        /**
+         * Version of leaf or value of uniform node.
+         */
+        int version;
+
+        int frame;
+
+        /**
+         * The ticket of last job submitted to meshing service.
+         */
+        long ticket;
+
+        boolean stale;
+
+        M value;
+    }
+
+    /**
+     * @param mesher        the mesher
+     * @param upload        the function to convert non-empty mesh (value may be {@code null})
+     * @param maxIdleFrames the number of frames entry is kept after last request
+     */
+    public LeafMeshCache(LeafMesher mesher, Function<LeafMesh, M> upload, int maxIdleFrames) {
+        this(Objects.requireNonNull(mesher), null, upload, maxIdleFrames);
+    }
+
+    /**
+     * @param service       the meshing service
+     * @param upload        the function to convert non-empty mesh (value may be {@code null})
+     * @param maxIdleFrames the number of frames entry is kept after last request
+     */
+    public LeafMeshCache(MeshingService service, Function<LeafMesh, M> upload, int maxIdleFrames) {
+        this(null, Objects.requireNonNull(service), upload, maxIdleFrames);
+    }
+
+    private LeafMeshCache(LeafMesher mesher, MeshingService service, Function<LeafMesh, M> upload, int maxIdleFrames) {
+        this.mesher = mesher;
+        this.service = service;
+        this.upload = Objects.requireNonNull(upload);
+        this.maxIdleFrames = maxIdleFrames;
+    }
+
+    /**
+     * Replaces mesher of synchronous cache, all meshes are rebuilt on next request.
+     *
+     * @param mesher the new mesher
+     */
+    public void mesher(LeafMesher mesher) {
+        if (service != null) {
+            throw new IllegalStateException("Meshers are managed by meshing service!");
+        }
+        this.mesher = Objects.requireNonNull(mesher);
+        invalidateAll();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total number of meshes built (or picked up from meshing service)
+     */
+    public long builds() {
+        return builds;
+    }
+
+    /**
+     * @return the total number of evicted entries
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @param leaf       the leaf
+     * @param neighbours the source of blocks around leaf
+     * @return the uploaded mesh of leaf or {@code null} if leaf has nothing to draw (or its mesh is not ready yet)
+     */
+    public M get(Leaf leaf, BlockSource neighbours) {
+        final long key = key(leaf.iorg(), leaf.jorg(), leaf.korg());
+        final Entry<M> entry = entry(key);
+        if (entry.stale || entry.leaf != leaf || entry.version != leaf.version()) {
+            if (mesh(key, leaf, neighbours, entry)) {
+                entry.leaf = leaf;
+                entry.node = null;
+                entry.version = leaf.version();
+            }
+        }
+        entry.frame = frame;
+        return entry.value;
+    }
+
+    /**
+     * Cell is meshed as leaf filled with value of node, so faces between cells of the same node are hidden and only
+     * faces exposed to blocks around node are emitted.
+     *
+     * @param node       the uniform node
+     * @param iorg       the i origin index of leaf sized cell of node
+     * @param jorg       the j origin index of leaf sized cell of node
+     * @param korg       the k origin index of leaf sized cell of node
+     * @param neighbours the source of blocks around cell
+     * @return the uploaded mesh of cell or {@code null} if cell has nothing to draw (or its mesh is not ready yet)
+     */
+    public M get(UniformNode node, int iorg, int jorg, int korg, BlockSource neighbours) {
+        final long key = key(iorg, jorg, korg);
+        final Entry<M> entry = entry(key);
+        if (entry.stale || entry.node != node || entry.version != node.value()) {
+            final Leaf cell = new Leaf(new PaletteBlocks()).init(iorg, jorg, korg);
+            cell.fill(node.value());
+            if (mesh(key, cell, neighbours, entry)) {
+                entry.leaf = null;
+                entry.node = node;
+                entry.version = node.value();
+            }
+        }
+        entry.frame = frame;
+        return entry.value;
+    }
+
+    private Entry<M> entry(long key) {
+        Entry<M> entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry<>();
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Builds mesh of leaf or submits it to meshing service.
+     *
+     * @return {@code false} if job was not accepted by meshing service (it is then submitted again on next request)
+     */
+    private boolean mesh(long key, Leaf leaf, BlockSource neighbours, Entry<M> entry) {
+        if (service == null) {
+            close(entry);
+            build(leaf, neighbours, entry);
+            return true;
+        }
+        final long ticket = tickets + 1;
+        if (!service.submit(key, ticket, leaf.snapshot(), neighbours.snapshot(leaf))) {
+            return false;
+        }
+        tickets = ticket;
+        entry.stale = false;
+        entry.ticket = ticket;
+        return true;
+    }
+
+    /**
+     * Picks up meshes completed by meshing service and uploads them until budget is exhausted (at least one mesh is
+     * uploaded if there is any). Meshes superseded by newer jobs or belonging to evicted entries are discarded.
+     *
+     * @param maxQuads the maximum number of quads to upload
+     * @param maxNanos the maximum time to spend
+     * @return the number of uploaded meshes
+     */
+    public int upload(long maxQuads, long maxNanos) {
+        if (service == null) {
+            return 0;
+        }
+        final long t0 = System.nanoTime();
+        long quads = 0;
+        int count = 0;
+        while (quads < maxQuads && System.nanoTime() - t0 < maxNanos) {
+            final MeshingService.Result result = service.poll();
+            if (result == null) {
+                break;
+            }
+            final Entry<M> entry = entries.get(result.key());
+            if (entry == null || entry.ticket != result.ticket()) {
+                service.discard(result);
+                continue;
+            }
+            final LeafMesh mesh = result.mesh();
+            close(entry);
+            entry.value = mesh.isEmpty() ? null : upload.apply(mesh);
+            builds++;
+            quads += mesh.quads();
+            count++;
+        }
+        return count;
+    }
+
+    private void build(Leaf leaf, BlockSource neighbours, Entry<M> entry) {
+        entry.stale = false;
+        final LeafMesh mesh = mesher.mesh(leaf, neighbours);
+        entry.value = mesh.isEmpty() ? null : upload.apply(mesh);
+        builds++;
+    }
+
+    /**
+     * Marks mesh of leaf containing supplied block as stale so it is rebuilt on next request.
+     */
+    public void invalidate(int i, int j, int k) {
+        final Entry<M> entry = entries.get(key(i, j, k));
+        if (entry != null) {
+            entry.stale = true;
+        }
+    }
+
+    /**
+     * Marks all meshes as stale.
+     */
+    public void invalidateAll() {
+        for (Entry<M> entry : entries.values()) {
+            entry.stale = true;
+        }
+    }
+
+    private static long key(int i, int j, int k) {
+        return Morton.encode(i >> Leaf.SIDE_SHIFT, j >> Leaf.SIDE_SHIFT, k >> Leaf.SIDE_SHIFT);
+    }
+
+    /**
+     * Evicts entries idle for too long. Should be called once per frame.
+     */
+    public void endFrame() {
+        final Iterator<Entry<M>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            final Entry<M> entry = it.next();
+            if (frame - entry.frame >= maxIdleFrames) {
+                close(entry);
+                it.remove();
+                evictions++;
+            }
+        }
+        frame++;
+    }
+
+    private void close(Entry<M> entry) {
+        if (entry.value != null) {
+            Closeables.close(entry.value);
+            entry.value = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Entry<M> entry : entries.values()) {
+            close(entry);
+        }
+        entries.clear();
+    }
+}
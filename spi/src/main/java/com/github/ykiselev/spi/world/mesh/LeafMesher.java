@@ -0,0 +1,17 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Leaf;
+
+/**
+ * Builds quads of leaf. Implementations are not required to be thread-safe.
+ */
+@FunctionalInterface
+public interface LeafMesher {
+
+    /**
+     * @param leaf       the leaf to mesh
+     * @param neighbours the source of blocks outside of leaf
+     * @return the mesh (may be {@link LeafMesh#EMPTY})
+     */
+    LeafMesh mesh(Leaf leaf, BlockSource neighbours);
+}
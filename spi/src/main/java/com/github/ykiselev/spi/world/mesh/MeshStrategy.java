@@ -0,0 +1,36 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import java.util.function.Function;
+
+/**
+ * Available meshing strategies.
+ */
+public enum MeshStrategy {
+
+    /**
+     * Every face of every visible block (see {@link NaiveMesher}).
+     */
+    NAIVE(NaiveMesher::new),
+    /**
+     * Only exposed faces (see {@link CulledMesher}).
+     */
+    CULLED(CulledMesher::new),
+    /**
+     * Exposed faces merged into rectangles (see {@link GreedyMesher}).
+     */
+    GREEDY(GreedyMesher::new);
+
+    private final Function<BlockMaterials, LeafMesher> factory;
+
+    MeshStrategy(Function<BlockMaterials, LeafMesher> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @param materials the block materials
+     * @return new mesher (meshers are not thread-safe so each thread should have its own)
+     */
+    public LeafMesher create(BlockMaterials materials) {
+        return factory.apply(materials);
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Leaf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Meshes leaves on fixed pool of worker threads. Jobs hold immutable leaf snapshots (see {@link Leaf#snapshot()} and
+ * {@link BlockSource#snapshot(Leaf)}) so world may be modified meanwhile. Finished meshes are put into lock-free
+ * completion queue to be picked up by the consumer (see {@link LeafMeshCache#upload(long, long)}). Number of jobs
+ * submitted but not yet polled is bounded, jobs above the limit are rejected (dropped).
+ * <p>
+ * Jobs may be submitted from any thread, while results should be polled by single consumer thread.
+ */
+public final class MeshingService implements AutoCloseable {
+
+    /**
+     * @param queued         the number of jobs submitted but not yet polled
+     * @param completed      the number of meshes waiting in completion queue
+     * @param meshed         the total number of meshed leaves
+     * @param dropped        the total number of jobs rejected because of too many queued jobs
+     * @param stale          the total number of meshes discarded by consumer because leaf was changed meanwhile
+     * @param averageLatency the average time from job submission to mesh completion in milliseconds
+     * @param maxLatency     the maximum time from job submission to mesh completion in milliseconds
+     */
+    public record Metrics(int queued, int completed, long meshed, long dropped, long stale,
+                          double averageLatency, double maxLatency) {
+    }
+
+    /**
+     * @param key    the key of job supplied by consumer
+     * @param ticket the ticket of job supplied by consumer
+     * @param mesh   the mesh
+     */
+    public record Result(long key, long ticket, LeafMesh mesh) {
+    }
+
+    /**
+     * Mesher of worker thread along with factory it was created with.
+     */
+    private record Mesher(Supplier<LeafMesher> factory, LeafMesher mesher) {
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ExecutorService executor;
+
+    private final int maxQueued;
+
+    private final Queue<Result> completed = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger completedSize = new AtomicInteger();
+
+    private final LongAdder meshed = new LongAdder();
+
+    private final LongAdder totalLatency = new LongAdder();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong stale = new AtomicLong();
+
+    private final ThreadLocal<Mesher> meshers = new ThreadLocal<>();
+
+    private volatile Supplier<LeafMesher> factory;
+
+    /**
+     * @param factory   the factory of meshers (one mesher is created per worker thread)
+     * @param workers   the number of worker threads
+     * @param maxQueued the maximum number of jobs submitted but not yet polled
+     */
+    public MeshingService(Supplier<LeafMesher> factory, int workers, int maxQueued) {
+        if (workers < 1 || maxQueued < 1) {
+            throw new IllegalArgumentException("Bad limits: " + workers + ", " + maxQueued);
+        }
+        this.factory = Objects.requireNonNull(factory);
+        this.maxQueued = maxQueued;
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            final Thread thread = new Thread(r, "leaf-mesher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Replaces factory of meshers. Jobs submitted after this call are meshed by new meshers.
+     *
+     * @param factory the factory of meshers
+     */
+    public void meshers(Supplier<LeafMesher> factory) {
+        this.factory = Objects.requireNonNull(factory);
+    }
+
+    /**
+     * @param key        the key to pass to result
+     * @param ticket     the ticket to pass to result
+     * @param leaf       the immutable leaf snapshot
+     * @param neighbours the source of blocks around leaf which may be read by other thread
+     * @return {@code true} if job was accepted or {@code false} if it was dropped because of too many queued jobs
+     */
+    public boolean submit(long key, long ticket, Leaf leaf, BlockSource neighbours) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        final Supplier<LeafMesher> f = factory;
+        final long submitted = System.nanoTime();
+        executor.execute(() -> {
+            LeafMesh mesh = LeafMesh.EMPTY;
+            try {
+                mesh = mesher(f).mesh(leaf, neighbours);
+            } catch (RuntimeException e) {
+                logger.error("Unable to mesh {}!", leaf, e);
+            }
+            final long latency = System.nanoTime() - submitted;
+            meshed.increment();
+            totalLatency.add(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+            completed.add(new Result(key, ticket, mesh));
+            completedSize.incrementAndGet();
+        });
+        return true;
+    }
+
+    private LeafMesher mesher(Supplier<LeafMesher> f) {
+        Mesher m = meshers.get();
+        if (m == null || m.factory() != f) {
+            m = new Mesher(f, f.get());
+            meshers.set(m);
+        }
+        return m.mesher();
+    }
+
+    /**
+     * @return the next completed mesh or {@code null} if there is none
+     */
+    public Result poll() {
+        final Result result = completed.poll();
+        if (result != null) {
+            completedSize.decrementAndGet();
+            queued.decrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Records that polled result was not used because it was superseded by newer job.
+     *
+     * @param result the discarded result
+     */
+    public void discard(Result result) {
+        stale.incrementAndGet();
+    }
+
+    public Metrics metrics() {
+        final long n = meshed.sum();
+        return new Metrics(queued.get(), completedSize.get(), n, dropped.get(), stale.get(),
+                n > 0 ? totalLatency.sum() / 1e6 / n : 0, maxLatency.get() / 1e6);
+    }
+
+    public String formatStats() {
+        final Metrics m = metrics();
+        return String.format("meshing: queued: %d, completed: %d, dropped: %d, stale: %d, latency (ms): avg: %.1f, max: %.1f",
+                m.queued(), m.completed(), m.dropped(), m.stale(), m.averageLatency(), m.maxLatency());
+    }
+
+    /**
+     * Stops worker threads, queued jobs are abandoned.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+
+import java.util.Objects;
+
+/**
+ * Emits all six faces of every visible block (the same geometry as drawing each block as a cube), neighbours are not
+ * looked at.
+ */
+public final class NaiveMesher implements LeafMesher {
+
+    private static final Face[] FACES = Face.values();
+
+    private final BlockMaterials materials;
+
+    private final LeafMesh.Builder builder = new LeafMesh.Builder();
+
+    public NaiveMesher(BlockMaterials materials) {
+        this.materials = Objects.requireNonNull(materials);
+    }
+
+    @Override
+    public LeafMesh mesh(Leaf leaf, BlockSource neighbours) {
+        builder.clear();
+        if (!leaf.isEmpty()) {
+            final int side = leaf.range();
+            leaf.visit(data -> {
+                for (int j = 0; j < side; j++) {
+                    for (int i = 0; i < side; i++) {
+                        if (leaf.isColumnEmpty(i, j)) {
+                            continue;
+                        }
+                        for (int k = 0, idx = i + j * side; k < side; k++, idx += side * side) {
+                            final int value = data[idx];
+                            if (value != 0 && materials.isVisible(value)) {
+                                for (Face face : FACES) {
+                                    builder.add(LeafMesh.pack(i, j, k, face, 1, 1), value);
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        return builder.build(leaf.iorg(), leaf.jorg(), leaf.korg());
+    }
+}
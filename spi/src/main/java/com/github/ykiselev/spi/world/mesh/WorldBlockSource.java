@@ -0,0 +1,85 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.World;
+
+/**
+ * Reads blocks of world. Snapshot holds copies of six leaves adjacent to faces of meshed leaf (or values of uniform
+ * nodes at their place).
+ */
+final class WorldBlockSource implements BlockSource {
+
+    private static final int SIDE = 1 << Leaf.SIDE_SHIFT;
+
+    private final World world;
+
+    private final int range;
+
+    WorldBlockSource(World world) {
+        this.world = world;
+        this.range = 1 << world.rangeShift();
+    }
+
+    private boolean isInside(int i, int j, int k) {
+        return (i | j | k) >= 0 && i < range && j < range && k < range;
+    }
+
+    @Override
+    public int get(int i, int j, int k) {
+        return isInside(i, j, k) ? world.get(i, j, k) : 0;
+    }
+
+    @Override
+    public BlockSource snapshot(Leaf leaf) {
+        final Leaf[] leaves = new Leaf[6];
+        final int[] values = new int[6];
+        for (Face face : Face.values()) {
+            final int i = leaf.iorg() + face.di() * SIDE, j = leaf.jorg() + face.dj() * SIDE,
+                    k = leaf.korg() + face.dk() * SIDE;
+            if (isInside(i, j, k)) {
+                final Leaf neighbour = world.leafForIndices(i, j, k, false);
+                if (neighbour != null) {
+                    leaves[face.ordinal()] = neighbour.snapshot();
+                } else {
+                    values[face.ordinal()] = world.get(i, j, k);
+                }
+            }
+        }
+        return new Neighbours(leaf.iorg(), leaf.jorg(), leaf.korg(), leaves, values);
+    }
+
+    /**
+     * Blocks adjacent to faces of leaf. Blocks which are not adjacent to faces (or lie inside of leaf) are empty.
+     */
+    private record Neighbours(int iorg, int jorg, int korg, Leaf[] leaves, int[] values) implements BlockSource {
+
+        @Override
+        public int get(int i, int j, int k) {
+            final Face face;
+            if (i < iorg) {
+                face = Face.I_NEG;
+            } else if (i >= iorg + SIDE) {
+                face = Face.I_POS;
+            } else if (j < jorg) {
+                face = Face.J_NEG;
+            } else if (j >= jorg + SIDE) {
+                face = Face.J_POS;
+            } else if (k < korg) {
+                face = Face.K_NEG;
+            } else if (k >= korg + SIDE) {
+                face = Face.K_POS;
+            } else {
+                return 0;
+            }
+            final Leaf leaf = leaves[face.ordinal()];
+            if (leaf == null) {
+                return values[face.ordinal()];
+            }
+            final boolean adjacent = ((i - leaf.iorg()) >>> Leaf.SIDE_SHIFT) == 0
+                    && ((j - leaf.jorg()) >>> Leaf.SIDE_SHIFT) == 0
+                    && ((k - leaf.korg()) >>> Leaf.SIDE_SHIFT) == 0;
+            return adjacent ? leaf.get(i, j, k) : 0;
+        }
+    }
+}
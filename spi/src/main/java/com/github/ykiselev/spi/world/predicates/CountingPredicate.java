@@ -3,6 +3,7 @@ package com.github.ykiselev.spi.world.predicates;
 import com.github.ykiselev.spi.world.Leaf;
 import com.github.ykiselev.spi.world.NodePredicate;
 import com.github.ykiselev.spi.world.NormalNode;
+import com.github.ykiselev.spi.world.UniformNode;
 
 import java.util.Objects;
 
@@ -56,4 +57,15 @@ public final class CountingPredicate implements NodePredicate {
         }
         return r;
     }
+
+    @Override
+    public boolean test(UniformNode node) {
+        var r = delegate.test(node);
+        if (r) {
+            nodesPassed++;
+        } else {
+            nodesRejected++;
+        }
+        return r;
+    }
 }
@@ -4,6 +4,7 @@ import com.github.ykiselev.spi.world.Leaf;
 import com.github.ykiselev.spi.world.Node;
 import com.github.ykiselev.spi.world.NodePredicate;
 import com.github.ykiselev.spi.world.NormalNode;
+import com.github.ykiselev.spi.world.UniformNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,8 +37,16 @@ public final class DebugPredicate implements NodePredicate {
 
     @Override
     public boolean test(Leaf leaf) {
-        var r = delegate.test(leaf);
-        branch.add(new Level(leaf, r));
+        return terminal(leaf, delegate.test(leaf));
+    }
+
+    @Override
+    public boolean test(UniformNode node) {
+        return terminal(node, delegate.test(node));
+    }
+
+    private boolean terminal(Node node, boolean r) {
+        branch.add(new Level(node, r));
         long count = branch.stream().filter(Level::flag).count();
         if (r && count != branch.size()) {
             logger.info("Branch {}", branch);
@@ -25,5 +25,6 @@ module ykiselev.playground.spi {
     exports com.github.ykiselev.spi.world;
     exports com.github.ykiselev.spi.world.file;
     exports com.github.ykiselev.spi.world.generation;
+    exports com.github.ykiselev.spi.world.mesh;
     exports com.github.ykiselev.spi.world.predicates;
 }
\ No newline at end of file
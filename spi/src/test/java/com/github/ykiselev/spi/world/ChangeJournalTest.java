@@ -0,0 +1,95 @@
+package com.github.ykiselev.spi.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeJournalTest {
+
+    private final World world = new World(new DefaultNodeFactory(), (byte) 6, 8);
+
+    private static List<String> drain(ChangeJournal.Cursor cursor, boolean complete) {
+        final List<String> result = new ArrayList<>();
+        assertEquals(complete, cursor.drain((i, j, k) -> result.add(i + "," + j + "," + k)));
+        return result;
+    }
+
+    @Test
+    public void shouldIncrementLeafVersion() {
+        world.put(1, 2, 3, 1);
+        final Leaf leaf = world.leafForIndices(1, 2, 3, false);
+        final int version = leaf.version();
+
+        world.put(1, 2, 3, 1);
+        assertEquals(version, leaf.version());
+
+        world.put(1, 2, 3, 2);
+        assertNotEquals(version, leaf.version());
+    }
+
+    @Test
+    public void shouldRecordModifiedLeavesOnce() {
+        final ChangeJournal.Cursor cursor = world.journal().cursor();
+        world.put(1, 2, 3, 1);
+        world.put(4, 5, 6, 1);
+        world.put(17, 2, 3, 1);
+
+        assertEquals(List.of("0,0,0", "16,0,0"), drain(cursor, true));
+        assertEquals(List.of(), drain(cursor, true));
+
+        world.put(1, 2, 3, 0);
+        assertEquals(List.of("0,0,0"), drain(cursor, true));
+    }
+
+    @Test
+    public void shouldRecordLeafModifiedBeforeCursorWasCreated() {
+        world.put(1, 2, 3, 1);
+        final ChangeJournal.Cursor cursor = world.journal().cursor();
+
+        world.put(1, 2, 3, 2);
+        assertEquals(List.of("0,0,0"), drain(cursor, true));
+    }
+
+    @Test
+    public void shouldTrackConsumersIndependently() {
+        final ChangeJournal.Cursor renderer = world.journal().cursor();
+        world.put(1, 2, 3, 1);
+        final ChangeJournal.Cursor saver = world.journal().cursor();
+        world.put(17, 2, 3, 1);
+
+        assertEquals(List.of("0,0,0", "16,0,0"), drain(renderer, true));
+
+        world.put(1, 2, 4, 1);
+        assertEquals(List.of("16,0,0", "0,0,0"), drain(saver, true));
+        assertEquals(List.of("0,0,0"), drain(renderer, true));
+    }
+
+    @Test
+    public void shouldRecordFilledCells() {
+        final ChangeJournal.Cursor cursor = world.journal().cursor();
+        world.fill(0, 0, 0, 32, 16, 16, 1);
+        world.fill(0, 16, 0, 16, 32, 8, 2);
+
+        assertEquals(List.of("0,0,0", "16,0,0", "0,16,0"), drain(cursor, true));
+    }
+
+    @Test
+    public void shouldReportOverflow() {
+        final ChangeJournal.Cursor cursor = world.journal().cursor();
+        for (int i = 0; i < 10; i++) {
+            world.put(i * 16, 0, 0, 1);
+        }
+        final List<String> origins = drain(cursor, false);
+
+        assertEquals(8, origins.size());
+        assertEquals("32,0,0", origins.get(0));
+        assertTrue(drain(cursor, true).isEmpty());
+        assertFalse(world.journal().capacity() > 8);
+    }
+}
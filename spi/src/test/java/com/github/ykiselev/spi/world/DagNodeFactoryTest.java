@@ -0,0 +1,97 @@
+package com.github.ykiselev.spi.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class DagNodeFactoryTest {
+
+    private final DagNodeFactory factory = new DagNodeFactory();
+
+    private final World world = new World(factory, (byte) 6);
+
+    @Test
+    public void shouldShareIdenticalLeaves() {
+        world.put(1, 2, 3, 5);
+        world.put(17, 2, 3, 5);
+        world.put(33, 50, 3, 5);
+        world.put(33, 50, 4, 6);
+
+        world.compact();
+
+        assertEquals(2, factory.distinct());
+        assertSame(world.leafForIndices(1, 2, 3, false).blocks(), world.leafForIndices(17, 2, 3, false).blocks());
+        assertNotSame(world.leafForIndices(1, 2, 3, false).blocks(), world.leafForIndices(33, 50, 3, false).blocks());
+    }
+
+    @Test
+    public void shouldCopyOnWrite() {
+        world.put(1, 2, 3, 5);
+        world.put(17, 2, 3, 5);
+        world.compact();
+
+        world.put(18, 2, 3, 7);
+
+        assertNotSame(world.leafForIndices(1, 2, 3, false).blocks(), world.leafForIndices(17, 2, 3, false).blocks());
+        assertEquals(5, world.get(1, 2, 3));
+        assertEquals(0, world.get(2, 2, 3));
+        assertEquals(5, world.get(17, 2, 3));
+        assertEquals(7, world.get(18, 2, 3));
+    }
+
+    @Test
+    public void shouldReleaseUnusedStorage() throws InterruptedException {
+        Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 5, null);
+        factory.intern(leaf);
+        assertEquals(1, factory.distinct());
+
+        leaf = null;
+        for (int attempt = 0; factory.distinct() > 0; attempt++) {
+            if (attempt == 100) {
+                fail("Unused storage is not released");
+            }
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void shouldInternConcurrently() throws InterruptedException, ExecutionException {
+        final List<Leaf> leaves = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final List<Leaf> batch = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    final Leaf leaf = new Leaf();
+                    leaf.put(1, 2, 3, i % 10, null);
+                    batch.add(leaf);
+                }
+                leaves.addAll(batch);
+                tasks.add(executor.submit(() -> batch.forEach(factory::intern)));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(10, factory.distinct());
+        for (Leaf leaf : leaves) {
+            assertSame(leaves.get(leaf.get(1, 2, 3)).blocks(), leaf.blocks());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.ykiselev.spi.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LeafMapTest {
+
+    private final World world = new World(new LeafMapNodeFactory(), (byte) 7);
+
+    private final World tree = new World(new DefaultNodeFactory(), (byte) 7);
+
+    private static List<Node> visit(World world, Box box) {
+        final List<Node> result = new ArrayList<>();
+        final Visitor visitor = new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                result.add(leaf);
+            }
+
+            @Override
+            public void visit(UniformNode node) {
+                result.add(node);
+            }
+        };
+        if (box != null) {
+            ((LeafMap) world.root()).visit(box, NodePredicate.DEFAULT, visitor);
+        } else {
+            world.visit(NodePredicate.DEFAULT, visitor);
+        }
+        return result;
+    }
+
+    private static long key(Node node) {
+        return Morton.encode(node.iorg() >> Leaf.SIDE_SHIFT, node.jorg() >> Leaf.SIDE_SHIFT, node.korg() >> Leaf.SIDE_SHIFT);
+    }
+
+    @Test
+    public void shouldEncodeMortonCode() {
+        assertEquals(0b001, Morton.encode(1, 0, 0));
+        assertEquals(0b010, Morton.encode(0, 1, 0));
+        assertEquals(0b100, Morton.encode(0, 0, 1));
+        assertEquals(0b111_000, Morton.encode(2, 2, 2));
+        assertEquals((1L << 63) - 1, Morton.encode(-1, -1, -1));
+    }
+
+    @Test
+    public void shouldMatchTree() {
+        final Random random = new Random(2);
+        for (int n = 0; n < 20_000; n++) {
+            final int i = random.nextInt(128), j = random.nextInt(128), k = random.nextInt(128);
+            final int value = random.nextInt(3);
+            world.put(i, j, k, value);
+            tree.put(i, j, k, value);
+        }
+        world.fill(10, 20, 30, 100, 60, 90, 2);
+        tree.fill(10, 20, 30, 100, 60, 90, 2);
+        world.compact();
+        tree.compact();
+        for (int k = 0; k < 128; k++) {
+            for (int j = 0; j < 128; j++) {
+                for (int i = 0; i < 128; i++) {
+                    assertEquals(tree.get(i, j, k), world.get(i, j, k));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldVisitInZOrder() {
+        final Random random = new Random(3);
+        for (int n = 0; n < 200; n++) {
+            world.put(random.nextInt(128), random.nextInt(128), random.nextInt(128), 1);
+        }
+        final List<Node> nodes = visit(world, null);
+
+        assertEquals(((LeafMap) world.root()).size(), nodes.size());
+        for (int n = 1; n < nodes.size(); n++) {
+            assertTrue(key(nodes.get(n - 1)) < key(nodes.get(n)));
+        }
+    }
+
+    @Test
+    public void shouldVisitBox() {
+        final Random random = new Random(4);
+        for (int n = 0; n < 300; n++) {
+            world.put(random.nextInt(128), random.nextInt(128), random.nextInt(128), 1);
+        }
+        world.fill(0, 0, 0, 32, 16, 16, 2);
+        for (int n = 0; n < 50; n++) {
+            final int i0 = random.nextInt(128), j0 = random.nextInt(128), k0 = random.nextInt(128);
+            final Box box = new Box(i0, j0, k0,
+                    i0 + 1 + random.nextInt(128 - i0), j0 + 1 + random.nextInt(128 - j0), k0 + 1 + random.nextInt(128 - k0));
+            final List<Node> expected = visit(world, null);
+            expected.removeIf(node -> !box.intersects(Box.of(node)));
+
+            assertEquals(expected, visit(world, box));
+        }
+    }
+
+    @Test
+    public void shouldStoreUniformLeaves() {
+        world.fill(0, 0, 0, 32, 32, 16, 3);
+        assertNull(world.leafForIndices(5, 5, 5, false));
+        assertEquals(4, ((LeafMap) world.root()).size());
+
+        world.put(5, 5, 5, 1);
+        world.fill(16, 16, 0, 32, 32, 16, 0);
+
+        assertEquals(1, world.get(5, 5, 5));
+        assertEquals(3, world.get(6, 5, 5));
+        assertEquals(0, world.get(20, 20, 5));
+        assertEquals(3, ((LeafMap) world.root()).size());
+
+        world.put(5, 5, 5, 3);
+        world.compact();
+        assertNull(world.leafForIndices(5, 5, 5, false));
+        assertEquals(3, world.get(5, 5, 5));
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.ykiselev.spi.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LeafTest {
+
+    private final Leaf leaf = new Leaf(new PaletteBlocks()).init(16, 32, 48);
+
+    @Test
+    public void shouldTrackSolidBlocksOnPut() {
+        assertTrue(leaf.isEmpty());
+
+        leaf.put(17, 33, 50, 1, null);
+        leaf.put(17, 33, 60, 2, null);
+        leaf.put(17, 33, 60, 3, null);
+
+        assertEquals(2, leaf.solid());
+        assertFalse(leaf.isColumnEmpty(1, 1));
+        assertTrue(leaf.isColumnEmpty(0, 1));
+
+        leaf.put(17, 33, 50, 0, null);
+        assertFalse(leaf.isColumnEmpty(1, 1));
+
+        leaf.put(17, 33, 60, 0, null);
+        assertTrue(leaf.isColumnEmpty(1, 1));
+        assertTrue(leaf.isEmpty());
+    }
+
+    @Test
+    public void shouldTrackSolidBlocksOnBulkWrites() {
+        leaf.fill(new Box(0, 0, 0, 20, 34, 50), 1, null);
+        assertEquals(4 * 2 * 2, leaf.solid());
+        assertFalse(leaf.isColumnEmpty(3, 1));
+        assertTrue(leaf.isColumnEmpty(4, 1));
+
+        leaf.fill(5);
+        assertEquals(Blocks.SIZE, leaf.solid());
+        assertFalse(leaf.isColumnEmpty(15, 15));
+
+        final byte[] data = new byte[Blocks.SIZE];
+        data[255] = 1;
+        data[4095] = 1;
+        leaf.copyFrom(ByteBuffer.wrap(data));
+        assertEquals(2, leaf.solid());
+        assertFalse(leaf.isColumnEmpty(15, 15));
+        assertTrue(leaf.isColumnEmpty(14, 15));
+    }
+
+    @Test
+    public void shouldKeepSnapshotIntact() {
+        leaf.put(17, 33, 50, 1, null);
+
+        final Leaf snapshot = leaf.snapshot();
+        leaf.put(17, 33, 50, 2, null);
+        leaf.put(18, 33, 50, 3, null);
+
+        assertEquals(1, snapshot.get(17, 33, 50));
+        assertEquals(0, snapshot.get(18, 33, 50));
+        assertEquals(1, snapshot.solid());
+        assertEquals(2, leaf.get(17, 33, 50));
+        assertEquals(2, leaf.solid());
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.ykiselev.spi.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PaletteBlocksTest {
+
+    private final PaletteBlocks blocks = new PaletteBlocks();
+
+    private final DenseBlocks expected = new DenseBlocks();
+
+    private void assertSame() {
+        for (int i = 0; i < Blocks.SIZE; i++) {
+            assertEquals(expected.get(i), blocks.get(i), "Index " + i);
+        }
+    }
+
+    private void put(int index, int value) {
+        blocks.put(index, value);
+        expected.put(index, value);
+    }
+
+    @Test
+    public void shouldStartEmpty() {
+        assertEquals(0, blocks.bits());
+        assertSame();
+    }
+
+    @Test
+    public void shouldWiden() {
+        put(1, 1);
+        assertEquals(1, blocks.bits());
+        put(2, 2);
+        put(3, 3);
+        assertEquals(2, blocks.bits());
+        for (int i = 4; i < 16; i++) {
+            put(i * 7, i);
+        }
+        assertEquals(4, blocks.bits());
+        put(Blocks.SIZE - 1, -1);
+        assertEquals(8, blocks.bits());
+        assertSame();
+    }
+
+    @Test
+    public void shouldMatchDenseStorage() {
+        final Random rnd = new Random(1);
+        for (int n = 0; n < 10_000; n++) {
+            put(rnd.nextInt(Blocks.SIZE), rnd.nextInt(256));
+        }
+        assertSame();
+    }
+
+    @Test
+    public void shouldFill() {
+        put(10, 5);
+        blocks.fill(3);
+        expected.fill(3);
+        assertEquals(0, blocks.bits());
+        assertSame();
+    }
+
+    @Test
+    public void shouldCopyFrom() {
+        final byte[] data = new byte[Blocks.SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ((i >> 8) < 8 ? 1 : 0);
+        }
+        blocks.copyFrom(ByteBuffer.wrap(data));
+        expected.copyFrom(ByteBuffer.wrap(data));
+        assertEquals(1, blocks.bits());
+        assertSame();
+        blocks.visit(actual -> assertArrayEquals(data, actual));
+        assertTrue(blocks.sizeInBytes() * 5 < expected.sizeInBytes());
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.ykiselev.spi.world;
+
+import com.github.ykiselev.opengl.matrices.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RaycastTest {
+
+    private final World world = new World(new DefaultNodeFactory(), (byte) 7);
+
+    /**
+     * Reference voxel by voxel traversal.
+     */
+    private static RayHit naive(World world, Vector3f o, Vector3f dir, float maxDistance) {
+        final double len = Math.sqrt(dir.x * dir.x + dir.y * dir.y + dir.z * dir.z);
+        final double[] d = {dir.x / len, dir.y / len, dir.z / len}, p = {o.x, o.y, o.z};
+        final int size = 1 << world.rangeShift();
+        final int[] v = new int[3], step = new int[3];
+        final double[] tMax = new double[3], tDelta = new double[3];
+        for (int a = 0; a < 3; a++) {
+            v[a] = (int) Math.floor(p[a]);
+            step[a] = d[a] > 0 ? 1 : -1;
+            tDelta[a] = d[a] != 0 ? Math.abs(1 / d[a]) : Double.POSITIVE_INFINITY;
+            tMax[a] = d[a] != 0
+                    ? ((d[a] > 0 ? v[a] + 1 : v[a]) - p[a]) / d[a]
+                    : Double.POSITIVE_INFINITY;
+        }
+        double t = 0;
+        Face face = null;
+        while (t <= maxDistance) {
+            if (v[0] >= 0 && v[1] >= 0 && v[2] >= 0 && v[0] < size && v[1] < size && v[2] < size) {
+                final int value = world.get(v[0], v[1], v[2]);
+                if (value != 0) {
+                    return new RayHit(v[0], v[1], v[2], value, face, (float) t);
+                }
+            }
+            int a = tMax[0] < tMax[1] ? (tMax[0] < tMax[2] ? 0 : 2) : (tMax[1] < tMax[2] ? 1 : 2);
+            t = tMax[a];
+            tMax[a] += tDelta[a];
+            v[a] += step[a];
+            face = Face.of(a, step[a] < 0);
+        }
+        return null;
+    }
+
+    @Test
+    public void shouldHitFloor() {
+        world.fill(0, 0, 0, 128, 128, 10, 1);
+        world.put(20, 30, 10, 2);
+
+        final RayHit hit = world.raycast(new Vector3f(20.5f, 30.5f, 100), new Vector3f(0, 0, -1), 200);
+        assertEquals(new RayHit(20, 30, 10, 2, Face.K_POS, 89), hit);
+
+        assertEquals(new RayHit(40, 30, 9, 1, Face.K_POS, 90),
+                world.raycast(new Vector3f(40.5f, 30.5f, 100), new Vector3f(0, 0, -1), 200));
+        assertNull(world.raycast(new Vector3f(40.5f, 30.5f, 100), new Vector3f(0, 0, -1), 80));
+        assertNull(world.raycast(new Vector3f(40.5f, 30.5f, 100), new Vector3f(1, 1, 0.1f), 500));
+    }
+
+    @Test
+    public void shouldEnterWorldFromOutside() {
+        world.put(0, 5, 5, 3);
+
+        assertEquals(new RayHit(0, 5, 5, 3, Face.I_NEG, 10),
+                world.raycast(new Vector3f(-10, 5.5f, 5.5f), new Vector3f(1, 0, 0), 100));
+        assertNull(world.raycast(new Vector3f(-10, 5.5f, 5.5f), new Vector3f(-1, 0, 0), 100));
+    }
+
+    @Test
+    public void shouldHitFromInside() {
+        world.put(5, 5, 5, 3);
+
+        assertEquals(new RayHit(5, 5, 5, 3, null, 0),
+                world.raycast(new Vector3f(5.5f, 5.5f, 5.5f), new Vector3f(1, 2, 3), 100));
+    }
+
+    @Test
+    public void shouldMatchNaiveTraversal() {
+        matchNaiveTraversal(world);
+    }
+
+    @Test
+    public void shouldMatchNaiveTraversalInLeafMap() {
+        matchNaiveTraversal(new World(new LeafMapNodeFactory(), (byte) 7));
+    }
+
+    private void matchNaiveTraversal(World world) {
+        final Random random = new Random(5);
+        for (int n = 0; n < 3000; n++) {
+            world.put(random.nextInt(128), random.nextInt(128), random.nextInt(128), 1 + random.nextInt(3));
+        }
+        world.fill(64, 64, 0, 128, 128, 20, 2);
+        world.compact();
+        final Vector3f[] origins = new Vector3f[500], directions = new Vector3f[500];
+        for (int n = 0; n < origins.length; n++) {
+            origins[n] = new Vector3f(random.nextFloat() * 128, random.nextFloat() * 128, random.nextFloat() * 128);
+            directions[n] = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+        }
+        final RayHit[] hits = world.raycast(origins, directions, 100);
+        for (int n = 0; n < origins.length; n++) {
+            final RayHit expected = naive(world, origins[n], directions[n], 100);
+            final RayHit actual = hits[n];
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertEquals(expected.i(), actual.i());
+                assertEquals(expected.j(), actual.j());
+                assertEquals(expected.k(), actual.k());
+                assertEquals(expected.value(), actual.value());
+                assertEquals(expected.face(), actual.face());
+                assertEquals(expected.distance(), actual.distance(), 1e-3);
+            }
+        }
+    }
+}
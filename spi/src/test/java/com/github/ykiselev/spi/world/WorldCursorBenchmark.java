@@ -0,0 +1,73 @@
+package com.github.ykiselev.spi.world;
+
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+/**
+ * Compares {@link World#get(int, int, int)} with {@link WorldCursor#get(int, int, int)} on sequential scan and
+ * 6-neighbour access patterns.
+ */
+public final class WorldCursorBenchmark {
+
+    private static final int DIM_SIZE = 256;
+
+    private static final int HEIGHT = 96;
+
+    private static final int PASSES = 5;
+
+    private interface Accessor {
+
+        int get(int i, int j, int k);
+    }
+
+    private int sink;
+
+    public static void main(String[] args) {
+        final World world = WorldGenerator.terrain(1).generate(DefaultNodeFactory.palette(), DIM_SIZE);
+        final WorldCursorBenchmark benchmark = new WorldCursorBenchmark();
+        for (int n = 0; n < 2; n++) {
+            benchmark.run("world", world::get);
+            benchmark.run("cursor", world.cursor()::get);
+        }
+    }
+
+    private int scan(Accessor accessor) {
+        int result = 0;
+        for (int k = 0; k < HEIGHT; k++) {
+            for (int j = 0; j < DIM_SIZE; j++) {
+                for (int i = 0; i < DIM_SIZE; i++) {
+                    result += accessor.get(i, j, k);
+                }
+            }
+        }
+        return result;
+    }
+
+    private int neighbours(Accessor accessor) {
+        int result = 0;
+        for (int k = 1; k < HEIGHT - 1; k++) {
+            for (int j = 1; j < DIM_SIZE - 1; j++) {
+                for (int i = 1; i < DIM_SIZE - 1; i++) {
+                    result += accessor.get(i - 1, j, k) + accessor.get(i + 1, j, k)
+                            + accessor.get(i, j - 1, k) + accessor.get(i, j + 1, k)
+                            + accessor.get(i, j, k - 1) + accessor.get(i, j, k + 1);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void run(String name, Accessor accessor) {
+        final long ops = (long) DIM_SIZE * DIM_SIZE * HEIGHT * PASSES;
+        long t0 = System.nanoTime();
+        for (int n = 0; n < PASSES; n++) {
+            sink += scan(accessor);
+        }
+        long t1 = System.nanoTime();
+        for (int n = 0; n < PASSES; n++) {
+            sink += neighbours(accessor);
+        }
+        long t2 = System.nanoTime();
+        System.out.printf("%-8s scan: %.2f ns/op, 6-neighbours: %.2f ns/op (%d)%n",
+                name, (double) (t1 - t0) / ops, (double) (t2 - t1) / (6 * ops), sink);
+    }
+}
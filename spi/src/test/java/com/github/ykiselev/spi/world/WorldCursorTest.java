@@ -0,0 +1,56 @@
+package com.github.ykiselev.spi.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class WorldCursorTest {
+
+    @Test
+    public void shouldPutAndGet() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        WorldCursor cursor = world.cursor();
+        Random random = new Random(1);
+        for (int n = 0; n < 5000; n++) {
+            final int i = random.nextInt(64), j = random.nextInt(64), k = random.nextInt(64);
+            final int value = random.nextInt(4);
+            cursor.put(i, j, k, value);
+            assertEquals(value, world.get(i, j, k));
+        }
+        for (int k = 0; k < 64; k++) {
+            for (int j = 0; j < 64; j++) {
+                for (int i = 0; i < 64; i++) {
+                    assertEquals(world.get(i, j, k), cursor.get(i, j, k));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldFollowStructuralChanges() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        WorldCursor cursor = world.cursor();
+        cursor.put(5, 6, 7, 1);
+        assertNotNull(cursor.leaf(5, 6, 7));
+
+        world.fill(0, 0, 0, 32, 32, 32, 3);
+        assertEquals(3, cursor.get(5, 6, 7));
+
+        cursor.put(5, 6, 7, 2);
+        assertEquals(2, world.get(5, 6, 7));
+        assertEquals(3, cursor.get(4, 6, 7));
+
+        cursor.put(5, 6, 7, 3);
+        world.compact();
+        assertNull(world.leafForIndices(5, 6, 7, false));
+        assertEquals(3, cursor.get(5, 6, 7));
+        assertEquals(0, cursor.get(40, 40, 40));
+
+        cursor.put(40, 40, 40, 1);
+        assertEquals(1, world.get(40, 40, 40));
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.ykiselev.spi.world;
+
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Compares memory footprint, {@link World#get(int, int, int)} latency and full visit time of different node factories
+ * (tree and flat {@link LeafMap} layouts) on the output of {@link WorldGenerator}.
+ */
+public final class WorldStorageBenchmark {
+
+    private static final int DIM_SIZE = 512;
+
+    private static final int GETS = 20_000_000;
+
+    private static final int VISITS = 20;
+
+    private int sink;
+
+    public static void main(String[] args) {
+        final WorldStorageBenchmark benchmark = new WorldStorageBenchmark();
+        benchmark.run("dense", DefaultNodeFactory::new);
+        benchmark.run("palette", DefaultNodeFactory::palette);
+        benchmark.run("dag", DagNodeFactory::new);
+        benchmark.run("dag+palette", () -> new DagNodeFactory(DefaultNodeFactory.palette()));
+        benchmark.run("map", LeafMapNodeFactory::new);
+        benchmark.run("map+palette", () -> new LeafMapNodeFactory(DefaultNodeFactory.palette()));
+    }
+
+    private static long memory(World world) {
+        final Set<Blocks> blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+        final long[] result = new long[1];
+        world.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(NormalNode node) {
+                result[0] += 16 + 16 + 4 + 16 + 8 * 4;
+            }
+
+            @Override
+            public void visit(Leaf leaf) {
+                result[0] += leaf.sizeInBytes() - leaf.blocks().sizeInBytes();
+                if (blocks.add(leaf.blocks())) {
+                    result[0] += leaf.blocks().sizeInBytes();
+                }
+            }
+
+            @Override
+            public void visit(UniformNode node) {
+                result[0] += 16 + 12 + 8;
+            }
+        });
+        if (world.root() instanceof LeafMap map) {
+            // keys, nodes and sorted snapshot of both
+            result[0] += 2L * map.size() * (8 + 4) * 2;
+        }
+        return result[0];
+    }
+
+    private void run(String name, Supplier<NodeFactory> factory) {
+        final long t0 = System.nanoTime();
+        final World world = new WorldGenerator().generate(factory.get(), DIM_SIZE);
+        world.compact();
+        final long t1 = System.nanoTime();
+        final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        // warm up
+        for (int n = 0; n < GETS; n++) {
+            sink += world.get(rnd.nextInt(DIM_SIZE), rnd.nextInt(DIM_SIZE), rnd.nextInt(16));
+        }
+        final long t2 = System.nanoTime();
+        for (int n = 0; n < GETS; n++) {
+            sink += world.get(rnd.nextInt(DIM_SIZE), rnd.nextInt(DIM_SIZE), rnd.nextInt(16));
+        }
+        final long t3 = System.nanoTime();
+        final int[] leaves = new int[1];
+        final Visitor counter = new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                leaves[0]++;
+            }
+        };
+        for (int n = 0; n < VISITS; n++) {
+            world.visit(NodePredicate.DEFAULT, counter);
+        }
+        final long t4 = System.nanoTime();
+        System.out.printf("%-12s generated in %5d ms, memory: %,12d bytes, get: %.1f ns/op, visit: %.2f ms (%d, %d)%n",
+                name, (t1 - t0) / 1_000_000, memory(world), (double) (t3 - t2) / GETS,
+                (t4 - t3) / 1e6 / VISITS, sink, leaves[0]);
+    }
+}
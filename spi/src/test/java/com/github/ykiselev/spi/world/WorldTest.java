@@ -2,10 +2,198 @@ package com.github.ykiselev.spi.world;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class WorldTest {
 
+    private static void fill(World world, int from, int to, int value) {
+        for (int k = from; k < to; k++) {
+            for (int j = from; j < to; j++) {
+                for (int i = from; i < to; i++) {
+                    world.put(i, j, k, value);
+                }
+            }
+        }
+    }
+
+    private static int leaves(World world) {
+        final int[] result = new int[1];
+        world.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                result[0]++;
+            }
+        });
+        return result[0];
+    }
+
+    @Test
+    public void shouldSkipEmptySubtrees() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        world.put(1, 2, 3, 1);
+        world.put(40, 40, 40, 1);
+        assertEquals(2, leaves(world));
+
+        world.put(40, 40, 40, 0);
+        assertEquals(1, leaves(world));
+        assertNotNull(world.leafForIndices(40, 40, 40, false));
+
+        world.fill(0, 0, 0, 8, 8, 8, 0);
+        assertEquals(0, leaves(world));
+    }
+
+    @Test
+    public void shouldVisitLeavesWrittenDirectly() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        world.put(40, 40, 40, 1);
+        world.put(40, 40, 40, 0);
+
+        world.leafForIndices(1, 2, 3, true).fill(1);
+        assertEquals(1, leaves(world));
+
+        WorldCursor cursor = world.cursor();
+        assertEquals(0, cursor.get(40, 40, 40));
+        cursor.put(40, 40, 40, 1);
+        assertEquals(2, leaves(world));
+    }
+
+    @Test
+    public void shouldUnloadRegion() {
+        World world = new World(new DefaultNodeFactory(), (byte) 7, 64, 5);
+        world.fill(0, 0, 0, 128, 128, 8, 1);
+        world.put(40, 40, 40, 2);
+        world.put(70, 40, 40, 3);
+        final long region = world.regions().key(40, 40, 40);
+        world.regions().markLoaded(region);
+        final ChangeJournal.Cursor cursor = world.journal().cursor();
+
+        world.unload(world.regions().key(40, 40, 0));
+        world.unload(region);
+
+        assertFalse(world.regions().isLoaded(region));
+        assertEquals(0, world.get(40, 40, 40));
+        assertEquals(0, world.get(32, 32, 0));
+        assertEquals(1, world.get(31, 32, 0));
+        assertEquals(3, world.get(70, 40, 40));
+        final Set<Long> recorded = new HashSet<>();
+        assertTrue(cursor.drain((i, j, k) -> recorded.add(Morton.encode(i >> 4, j >> 4, k >> 4))));
+        assertEquals(Set.of(Morton.encode(2, 2, 0), Morton.encode(3, 2, 0), Morton.encode(2, 3, 0),
+                Morton.encode(3, 3, 0), Morton.encode(2, 2, 2)), recorded);
+    }
+
+    @Test
+    public void shouldJournalUnloadedUniformNodes() {
+        World world = new World(new DefaultNodeFactory(), (byte) 7, 64, 5);
+        world.fill(64, 0, 0, 96, 32, 32, 5);
+        final ChangeJournal.Cursor cursor = world.journal().cursor();
+
+        world.unload(world.regions().key(64, 0, 0));
+        world.unload(world.regions().key(0, 0, 0));
+
+        final Set<Long> recorded = new HashSet<>();
+        assertTrue(cursor.drain((i, j, k) -> recorded.add(Morton.encode(i >> 4, j >> 4, k >> 4))));
+        assertEquals(8, recorded.size());
+        assertTrue(recorded.contains(Morton.encode(5, 1, 1)));
+        assertEquals(0, world.get(70, 10, 10));
+    }
+
+    @Test
+    public void shouldCompactUniformRegions() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        fill(world, 0, 32, 3);
+        world.put(40, 40, 40, 1);
+        world.put(40, 40, 40, 0);
+
+        world.compact();
+
+        assertNull(world.leafForIndices(0, 0, 0, false));
+        assertNull(world.leafForIndices(40, 40, 40, false));
+        assertEquals(3, world.get(0, 0, 0));
+        assertEquals(3, world.get(31, 31, 31));
+        assertEquals(0, world.get(32, 31, 31));
+        assertEquals(0, world.get(40, 40, 40));
+    }
+
+    @Test
+    public void shouldSplitUniformNodeOnPut() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        fill(world, 0, 32, 3);
+        world.compact();
+
+        world.put(5, 6, 7, 1);
+
+        assertNotNull(world.leafForIndices(5, 6, 7, false));
+        assertNull(world.leafForIndices(20, 20, 20, false));
+        assertEquals(1, world.get(5, 6, 7));
+        assertEquals(3, world.get(4, 6, 7));
+        assertEquals(3, world.get(20, 20, 20));
+    }
+
+    @Test
+    public void shouldFill() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        world.put(40, 40, 40, 9);
+
+        world.fill(0, 0, 0, 64, 64, 8, 1);
+        world.fill(3, 4, 5, 37, 38, 39, 2);
+        world.fill(10, 10, 10, 30, 30, 30, 0);
+
+        for (int k = 0; k < 64; k++) {
+            for (int j = 0; j < 64; j++) {
+                for (int i = 0; i < 64; i++) {
+                    final int expected;
+                    if (i >= 10 && i < 30 && j >= 10 && j < 30 && k >= 10 && k < 30) {
+                        expected = 0;
+                    } else if (i >= 3 && i < 37 && j >= 4 && j < 38 && k >= 5 && k < 39) {
+                        expected = 2;
+                    } else if (k < 8) {
+                        expected = 1;
+                    } else if (i == 40 && j == 40 && k == 40) {
+                        expected = 9;
+                    } else {
+                        expected = 0;
+                    }
+                    assertEquals(expected, world.get(i, j, k), i + "," + j + "," + k);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldCopy() {
+        World world = new World(new DefaultNodeFactory(), (byte) 7);
+        fill(world, 0, 20, 3);
+        world.put(1, 2, 3, 4);
+
+        world.copy(new Box(0, 0, 0, 20, 20, 20), 70, 65, 90);
+
+        assertEquals(4, world.get(71, 67, 93));
+        assertEquals(3, world.get(70, 65, 90));
+        assertEquals(3, world.get(89, 84, 109));
+        assertEquals(0, world.get(90, 84, 109));
+        assertEquals(0, world.get(69, 65, 90));
+    }
+
+    @Test
+    public void shouldCopyOverlapping() {
+        World world = new World(new DefaultNodeFactory(), (byte) 6);
+        for (int i = 0; i < 20; i++) {
+            world.put(i, 0, 0, i + 1);
+        }
+
+        world.copy(new Box(0, 0, 0, 20, 1, 1), 5, 0, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 1, world.get(i, 0, 0));
+        }
+        for (int i = 5; i < 25; i++) {
+            assertEquals(i - 4, world.get(i, 0, 0));
+        }
+    }
+
     @Test
     public void shouldPutAndGet() {
         final byte globalRangeShift = 7;
@@ -0,0 +1,78 @@
+package com.github.ykiselev.spi.world.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BatchWriterTest {
+
+    @Test
+    public void shouldWriteChunksInOrder() throws IOException {
+        final Path path = Files.createTempFile("batch", ".bin");
+        try {
+            final ByteBuffer chunk = ByteBuffer.allocate(4000);
+            final byte[] expected = new byte[3 * BatchWriter.BATCHES * BatchWriter.BATCH_SIZE / 4000 * 4000];
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE);
+                 BatchWriter writer = new BatchWriter(file)) {
+                for (int offset = 0; offset < expected.length; offset += chunk.capacity()) {
+                    chunk.clear();
+                    for (int n = 0; n < chunk.capacity(); n++) {
+                        expected[offset + n] = (byte) (offset / chunk.capacity() + n);
+                        chunk.put(expected[offset + n]);
+                    }
+                    writer.accept(chunk.flip());
+                }
+                writer.finish();
+            }
+            assertArrayEquals(expected, Files.readAllBytes(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void shouldPropagateFailure() {
+        final GatheringByteChannel channel = new GatheringByteChannel() {
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+                throw new IOException("Disk is full");
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs) throws IOException {
+                return write(srcs, 0, srcs.length);
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return (int) write(new ByteBuffer[]{src});
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (BatchWriter writer = new BatchWriter(channel)) {
+            assertThrows(RuntimeException.class, () -> {
+                for (int n = 0; n < 3 * BatchWriter.BATCHES * BatchWriter.BATCH_SIZE / 1000; n++) {
+                    writer.accept(ByteBuffer.allocate(1000));
+                }
+                writer.finish();
+            });
+        }
+    }
+}
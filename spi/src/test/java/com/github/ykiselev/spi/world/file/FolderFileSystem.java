@@ -0,0 +1,104 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.services.FileSystem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * File system stand-in backed by single folder. Archives are mapped to sub-folders. Temporary file system deletes its
+ * folder on close.
+ */
+final class FolderFileSystem implements FileSystem {
+
+    private final Path root;
+
+    private final boolean temporary;
+
+    private FolderFileSystem(Path root, boolean temporary) {
+        this.root = root;
+        this.temporary = temporary;
+    }
+
+    FolderFileSystem(Path root) {
+        this(root, false);
+    }
+
+    static FolderFileSystem temporary() {
+        try {
+            return new FolderFileSystem(Files.createTempDirectory("world"), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Path root() {
+        return root;
+    }
+
+    @Override
+    public FileChannel open(String name, OpenOption... options) {
+        final Path path = root.resolve(name);
+        try {
+            Files.createDirectories(path.getParent());
+            return FileChannel.open(path, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void replace(String source, String target) {
+        try {
+            Files.move(root.resolve(source), root.resolve(target), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public FileSystem mapArchive(String archiveName, boolean create, boolean readOnly) {
+        final Path path = root.resolve(archiveName);
+        if (!create && !Files.isDirectory(path)) {
+            throw new IllegalStateException("Unable to map archive!");
+        }
+        return new FolderFileSystem(path);
+    }
+
+    @Override
+    public Optional<ReadableByteChannel> open(String resource) {
+        final Path path = root.resolve(resource);
+        return Files.exists(path)
+                ? Optional.of(open(resource, StandardOpenOption.READ))
+                : Optional.empty();
+    }
+
+    @Override
+    public Stream<ReadableByteChannel> openAll(String resource) {
+        return open(resource).stream();
+    }
+
+    @Override
+    public void close() {
+        if (temporary) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.Blocks;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LeafCodecTest {
+
+    private final LeafCodec.Analysis analysis = new LeafCodec.Analysis();
+
+    private LeafCodec roundTrip(byte[] data) {
+        final LeafCodec codec = LeafCodec.choose(analysis.analyze(data));
+        final ByteBuffer buffer = ByteBuffer.allocate(2 * Blocks.SIZE);
+        codec.encode(data, analysis, buffer);
+        assertEquals(codec.size(analysis), buffer.position());
+        buffer.flip();
+        final byte[] decoded = new byte[Blocks.SIZE];
+        codec.decode(buffer, buffer.remaining(), decoded);
+        assertArrayEquals(data, decoded);
+        assertEquals(0, buffer.remaining());
+        return codec;
+    }
+
+    @Test
+    public void shouldChooseUniform() {
+        final byte[] data = new byte[Blocks.SIZE];
+        Arrays.fill(data, (byte) 3);
+        assertEquals(LeafCodec.UNIFORM, roundTrip(data));
+    }
+
+    @Test
+    public void shouldChooseRunLength() {
+        final byte[] data = new byte[Blocks.SIZE];
+        Arrays.fill(data, 0, 1000, (byte) 1);
+        Arrays.fill(data, 1000, 1500, (byte) -2);
+        assertEquals(LeafCodec.RLE, roundTrip(data));
+    }
+
+    @Test
+    public void shouldChoosePalette() {
+        final Random random = new Random(1);
+        for (int size : new int[]{2, 3, 16}) {
+            final byte[] data = new byte[Blocks.SIZE];
+            for (int n = 0; n < data.length; n++) {
+                data[n] = (byte) (random.nextInt(size) * 15);
+            }
+            assertEquals(LeafCodec.PALETTE, roundTrip(data));
+        }
+    }
+
+    @Test
+    public void shouldChooseRaw() {
+        final byte[] data = new byte[Blocks.SIZE];
+        new Random(2).nextBytes(data);
+        assertEquals(LeafCodec.RAW, roundTrip(data));
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.services.schedule.Repeatable;
+import com.github.ykiselev.spi.services.schedule.Schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule stand-in running all tasks on each call to {@link #processPendingTasks(long)} regardless of intervals.
+ */
+final class ManualSchedule implements Schedule {
+
+    private final List<Repeatable> tasks = new ArrayList<>();
+
+    @Override
+    public void schedule(long interval, TimeUnit unit, Runnable task) {
+        tasks.add(() -> {
+            task.run();
+            return false;
+        });
+    }
+
+    @Override
+    public void schedule(long interval, TimeUnit unit, Repeatable task) {
+        tasks.add(task);
+    }
+
+    @Override
+    public void processPendingTasks(long quota) {
+        tasks.removeIf(task -> !task.run());
+    }
+
+    boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+}
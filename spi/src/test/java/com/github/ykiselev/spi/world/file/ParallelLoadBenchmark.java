@@ -0,0 +1,37 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+/**
+ * Measures how load time of {@link WorldFile} scales with number of decoding workers.
+ */
+public final class ParallelLoadBenchmark {
+
+    private static final int DIM_SIZE = 512;
+
+    private static final int PASSES = 5;
+
+    public static void main(String[] args) {
+        final World world = WorldGenerator.terrain(1).generate(DefaultNodeFactory.palette(), DIM_SIZE);
+        world.compact();
+        try (FolderFileSystem fileSystem = FolderFileSystem.temporary()) {
+            final int processors = Runtime.getRuntime().availableProcessors();
+            System.out.printf("processors: %d%n", processors);
+            for (WorldFile.Container container : WorldFile.Container.values()) {
+                new WorldFile(container).save(fileSystem, world, "bench");
+                for (int workers = 1; workers <= Math.max(8, 2 * processors); workers *= 2) {
+                    final WorldFile worldFile = new WorldFile(container, workers);
+                    long best = Long.MAX_VALUE;
+                    for (int pass = 0; pass < PASSES; pass++) {
+                        final long t0 = System.nanoTime();
+                        worldFile.load(fileSystem, "bench", DefaultNodeFactory.palette());
+                        best = Math.min(best, System.nanoTime() - t0);
+                    }
+                    System.out.printf("%s: workers: %d, load: %.1f ms%n", container, workers, best / 1e6);
+                }
+            }
+        }
+    }
+}
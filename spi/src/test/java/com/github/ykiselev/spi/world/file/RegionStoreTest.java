@@ -0,0 +1,80 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Regions;
+import com.github.ykiselev.spi.world.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RegionStoreTest {
+
+    private final FolderFileSystem fileSystem = FolderFileSystem.temporary();
+
+    private final RegionStore store = new RegionStore(fileSystem, "test");
+
+    private static World world() {
+        final World world = new World(new DefaultNodeFactory(), (byte) 7, 64, 5);
+        world.fill(0, 0, 0, 128, 128, 64, 1);
+        world.fill(10, 20, 30, 50, 60, 70, 2);
+        world.put(100, 100, 100, 3);
+        world.compact();
+        return world;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fileSystem.close();
+    }
+
+    @Test
+    public void shouldSaveAndLoadRegions() {
+        final World world = world();
+        final Regions regions = world.regions();
+        regions.markLoaded(regions.key(0, 0, 0));
+        regions.markLoaded(regions.key(100, 100, 100));
+        regions.markLoaded(regions.key(40, 40, 40));
+        store.save(world);
+
+        assertTrue(store.exists(regions.key(100, 100, 100)));
+        assertFalse(store.exists(regions.key(100, 100, 0)));
+        assertFalse(Files.exists(fileSystem.root().resolve("universe/test/3.3.3.region.tmp")));
+
+        final World loaded = new World(new DefaultNodeFactory(), (byte) 7, 64, 5);
+        assertTrue(store.load(loaded, regions.key(40, 40, 40)));
+        assertTrue(store.load(loaded, regions.key(100, 100, 100)));
+        assertFalse(store.load(loaded, regions.key(100, 100, 0)));
+
+        assertTrue(loaded.regions().isLoaded(regions.key(100, 100, 0)));
+        assertEquals(3, loaded.regions().loaded().length);
+        assertEquals(0, loaded.get(0, 0, 0));
+        assertEquals(0, loaded.get(100, 100, 10));
+        for (int k = 32; k < 64; k++) {
+            for (int j = 32; j < 64; j++) {
+                for (int i = 32; i < 64; i++) {
+                    assertEquals(world.get(i, j, k), loaded.get(i, j, k));
+                    assertEquals(world.get(i + 64, j + 64, k + 64), loaded.get(i + 64, j + 64, k + 64));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldReplaceRegionOnLoad() {
+        final World world = world();
+        final long region = world.regions().key(40, 40, 40);
+        store.save(world, region);
+
+        world.put(40, 40, 40, 9);
+        world.put(70, 40, 40, 9);
+        store.load(world, region);
+
+        assertEquals(2, world.get(40, 40, 40));
+        assertEquals(9, world.get(70, 40, 40));
+    }
+}
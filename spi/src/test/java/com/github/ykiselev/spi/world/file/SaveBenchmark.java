@@ -0,0 +1,39 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures saves per second of {@link WorldFile} on generated 1024-sized world for both containers.
+ */
+public final class SaveBenchmark {
+
+    private static final int DIM_SIZE = 1024;
+
+    private static final int PASSES = 5;
+
+    public static void main(String[] args) throws IOException {
+        final World world = WorldGenerator.terrain(1).generate(DefaultNodeFactory.palette(), DIM_SIZE);
+        world.compact();
+        try (FolderFileSystem fileSystem = FolderFileSystem.temporary()) {
+            for (WorldFile.Container container : WorldFile.Container.values()) {
+                final WorldFile worldFile = new WorldFile(container);
+                final Path file = fileSystem.root().resolve(container == WorldFile.Container.PLAIN
+                        ? "universe/bench.world" : "universe/bench/world");
+                long best = Long.MAX_VALUE;
+                for (int pass = 0; pass < PASSES; pass++) {
+                    final long t0 = System.nanoTime();
+                    worldFile.save(fileSystem, world, "bench");
+                    best = Math.min(best, System.nanoTime() - t0);
+                }
+                System.out.printf("%s: file: %,d bytes, best save: %.1f ms (%.2f saves/s)%n",
+                        container, Files.size(file), best / 1e6, 1e9 / best);
+            }
+        }
+    }
+}
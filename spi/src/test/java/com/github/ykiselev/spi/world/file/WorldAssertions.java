@@ -0,0 +1,29 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.World;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Assertions shared by world persistence tests.
+ */
+final class WorldAssertions {
+
+    private WorldAssertions() {
+    }
+
+    /**
+     * Compares worlds block by block.
+     */
+    static void assertSameBlocks(World expected, World actual) {
+        assertEquals(expected.rangeShift(), actual.rangeShift());
+        final int size = 1 << expected.rangeShift();
+        for (int k = 0; k < size; k++) {
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    assertEquals(expected.get(i, j, k), actual.get(i, j, k));
+                }
+            }
+        }
+    }
+}
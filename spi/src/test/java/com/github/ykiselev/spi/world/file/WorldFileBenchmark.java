@@ -0,0 +1,66 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.NodePredicate;
+import com.github.ykiselev.spi.world.Visitor;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures save and load throughput of {@link WorldFile} on generated terrain. Throughput is given in terms of
+ * uncompressed leaf data (as if every non-empty leaf was stored raw).
+ */
+public final class WorldFileBenchmark {
+
+    private static final int DIM_SIZE = 512;
+
+    private static final int PASSES = 5;
+
+    public static void main(String[] args) throws IOException {
+        final World world = WorldGenerator.terrain(1).generate(DefaultNodeFactory.palette(), DIM_SIZE);
+        final int[] leaves = new int[1];
+        world.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                leaves[0]++;
+            }
+        });
+        world.compact();
+        final long raw = (long) leaves[0] * WorldFile.LEAF_CHUNK_SIZE;
+
+        try (FolderFileSystem fileSystem = FolderFileSystem.temporary()) {
+            // region around the "player" spanning 1/8 of world in each horizontal direction
+            final Box region = new Box(DIM_SIZE / 2, DIM_SIZE / 2, 0, DIM_SIZE / 2 + DIM_SIZE / 8, DIM_SIZE / 2 + DIM_SIZE / 8, DIM_SIZE);
+            for (WorldFile.Container container : WorldFile.Container.values()) {
+                final WorldFile worldFile = new WorldFile(container);
+                final Path file = fileSystem.root().resolve(container == WorldFile.Container.PLAIN
+                        ? "universe/bench.world" : "universe/bench/world");
+                for (int pass = 0; pass < PASSES; pass++) {
+                    final long t0 = System.nanoTime();
+                    worldFile.save(fileSystem, world, "bench");
+                    final long t1 = System.nanoTime();
+                    worldFile.load(fileSystem, "bench", DefaultNodeFactory.palette());
+                    final long t2 = System.nanoTime();
+                    worldFile.loadRegion(fileSystem, "bench", region, DefaultNodeFactory.palette());
+                    final long t3 = System.nanoTime();
+                    System.out.printf("%s: leaves: %d, raw: %,d bytes, file: %,d bytes (%.1f%%), save: %.1f MB/s, load: %.1f MB/s, region: %.1f ms (full: %.1f ms)%n",
+                            container, leaves[0], raw, Files.size(file), 100.0 * Files.size(file) / raw,
+                            raw / 1e6 / ((t1 - t0) / 1e9), raw / 1e6 / ((t2 - t1) / 1e9),
+                            (t3 - t2) / 1e6, (t2 - t1) / 1e6);
+                }
+            }
+            // the part of asynchronous save done on calling thread
+            for (int pass = 0; pass < PASSES; pass++) {
+                final long t0 = System.nanoTime();
+                final int nodes = world.snapshot().nodes().size();
+                System.out.printf("snapshot: %d nodes, %.2f ms%n", nodes, (System.nanoTime() - t0) / 1e6);
+            }
+        }
+    }
+}
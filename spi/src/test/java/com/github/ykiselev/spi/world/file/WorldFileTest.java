@@ -0,0 +1,177 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.Blocks;
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+
+import static com.github.ykiselev.spi.world.file.WorldAssertions.assertSameBlocks;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorldFileTest {
+
+    private final FolderFileSystem fileSystem = FolderFileSystem.temporary();
+
+    private final WorldFile worldFile = new WorldFile();
+
+    @AfterEach
+    public void tearDown() {
+        fileSystem.close();
+    }
+
+    @Test
+    public void shouldSaveAndLoad() {
+        final World world = WorldGenerator.terrain(3).generate(new DefaultNodeFactory(), 128);
+        world.fill(0, 0, 100, 64, 64, 128, 2);
+        world.put(100, 100, 120, 1);
+        world.compact();
+
+        worldFile.save(fileSystem, world, "test");
+
+        assertSameBlocks(world, worldFile.load(fileSystem, "test", DefaultNodeFactory.palette()));
+    }
+
+    @Test
+    public void shouldSaveAndLoadPlain() {
+        final WorldFile plain = new WorldFile(WorldFile.Container.PLAIN);
+        final World world = WorldGenerator.terrain(7).generate(new DefaultNodeFactory(), 128);
+        world.put(100, 100, 120, 1);
+        world.compact();
+
+        plain.save(fileSystem, world, "test");
+
+        assertTrue(Files.isRegularFile(fileSystem.root().resolve("universe/test.world")));
+        assertFalse(Files.exists(fileSystem.root().resolve("universe/test.world.tmp")));
+        assertSameBlocks(world, plain.load(fileSystem, "test", DefaultNodeFactory.palette()));
+    }
+
+    @Test
+    public void shouldSaveAsync() {
+        final World world = WorldGenerator.terrain(11).generate(new DefaultNodeFactory(), 128);
+        world.compact();
+        worldFile.save(fileSystem, world, "sync");
+        final World expected = worldFile.load(fileSystem, "sync", new DefaultNodeFactory());
+        final ManualSchedule schedule = new ManualSchedule();
+        final int[] progress = new int[2];
+        final Throwable[] error = new Throwable[1];
+        final boolean[] completed = new boolean[1];
+
+        final CompletableFuture<Void> future = worldFile.saveAsync(fileSystem, world, "async", schedule,
+                new WorldFile.SaveProgress() {
+                    @Override
+                    public void progress(int saved, int total) {
+                        progress[0] = saved;
+                        progress[1] = total;
+                    }
+
+                    @Override
+                    public void completed(Throwable e) {
+                        completed[0] = true;
+                        error[0] = e;
+                    }
+                });
+        // snapshot should not see modifications made after the call
+        world.fill(0, 0, 0, 128, 128, 16, 7);
+        world.put(1, 2, 100, 5);
+        future.join();
+        schedule.processPendingTasks(0);
+
+        assertTrue(schedule.isEmpty());
+        assertTrue(completed[0]);
+        assertNull(error[0]);
+        assertTrue(progress[1] > 0);
+        assertEquals(progress[1], progress[0]);
+        assertSameBlocks(expected, worldFile.load(fileSystem, "async", new DefaultNodeFactory()));
+    }
+
+    @Test
+    public void shouldLoadInParallel() {
+        final World world = WorldGenerator.terrain(9).generate(new DefaultNodeFactory(), 128);
+        world.fill(0, 0, 100, 64, 64, 128, 2);
+        world.compact();
+
+        for (WorldFile.Container container : WorldFile.Container.values()) {
+            final WorldFile parallel = new WorldFile(container, 4);
+            parallel.save(fileSystem, world, "test");
+            assertSameBlocks(world, parallel.load(fileSystem, "test", DefaultNodeFactory.palette()));
+        }
+    }
+
+    @Test
+    public void shouldLoadRegion() {
+        assertRegion(worldFile);
+    }
+
+    @Test
+    public void shouldLoadRegionPlain() {
+        assertRegion(new WorldFile(WorldFile.Container.PLAIN));
+    }
+
+    private void assertRegion(WorldFile worldFile) {
+        final World world = WorldGenerator.terrain(5).generate(new DefaultNodeFactory(), 128);
+        world.fill(64, 64, 96, 128, 128, 128, 3);
+        world.compact();
+        worldFile.save(fileSystem, world, "test");
+
+        final Box box = new Box(20, 40, 10, 50, 60, 110);
+        final World region = worldFile.loadRegion(fileSystem, "test", box, new DefaultNodeFactory());
+
+        assertEquals(world.rangeShift(), region.rangeShift());
+        for (int k = 0; k < 128; k++) {
+            for (int j = 0; j < 128; j++) {
+                for (int i = 0; i < 128; i++) {
+                    if (box.contains(i, j, k)) {
+                        assertEquals(world.get(i, j, k), region.get(i, j, k));
+                    }
+                }
+            }
+        }
+        assertNull(region.leafForIndices(100, 100, 10, false));
+        assertEquals(0, region.get(100, 100, 100));
+    }
+
+    @Test
+    public void shouldLoadVersion1() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(WorldFile.FILE_HEADER_SIZE + 2 * WorldFile.LEAF_CHUNK_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{'w', 'r', 'l', 'd'})
+                .putShort((short) 1)
+                .put((byte) 6)
+                .put((byte) 4);
+        for (int n = 0; n < 2; n++) {
+            buffer.put(WorldFile.LEAF_SIGNATURE)
+                    .putInt(16 * n)
+                    .putInt(32)
+                    .putInt(48);
+            for (int b = 0; b < Blocks.SIZE; b++) {
+                buffer.put((byte) (b % (n + 2)));
+            }
+        }
+        buffer.flip();
+        Files.createDirectories(fileSystem.root().resolve("universe/old"));
+        try (FileChannel channel = fileSystem.truncate("universe/old/world")) {
+            channel.write(buffer);
+        }
+
+        final World world = worldFile.load(fileSystem, "old", new DefaultNodeFactory());
+
+        assertEquals(6, world.rangeShift());
+        assertEquals(1, world.get(1, 32, 48));
+        assertEquals(0, world.get(2, 32, 48));
+        assertEquals(2, world.get(18, 32, 48));
+        assertEquals(0, world.get(1, 31, 48));
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+import java.util.Random;
+
+/**
+ * Compares incremental save of {@link WorldStore} with full save of {@link WorldFile} when few blocks are modified
+ * between saves (as with autosave).
+ */
+public final class WorldStoreBenchmark {
+
+    private static final int DIM_SIZE = 512;
+
+    private static final int PASSES = 10;
+
+    private static final int MODIFICATIONS = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        final World world = WorldGenerator.terrain(1).generate(DefaultNodeFactory.palette(), DIM_SIZE);
+        world.compact();
+        try (FolderFileSystem fileSystem = FolderFileSystem.temporary()) {
+            final ManualSchedule schedule = new ManualSchedule();
+            final WorldFile worldFile = new WorldFile();
+            final WorldStore store = new WorldStore(fileSystem, worldFile, schedule, "bench");
+            store.save(world);
+            while (store.isCompacting()) {
+                schedule.processPendingTasks(0);
+                Thread.sleep(1);
+            }
+            final Random random = new Random(1);
+            for (int pass = 0; pass < PASSES; pass++) {
+                for (int n = 0; n < MODIFICATIONS; n++) {
+                    world.put(random.nextInt(DIM_SIZE), random.nextInt(DIM_SIZE), random.nextInt(DIM_SIZE), 1 + random.nextInt(8));
+                }
+                final long t0 = System.nanoTime();
+                store.save(world);
+                final long t1 = System.nanoTime();
+                worldFile.save(fileSystem, world, "full");
+                final long t2 = System.nanoTime();
+                System.out.printf("modified: %d blocks, incremental: %.2f ms (log: %,d bytes), full: %.1f ms%n",
+                        MODIFICATIONS, (t1 - t0) / 1e6, store.logSize(), (t2 - t1) / 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.ykiselev.spi.world.file.WorldAssertions.assertSameBlocks;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorldStoreTest {
+
+    private final FolderFileSystem fileSystem = FolderFileSystem.temporary();
+
+    private final ManualSchedule schedule = new ManualSchedule();
+
+    private final WorldFile worldFile = new WorldFile();
+
+    private void await(WorldStore store) throws InterruptedException {
+        while (store.isCompacting()) {
+            schedule.processPendingTasks(0);
+            Thread.sleep(1);
+        }
+    }
+
+    private static World generate() {
+        final World world = WorldGenerator.terrain(13).generate(new DefaultNodeFactory(), 128);
+        world.compact();
+        return world;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fileSystem.close();
+    }
+
+    @Test
+    public void shouldAppendModifiedLeaves() throws InterruptedException {
+        final World world = generate();
+        final WorldStore store = new WorldStore(fileSystem, worldFile, schedule, "test", 10);
+        store.save(world);
+        await(store);
+        assertEquals(0, store.logSize());
+
+        world.put(1, 2, 100, 5);
+        world.fill(32, 32, 0, 48, 48, 16, 0);
+        world.fill(64, 64, 0, 96, 96, 32, 3);
+        store.save(world);
+        final long size = store.logSize();
+        assertTrue(size > 0);
+
+        world.put(3, 2, 100, 4);
+        store.save(world);
+        assertTrue(store.logSize() > size);
+        assertFalse(store.isCompacting());
+
+        final WorldStore reloaded = new WorldStore(fileSystem, worldFile, schedule, "test", 10);
+        assertSameBlocks(world, reloaded.load(new DefaultNodeFactory()));
+        assertEquals(store.logSize(), reloaded.logSize());
+    }
+
+    @Test
+    public void shouldCompactLog() throws InterruptedException {
+        final World world = generate();
+        final WorldStore store = new WorldStore(fileSystem, worldFile, schedule, "test", 0);
+        store.save(world);
+        await(store);
+
+        world.put(1, 2, 100, 5);
+        store.save(world);
+        assertTrue(store.isCompacting());
+        world.put(2, 2, 100, 6);
+        store.save(world);
+        await(store);
+
+        // the second segment was appended after snapshot was taken so it should survive compaction
+        assertTrue(store.logSize() > 0);
+        assertFalse(Files.exists(fileSystem.root().resolve("universe/test.log.tmp")));
+        final WorldStore reloaded = new WorldStore(fileSystem, worldFile, schedule, "test");
+        assertSameBlocks(world, reloaded.load(new DefaultNodeFactory()));
+    }
+
+    @Test
+    public void shouldDropIncompleteSegment() throws InterruptedException, IOException {
+        final World world = generate();
+        final WorldStore store = new WorldStore(fileSystem, worldFile, schedule, "test", 10);
+        store.save(world);
+        await(store);
+        world.put(1, 2, 100, 5);
+        store.save(world);
+        final long size = store.logSize();
+        try (FileChannel log = fileSystem.append("universe/test.log")) {
+            log.write(ByteBuffer.wrap(new byte[]{'d', 'l', 't', 'a', 9, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 100, 0, 0, 0, 1,
+                    2, 3}));
+        }
+
+        final WorldStore reloaded = new WorldStore(fileSystem, worldFile, schedule, "test");
+        assertSameBlocks(world, reloaded.load(new DefaultNodeFactory()));
+        assertEquals(size, reloaded.logSize());
+    }
+
+    @Test
+    public void shouldSkipSegmentsCoveredByBase() throws InterruptedException, IOException {
+        final World world = generate();
+        final WorldStore store = new WorldStore(fileSystem, worldFile, schedule, "test", 10);
+        store.save(world);
+        await(store);
+        world.put(1, 2, 100, 5);
+        store.save(world);
+        final Path log = fileSystem.root().resolve("universe/test.log");
+        final byte[] head = Files.readAllBytes(log);
+
+        // new store does not know the world and so compacts it right away
+        world.put(1, 2, 100, 6);
+        final WorldStore compacting = new WorldStore(fileSystem, worldFile, schedule, "test", 10);
+        compacting.save(world);
+        await(compacting);
+        assertEquals(0, compacting.logSize());
+        // as if process was stopped before covered segments were dropped
+        Files.write(log, head);
+
+        final WorldStore reloaded = new WorldStore(fileSystem, worldFile, schedule, "test");
+        final World loaded = reloaded.load(new DefaultNodeFactory());
+        assertEquals(6, loaded.get(1, 2, 100));
+        assertSameBlocks(world, loaded);
+
+        loaded.put(3, 2, 100, 7);
+        reloaded.save(loaded);
+        assertEquals(7, new WorldStore(fileSystem, worldFile, schedule, "test").load(new DefaultNodeFactory())
+                .get(3, 2, 100));
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.ykiselev.spi.world.file;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Regions;
+import com.github.ykiselev.spi.world.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class WorldStreamerTest {
+
+    private final FolderFileSystem fileSystem = FolderFileSystem.temporary();
+
+    private static World world() {
+        return new World(new DefaultNodeFactory(), (byte) 7, 1 << 16, 5);
+    }
+
+    private static int value(int i, int j, int k) {
+        return 1 + (i + 3 * j + 7 * k) % 5;
+    }
+
+    private void export() {
+        final World world = world();
+        for (int k = 0; k < 128; k++) {
+            for (int j = 0; j < 128; j++) {
+                for (int i = 0; i < 128; i++) {
+                    world.put(i, j, k, value(i, j, k));
+                }
+            }
+        }
+        final Regions regions = world.regions();
+        for (int k = 0; k < 128; k += 32) {
+            for (int j = 0; j < 128; j += 32) {
+                for (int i = 0; i < 128; i += 32) {
+                    regions.markLoaded(regions.key(i, j, k));
+                }
+            }
+        }
+        new RegionStore(fileSystem, "test").save(world);
+    }
+
+    private static void stream(WorldStreamer streamer, float x, float y, float z) throws InterruptedException {
+        for (int n = 0; n < 1000; n++) {
+            streamer.update(x, y, z);
+            final WorldStreamer.Metrics metrics = streamer.metrics();
+            if (metrics.queued() == 0 && metrics.loading() == 0) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+        fail("Streaming has not settled!");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fileSystem.close();
+    }
+
+    @Test
+    public void shouldLoadNearestRegions() throws InterruptedException {
+        export();
+        final World world = world();
+        try (WorldStreamer streamer = new WorldStreamer(fileSystem, "test", world,
+                new WorldStreamer.Settings(25, 40, 64, 3), 2)) {
+            stream(streamer, 10, 10, 10);
+
+            final Regions regions = world.regions();
+            assertTrue(regions.isLoaded(regions.key(0, 0, 0)));
+            assertTrue(regions.isLoaded(regions.key(32, 0, 0)));
+            assertFalse(regions.isLoaded(regions.key(32, 32, 0)));
+            assertEquals(4, streamer.metrics().resident());
+            assertEquals(4, streamer.metrics().loads());
+            assertEquals(value(5, 6, 7), world.get(5, 6, 7));
+            assertEquals(value(40, 6, 7), world.get(40, 6, 7));
+            assertEquals(0, world.get(100, 100, 100));
+        }
+    }
+
+    @Test
+    public void shouldSaveModifiedRegionOnEviction() throws InterruptedException {
+        export();
+        final World world = world();
+        try (WorldStreamer streamer = new WorldStreamer(fileSystem, "test", world,
+                new WorldStreamer.Settings(0, 0, 64, 100), 1)) {
+            stream(streamer, 10, 10, 10);
+            world.put(10, 10, 10, 9);
+
+            stream(streamer, 100, 100, 100);
+
+            final Regions regions = world.regions();
+            assertFalse(regions.isLoaded(regions.key(10, 10, 10)));
+            assertEquals(0, world.get(10, 10, 10));
+            assertEquals(value(100, 100, 100), world.get(100, 100, 100));
+
+            stream(streamer, 10, 10, 10);
+
+            assertEquals(9, world.get(10, 10, 10));
+            assertEquals(value(11, 10, 10), world.get(11, 10, 10));
+        }
+    }
+
+    @Test
+    public void shouldKeepResidentLeavesWithinBudget() throws InterruptedException {
+        export();
+        final World world = world();
+        try (WorldStreamer streamer = new WorldStreamer(fileSystem, "test", world,
+                new WorldStreamer.Settings(1000, 1000, 1, 100), 1)) {
+            for (int n = 0; n < 200 || streamer.metrics().loading() > 0; n++) {
+                streamer.update(0, 0, 0);
+                Thread.sleep(1);
+            }
+            final long loads = streamer.metrics().loads();
+            for (int n = 0; n < 100; n++) {
+                streamer.update(0, 0, 0);
+            }
+
+            final WorldStreamer.Metrics metrics = streamer.metrics();
+            final long region = metrics.residentBytes() / metrics.resident();
+            assertEquals(loads, metrics.loads());
+            assertTrue(metrics.queued() > 0);
+            assertTrue(metrics.resident() < 64);
+            assertTrue(metrics.residentBytes() <= 1024 * 1024 + 2 * region);
+            assertTrue(world.regions().isLoaded(world.regions().key(0, 0, 0)));
+        }
+    }
+
+    @Test
+    public void shouldKeepEditsMadeDuringInsertion() throws InterruptedException {
+        export();
+        final World world = world();
+        try (WorldStreamer streamer = new WorldStreamer(fileSystem, "test", world,
+                new WorldStreamer.Settings(0, 0, 64, 1), 1)) {
+            streamer.update(10, 10, 10);
+            // region is queued, edited cell should survive insertion
+            world.put(20, 20, 20, 8);
+            for (int n = 0; world.get(10, 10, 10) == 0; n++) {
+                if (n == 1000) {
+                    fail("Leaf has not been inserted!");
+                }
+                streamer.update(10, 10, 10);
+                Thread.sleep(1);
+            }
+            final Regions regions = world.regions();
+            assertFalse(regions.isLoaded(regions.key(10, 10, 10)));
+            world.put(10, 10, 10, 9);
+            streamer.save();
+
+            stream(streamer, 10, 10, 10);
+            streamer.save();
+
+            assertEquals(9, world.get(10, 10, 10));
+            assertEquals(value(11, 10, 10), world.get(11, 10, 10));
+            assertEquals(8, world.get(20, 20, 20));
+            final World reloaded = world();
+            new RegionStore(fileSystem, "test").load(reloaded, regions.key(10, 10, 10));
+            assertEquals(9, reloaded.get(10, 10, 10));
+            assertEquals(value(11, 10, 10), reloaded.get(11, 10, 10));
+            assertEquals(8, reloaded.get(20, 20, 20));
+        }
+    }
+
+    @Test
+    public void shouldSaveEditsOfRegionLoadedTooLate() throws InterruptedException {
+        export();
+        final World world = world();
+        try (WorldStreamer streamer = new WorldStreamer(fileSystem, "test", world,
+                new WorldStreamer.Settings(0, 0, 64, 100), 1)) {
+            streamer.update(10, 10, 10);
+            world.put(20, 20, 20, 8);
+
+            stream(streamer, 100, 100, 100);
+
+            final Regions regions = world.regions();
+            assertFalse(regions.isLoaded(regions.key(10, 10, 10)));
+            assertEquals(0, world.get(20, 20, 20));
+
+            stream(streamer, 10, 10, 10);
+
+            assertEquals(8, world.get(20, 20, 20));
+            assertEquals(value(11, 10, 10), world.get(11, 10, 10));
+        }
+    }
+
+    @Test
+    public void shouldKeepEditsOfRegionWhichFailedToLoad() throws InterruptedException, IOException {
+        Files.createDirectories(fileSystem.root().resolve("universe/test"));
+        Files.write(fileSystem.root().resolve("universe/test/0.0.0.region"), new byte[]{1, 2, 3});
+        final World world = world();
+        try (WorldStreamer streamer = new WorldStreamer(fileSystem, "test", world,
+                new WorldStreamer.Settings(0, 0, 64, 100), 1)) {
+            streamer.update(10, 10, 10);
+            world.put(20, 20, 20, 8);
+
+            stream(streamer, 10, 10, 10);
+            streamer.save();
+
+            final Regions regions = world.regions();
+            assertTrue(regions.isLoaded(regions.key(10, 10, 10)));
+            assertEquals(8, world.get(20, 20, 20));
+            final World reloaded = world();
+            new RegionStore(fileSystem, "test").load(reloaded, regions.key(10, 10, 10));
+            assertEquals(8, reloaded.get(20, 20, 20));
+        }
+    }
+
+    @Test
+    public void shouldKeepEditsOfLoadingRegionOnJournalOverflow() throws InterruptedException {
+        export();
+        final World world = new World(new DefaultNodeFactory(), (byte) 7, 2, 5);
+        try (WorldStreamer streamer = new WorldStreamer(fileSystem, "test", world,
+                new WorldStreamer.Settings(0, 0, 64, 100), 1)) {
+            streamer.update(10, 10, 10);
+            world.put(1, 1, 1, 7);
+            world.put(20, 20, 20, 8);
+            world.put(1, 20, 1, 9);
+
+            stream(streamer, 10, 10, 10);
+
+            assertEquals(7, world.get(1, 1, 1));
+            assertEquals(8, world.get(20, 20, 20));
+            assertEquals(9, world.get(1, 20, 1));
+            assertEquals(value(30, 10, 10), world.get(30, 10, 10));
+        }
+    }
+}
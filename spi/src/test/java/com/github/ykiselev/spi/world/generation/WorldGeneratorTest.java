@@ -0,0 +1,50 @@
+package com.github.ykiselev.spi.world.generation;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorldGeneratorTest {
+
+    @Test
+    public void shouldGenerateFloor() {
+        World world = new WorldGenerator().generate(new DefaultNodeFactory(), 64);
+
+        for (int k = 0; k < 64; k++) {
+            assertEquals(k < 8 ? 1 : 0, world.get(5, 60, k));
+            assertEquals(k < 8 ? 1 : 0, world.get(63, 0, k));
+        }
+    }
+
+    @Test
+    public void shouldNotDependOnParallelism() {
+        final ForkJoinPool single = new ForkJoinPool(1);
+        final ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            final WorldGenerator g1 = new WorldGenerator(single, WorldGenerator.terrain(1).stages());
+            final WorldGenerator g2 = new WorldGenerator(many, WorldGenerator.terrain(1).stages());
+            final World w1 = g1.generate(DefaultNodeFactory.palette(), 128);
+            final World w2 = g2.generate(new DefaultNodeFactory(), 128);
+            int solid = 0;
+            for (int k = 0; k < 128; k++) {
+                for (int j = 0; j < 128; j++) {
+                    for (int i = 0; i < 128; i++) {
+                        assertEquals(w1.get(i, j, k), w2.get(i, j, k));
+                        if (w1.get(i, j, k) != 0) {
+                            solid++;
+                        }
+                    }
+                }
+            }
+            assertTrue(solid > 128 * 128 * 16);
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.NodePredicate;
+import com.github.ykiselev.spi.world.Visitor;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CulledMesherTest {
+
+    /**
+     * Value 3 is invisible, value 2 is visible but not opaque.
+     */
+    private final BlockMaterials materials = new BlockMaterials() {
+        @Override
+        public boolean isVisible(int value) {
+            return value != 3;
+        }
+
+        @Override
+        public boolean isOpaque(int value) {
+            return value == 1;
+        }
+    };
+
+    private final LeafMesher mesher = new CulledMesher(materials);
+
+    private static Leaf solid(int value) {
+        final Leaf leaf = new Leaf().init(16, 16, 16);
+        leaf.fill(value);
+        return leaf;
+    }
+
+    @Test
+    public void shouldEmitOnlyOuterFacesOfSolidLeaf() {
+        final LeafMesh mesh = mesher.mesh(solid(1), BlockSource.EMPTY);
+
+        assertEquals(6 * 16 * 16, mesh.quads());
+        for (int n = 0; n < mesh.quads(); n++) {
+            final int g = mesh.geometry(n);
+            final Face face = LeafMesh.face(g);
+            final int index = switch (face) {
+                case I_NEG, I_POS -> LeafMesh.i(g);
+                case J_NEG, J_POS -> LeafMesh.j(g);
+                case K_NEG, K_POS -> LeafMesh.k(g);
+            };
+            assertEquals(face.di() + face.dj() + face.dk() > 0 ? 15 : 0, index, face.name());
+        }
+    }
+
+    @Test
+    public void shouldCullFacesAgainstNeighbourLeaves() {
+        assertSame(LeafMesh.EMPTY, mesher.mesh(solid(1), (i, j, k) -> 1));
+        // only faces looking down are exposed
+        final LeafMesh mesh = mesher.mesh(solid(1), (i, j, k) -> k < 16 ? 0 : 1);
+        assertEquals(16 * 16, mesh.quads());
+        for (int n = 0; n < mesh.quads(); n++) {
+            assertEquals(Face.K_NEG, LeafMesh.face(mesh.geometry(n)));
+        }
+    }
+
+    @Test
+    public void shouldNotCullAgainstInvisibleOrTransparentBlocks() {
+        final Leaf leaf = new Leaf().init(16, 16, 16);
+        leaf.put(20, 20, 20, 1, null);
+        leaf.put(21, 20, 20, 3, null);
+        leaf.put(19, 20, 20, 2, null);
+        leaf.put(20, 21, 20, 1, null);
+
+        final LeafMesh mesh = mesher.mesh(leaf, BlockSource.EMPTY);
+
+        final Set<Face> faces = EnumSet.noneOf(Face.class);
+        int transparent = 0;
+        for (int n = 0; n < mesh.quads(); n++) {
+            final int g = mesh.geometry(n);
+            if (LeafMesh.i(g) == 4 && LeafMesh.j(g) == 4 && LeafMesh.k(g) == 4) {
+                faces.add(LeafMesh.face(g));
+            }
+            if (mesh.value(n) == 2) {
+                transparent++;
+            }
+        }
+        assertEquals(EnumSet.complementOf(EnumSet.of(Face.J_POS)), faces);
+        // transparent block is hidden by opaque neighbour only
+        assertEquals(5, transparent);
+        assertEquals(5 + 5 + 5, mesh.quads());
+    }
+
+    @Test
+    public void shouldHideInnerFacesOfTransparentVolume() {
+        final LeafMesh mesh = mesher.mesh(solid(2), (i, j, k) -> 2);
+        assertSame(LeafMesh.EMPTY, mesh);
+    }
+
+    @Test
+    public void shouldReduceQuadsOfTerrain() {
+        final World world = WorldGenerator.terrain(1).generate(DefaultNodeFactory.palette(), 64);
+        final BlockSource source = BlockSource.of(world);
+        final LeafMesher naive = new NaiveMesher(materials);
+        final long[] quads = new long[2];
+        world.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                quads[0] += naive.mesh(leaf, source).quads();
+                quads[1] += mesher.mesh(leaf, source).quads();
+            }
+        });
+        assertTrue(quads[1] > 0);
+        assertTrue(quads[0] >= 10 * quads[1], quads[0] + " vs " + quads[1]);
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Box;
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Face;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.NodePredicate;
+import com.github.ykiselev.spi.world.Visitor;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GreedyMesherTest {
+
+    private final BlockMaterials materials = value -> true;
+
+    private final LeafMesher mesher = new GreedyMesher(materials);
+
+    /**
+     * Expands quads into unit faces.
+     *
+     * @return the map of unit face to block value
+     */
+    private static Map<Long, Integer> faces(LeafMesh mesh) {
+        final Map<Long, Integer> result = new HashMap<>();
+        for (int n = 0; n < mesh.quads(); n++) {
+            final int g = mesh.geometry(n);
+            final Face face = LeafMesh.face(g);
+            for (int y = 0; y < LeafMesh.height(g); y++) {
+                for (int x = 0; x < LeafMesh.width(g); x++) {
+                    final int[] index = {LeafMesh.i(g), LeafMesh.j(g), LeafMesh.k(g)};
+                    index[LeafMesh.uAxis(face)] += x;
+                    index[LeafMesh.vAxis(face)] += y;
+                    final long key = LeafMesh.pack(index[0], index[1], index[2], face, 1, 1);
+                    assertNull(result.put(key, mesh.value(n)), "Overlapping quads");
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void shouldMergeFacesOfSolidLeaf() {
+        final Leaf leaf = new Leaf();
+        leaf.fill(1);
+
+        final LeafMesh mesh = mesher.mesh(leaf, BlockSource.EMPTY);
+
+        assertEquals(6, mesh.quads());
+        for (int n = 0; n < mesh.quads(); n++) {
+            assertEquals(16, LeafMesh.width(mesh.geometry(n)));
+            assertEquals(16, LeafMesh.height(mesh.geometry(n)));
+        }
+    }
+
+    @Test
+    public void shouldNotMergeDifferentValues() {
+        final Leaf leaf = new Leaf();
+        for (int i = 0; i < 4; i++) {
+            leaf.put(i, 0, 0, 1 + (i & 1), null);
+        }
+
+        final LeafMesh mesh = mesher.mesh(leaf, BlockSource.EMPTY);
+
+        // 4 blocks x 4 faces along the row, each end has one more face
+        assertEquals(4 * 4 + 2, mesh.quads());
+    }
+
+    @Test
+    public void shouldMergeRectangles() {
+        final Leaf leaf = new Leaf();
+        leaf.fill(new Box(2, 3, 0, 7, 5, 1), 1, null);
+        leaf.put(7, 3, 0, 1, null);
+
+        final LeafMesh mesh = mesher.mesh(leaf, BlockSource.EMPTY);
+
+        // top and bottom faces: rows of 6 and 5 faces (rectangle is not grown along v if row is wider)
+        int kFaces = 0;
+        for (int n = 0; n < mesh.quads(); n++) {
+            final Face face = LeafMesh.face(mesh.geometry(n));
+            if (face == Face.K_NEG || face == Face.K_POS) {
+                kFaces++;
+            }
+        }
+        assertEquals(4, kFaces);
+        assertEquals(faces(new CulledMesher(materials).mesh(leaf, BlockSource.EMPTY)), faces(mesh));
+    }
+
+    @Test
+    public void shouldCoverTheSameFacesAsCulledMesher() {
+        final World world = WorldGenerator.terrain(3).generate(DefaultNodeFactory.palette(), 64);
+        final BlockSource source = BlockSource.of(world);
+        final LeafMesher culled = new CulledMesher(materials);
+        final long[] quads = new long[2];
+        world.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                final LeafMesh expected = culled.mesh(leaf, source), actual = mesher.mesh(leaf, source);
+                assertEquals(faces(expected), faces(actual));
+                quads[0] += expected.quads();
+                quads[1] += actual.quads();
+            }
+        });
+        assertTrue(quads[1] > 0);
+        assertTrue(quads[0] > 2 * quads[1], quads[0] + " vs " + quads[1]);
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.UniformNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LeafMeshCacheTest {
+
+    private final List<Uploaded> uploaded = new ArrayList<>();
+
+    private final LeafMeshCache<Uploaded> cache = new LeafMeshCache<>(new NaiveMesher(value -> true), mesh -> {
+        final Uploaded result = new Uploaded(mesh);
+        uploaded.add(result);
+        return result;
+    }, 2);
+
+    private static final class Uploaded implements AutoCloseable {
+
+        final LeafMesh mesh;
+
+        boolean closed;
+
+        Uploaded(LeafMesh mesh) {
+            this.mesh = mesh;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void shouldReuseMeshUntilLeafChanges() {
+        final Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 1, null);
+
+        final Uploaded first = cache.get(leaf, BlockSource.EMPTY);
+        cache.endFrame();
+        assertSame(first, cache.get(leaf, BlockSource.EMPTY));
+        assertEquals(1, cache.builds());
+
+        leaf.put(1, 2, 4, 1, null);
+        final Uploaded second = cache.get(leaf, BlockSource.EMPTY);
+
+        assertNotSame(first, second);
+        assertTrue(first.closed);
+        assertEquals(12, second.mesh.quads());
+        assertEquals(2, cache.builds());
+    }
+
+    @Test
+    public void shouldRebuildInvalidatedMesh() {
+        final Leaf leaf = new Leaf().init(16, 32, 48);
+        leaf.put(16, 32, 48, 1, null);
+        final Uploaded first = cache.get(leaf, BlockSource.EMPTY);
+
+        cache.invalidate(0, 32, 48);
+        assertSame(first, cache.get(leaf, BlockSource.EMPTY));
+
+        cache.invalidate(31, 47, 63);
+        final Uploaded second = cache.get(leaf, BlockSource.EMPTY);
+        assertNotSame(first, second);
+        assertTrue(first.closed);
+
+        cache.invalidateAll();
+        assertNotSame(second, cache.get(leaf, BlockSource.EMPTY));
+        assertEquals(3, cache.builds());
+    }
+
+    @Test
+    public void shouldRebuildWhenLeafIsReplaced() {
+        final Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 1, null);
+        final Uploaded first = cache.get(leaf, BlockSource.EMPTY);
+
+        final Leaf replacement = leaf.snapshot();
+        assertNotSame(first, cache.get(replacement, BlockSource.EMPTY));
+        assertTrue(first.closed);
+    }
+
+    @Test
+    public void shouldMeshExposedFacesOfUniformNode() {
+        final LeafMeshCache<Uploaded> greedy = new LeafMeshCache<>(new GreedyMesher(value -> true), Uploaded::new, 2);
+        final UniformNode node = new UniformNode().init(0, 0, 0, 5, 1);
+        final BlockSource neighbours = (i, j, k) -> (i | j | k) >= 0 && i < 32 && j < 32 && k < 32 ? 1 : 0;
+
+        final Uploaded first = greedy.get(node, 0, 0, 0, neighbours);
+        assertEquals(3, first.mesh.quads());
+        assertEquals(3, greedy.get(node, 16, 16, 16, neighbours).mesh.quads());
+        assertSame(first, greedy.get(node, 0, 0, 0, neighbours));
+        assertEquals(2, greedy.builds());
+
+        final UniformNode replacement = new UniformNode().init(0, 0, 0, 5, 1);
+        assertNotSame(first, greedy.get(replacement, 0, 0, 0, neighbours));
+        assertTrue(first.closed);
+
+        final Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 1, null);
+        assertEquals(6, greedy.get(leaf, BlockSource.EMPTY).mesh.quads());
+        assertEquals(4, greedy.builds());
+    }
+
+    @Test
+    public void shouldNotUploadEmptyMesh() {
+        final Leaf leaf = new Leaf();
+        assertNull(cache.get(leaf, BlockSource.EMPTY));
+        assertNull(cache.get(leaf, BlockSource.EMPTY));
+        assertEquals(1, cache.builds());
+        assertTrue(uploaded.isEmpty());
+    }
+
+    @Test
+    public void shouldEvictIdleEntries() {
+        final Leaf a = new Leaf(), b = new Leaf().init(16, 0, 0);
+        a.put(0, 0, 0, 1, null);
+        b.put(16, 0, 0, 1, null);
+        final Uploaded ua = cache.get(a, BlockSource.EMPTY);
+        cache.get(b, BlockSource.EMPTY);
+        cache.endFrame();
+        for (int frame = 0; frame < 2; frame++) {
+            assertFalse(ua.closed);
+            cache.get(b, BlockSource.EMPTY);
+            cache.endFrame();
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.evictions());
+        assertTrue(ua.closed);
+
+        cache.close();
+        assertEquals(0, cache.size());
+        assertFalse(uploaded.stream().anyMatch(u -> !u.closed));
+    }
+}
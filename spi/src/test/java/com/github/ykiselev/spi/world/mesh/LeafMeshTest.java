@@ -0,0 +1,51 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Face;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class LeafMeshTest {
+
+    @Test
+    public void shouldPackGeometry() {
+        for (Face face : Face.values()) {
+            final int geometry = LeafMesh.pack(15, 3, 9, face, 16, 1);
+            assertEquals(15, LeafMesh.i(geometry));
+            assertEquals(3, LeafMesh.j(geometry));
+            assertEquals(9, LeafMesh.k(geometry));
+            assertEquals(face, LeafMesh.face(geometry));
+            assertEquals(16, LeafMesh.width(geometry));
+            assertEquals(1, LeafMesh.height(geometry));
+        }
+    }
+
+    @Test
+    public void shouldHaveAxesAlongFace() {
+        for (Face face : Face.values()) {
+            final int[] u = new int[3], v = new int[3];
+            u[LeafMesh.uAxis(face)] = 1;
+            v[LeafMesh.vAxis(face)] = 1;
+            // u x v should be outward normal
+            assertEquals(face.di(), u[1] * v[2] - u[2] * v[1], face.name());
+            assertEquals(face.dj(), u[2] * v[0] - u[0] * v[2], face.name());
+            assertEquals(face.dk(), u[0] * v[1] - u[1] * v[0], face.name());
+        }
+    }
+
+    @Test
+    public void shouldBuild() {
+        final LeafMesh.Builder builder = new LeafMesh.Builder();
+        assertSame(LeafMesh.EMPTY, builder.build(0, 0, 0));
+        for (int n = 0; n < 1000; n++) {
+            builder.add(n, n + 1);
+        }
+        final LeafMesh mesh = builder.build(16, 32, 48);
+        assertEquals(1000, mesh.quads());
+        assertEquals(999, mesh.geometry(999));
+        assertEquals(1000, mesh.value(999));
+        assertEquals(32, mesh.jorg());
+        assertEquals(0, builder.clear().quads());
+    }
+}
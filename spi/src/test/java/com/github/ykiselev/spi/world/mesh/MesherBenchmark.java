@@ -0,0 +1,49 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.NodePredicate;
+import com.github.ykiselev.spi.world.Visitor;
+import com.github.ykiselev.spi.world.World;
+import com.github.ykiselev.spi.world.generation.WorldGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures quads per leaf and meshing time per leaf of each {@link MeshStrategy} on generated terrain.
+ */
+public final class MesherBenchmark {
+
+    private static final int DIM_SIZE = 256;
+
+    private static final int PASSES = 5;
+
+    public static void main(String[] args) {
+        final World world = WorldGenerator.terrain(1).generate(DefaultNodeFactory.palette(), DIM_SIZE);
+        final List<Leaf> leaves = new ArrayList<>();
+        world.visit(NodePredicate.DEFAULT, new Visitor() {
+            @Override
+            public void visit(Leaf leaf) {
+                if (!leaf.isEmpty()) {
+                    leaves.add(leaf);
+                }
+            }
+        });
+        final BlockSource source = BlockSource.of(world);
+        for (MeshStrategy strategy : MeshStrategy.values()) {
+            final LeafMesher mesher = strategy.create(value -> true);
+            for (int pass = 0; pass < PASSES; pass++) {
+                long quads = 0;
+                final long t0 = System.nanoTime();
+                for (Leaf leaf : leaves) {
+                    quads += mesher.mesh(leaf, source).quads();
+                }
+                final long elapsed = System.nanoTime() - t0;
+                System.out.printf("%s: leaves: %d, quads: %,d, quads/leaf: %.1f, time/leaf: %.1f us%n",
+                        strategy, leaves.size(), quads, (double) quads / leaves.size(),
+                        elapsed / 1e3 / leaves.size());
+            }
+        }
+    }
+}
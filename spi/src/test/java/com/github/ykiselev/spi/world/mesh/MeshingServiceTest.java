@@ -0,0 +1,194 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Leaf;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class MeshingServiceTest {
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    private final List<Uploaded> uploaded = new ArrayList<>();
+
+    private MeshingService service;
+
+    private static final class Uploaded implements AutoCloseable {
+
+        final LeafMesh mesh;
+
+        boolean closed;
+
+        Uploaded(LeafMesh mesh) {
+            this.mesh = mesh;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private LeafMeshCache<Uploaded> cache(int maxQueued) {
+        service = new MeshingService(() -> new NaiveMesher(value -> true), 1, maxQueued);
+        return new LeafMeshCache<>(service, mesh -> {
+            final Uploaded result = new Uploaded(mesh);
+            uploaded.add(result);
+            return result;
+        }, 2);
+    }
+
+    private void awaitQueued(int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (service.metrics().completed() < expected) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for meshes: " + service.metrics());
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    public void shouldReturnMeshWhenUploaded() throws InterruptedException {
+        final LeafMeshCache<Uploaded> cache = cache(8);
+        final Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 1, null);
+
+        assertNull(cache.get(leaf, BlockSource.EMPTY));
+        // not submitted twice
+        assertNull(cache.get(leaf, BlockSource.EMPTY));
+        awaitQueued(1);
+        assertEquals(1, cache.upload(Long.MAX_VALUE, Long.MAX_VALUE));
+
+        final Uploaded mesh = cache.get(leaf, BlockSource.EMPTY);
+        assertEquals(6, mesh.mesh.quads());
+        assertEquals(1, service.metrics().meshed());
+        assertEquals(0, service.metrics().queued());
+    }
+
+    @Test
+    public void shouldKeepPreviousMeshUntilNewOneIsUploaded() throws InterruptedException {
+        final LeafMeshCache<Uploaded> cache = cache(8);
+        final Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 1, null);
+        cache.get(leaf, BlockSource.EMPTY);
+        awaitQueued(1);
+        cache.upload(Long.MAX_VALUE, Long.MAX_VALUE);
+        final Uploaded first = cache.get(leaf, BlockSource.EMPTY);
+
+        leaf.put(1, 2, 4, 1, null);
+        assertSame(first, cache.get(leaf, BlockSource.EMPTY));
+        // modified again before previous job is picked up
+        leaf.put(1, 2, 5, 1, null);
+        assertSame(first, cache.get(leaf, BlockSource.EMPTY));
+        awaitQueued(2);
+        cache.upload(Long.MAX_VALUE, Long.MAX_VALUE);
+
+        final Uploaded second = cache.get(leaf, BlockSource.EMPTY);
+        assertNotSame(first, second);
+        assertTrue(first.closed);
+        assertEquals(18, second.mesh.quads());
+        assertEquals(1, service.metrics().stale());
+    }
+
+    @Test
+    public void shouldDropJobsAboveLimit() throws InterruptedException {
+        final LeafMeshCache<Uploaded> cache = cache(1);
+        final Leaf a = new Leaf(), b = new Leaf().init(16, 0, 0);
+        a.put(0, 0, 0, 1, null);
+        b.put(16, 0, 0, 1, null);
+
+        cache.get(a, BlockSource.EMPTY);
+        cache.get(b, BlockSource.EMPTY);
+        assertEquals(1, service.metrics().dropped());
+
+        awaitQueued(1);
+        cache.upload(Long.MAX_VALUE, Long.MAX_VALUE);
+        // dropped job is submitted again
+        assertNull(cache.get(b, BlockSource.EMPTY));
+        awaitQueued(1);
+        cache.upload(Long.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(6, cache.get(b, BlockSource.EMPTY).mesh.quads());
+    }
+
+    @Test
+    public void shouldRespectUploadBudget() throws InterruptedException {
+        final LeafMeshCache<Uploaded> cache = cache(8);
+        final List<Leaf> leaves = new ArrayList<>();
+        for (int n = 0; n < 3; n++) {
+            final Leaf leaf = new Leaf().init(n * 16, 0, 0);
+            leaf.put(n * 16, 0, 0, 1, null);
+            leaves.add(leaf);
+            cache.get(leaf, BlockSource.EMPTY);
+        }
+        awaitQueued(3);
+
+        assertEquals(1, cache.upload(1, Long.MAX_VALUE));
+        assertEquals(2, service.metrics().completed());
+        assertEquals(2, cache.upload(12, Long.MAX_VALUE));
+        assertEquals(0, cache.upload(12, Long.MAX_VALUE));
+        for (Leaf leaf : leaves) {
+            assertEquals(6, cache.get(leaf, BlockSource.EMPTY).mesh.quads());
+        }
+    }
+
+    @Test
+    public void shouldDiscardMeshesOfEvictedEntries() throws InterruptedException {
+        final LeafMeshCache<Uploaded> cache = cache(8);
+        final Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 1, null);
+        cache.get(leaf, BlockSource.EMPTY);
+        awaitQueued(1);
+        for (int frame = 0; frame < 3; frame++) {
+            cache.endFrame();
+        }
+        assertEquals(0, cache.size());
+
+        assertEquals(0, cache.upload(Long.MAX_VALUE, Long.MAX_VALUE));
+        assertEquals(1, service.metrics().stale());
+        assertTrue(uploaded.isEmpty());
+    }
+
+    @Test
+    public void shouldMeshSnapshot() throws InterruptedException {
+        service = new MeshingService(() -> (leaf, neighbours) -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new NaiveMesher(value -> true).mesh(leaf, BlockSource.EMPTY);
+        }, 1, 8);
+        final Leaf leaf = new Leaf();
+        leaf.put(1, 2, 3, 1, null);
+        assertTrue(service.submit(7, 1, leaf.snapshot(), BlockSource.EMPTY));
+        leaf.put(1, 2, 4, 1, null);
+        gate.countDown();
+        awaitQueued(1);
+
+        final MeshingService.Result result = service.poll();
+        assertEquals(7, result.key());
+        assertEquals(6, result.mesh().quads());
+        assertNull(service.poll());
+        assertFalse(service.metrics().averageLatency() < 0);
+    }
+}
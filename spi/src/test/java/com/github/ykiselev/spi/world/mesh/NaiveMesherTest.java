@@ -0,0 +1,40 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.Leaf;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class NaiveMesherTest {
+
+    private final LeafMesher mesher = new NaiveMesher(value -> value != 3);
+
+    @Test
+    public void shouldEmitAllFacesOfVisibleBlocks() {
+        final Leaf leaf = new Leaf().init(16, 0, 32);
+        leaf.put(16, 0, 32, 1, null);
+        leaf.put(17, 0, 32, 2, null);
+        leaf.put(31, 15, 47, 1, null);
+        leaf.put(20, 5, 40, 3, null);
+
+        final LeafMesh mesh = mesher.mesh(leaf, BlockSource.EMPTY);
+
+        assertEquals(18, mesh.quads());
+        assertEquals(16, mesh.iorg());
+        assertEquals(32, mesh.korg());
+        final int geometry = mesh.geometry(17);
+        assertEquals(15, LeafMesh.i(geometry));
+        assertEquals(15, LeafMesh.j(geometry));
+        assertEquals(15, LeafMesh.k(geometry));
+        assertEquals(1, mesh.value(17));
+    }
+
+    @Test
+    public void shouldReturnEmptyMesh() {
+        final Leaf leaf = new Leaf();
+        assertSame(LeafMesh.EMPTY, mesher.mesh(leaf, BlockSource.EMPTY));
+        leaf.put(1, 1, 1, 3, null);
+        assertSame(LeafMesh.EMPTY, mesher.mesh(leaf, BlockSource.EMPTY));
+    }
+}
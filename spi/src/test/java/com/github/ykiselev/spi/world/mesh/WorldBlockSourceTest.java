@@ -0,0 +1,45 @@
+package com.github.ykiselev.spi.world.mesh;
+
+import com.github.ykiselev.spi.world.DefaultNodeFactory;
+import com.github.ykiselev.spi.world.Leaf;
+import com.github.ykiselev.spi.world.World;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WorldBlockSourceTest {
+
+    @Test
+    public void shouldReadWorld() {
+        final World world = new World(new DefaultNodeFactory(), (byte) 6);
+        world.put(63, 0, 5, 2);
+        final BlockSource source = BlockSource.of(world);
+
+        assertEquals(2, source.get(63, 0, 5));
+        assertEquals(0, source.get(-1, 0, 5));
+        assertEquals(0, source.get(64, 0, 5));
+    }
+
+    @Test
+    public void shouldKeepNeighboursOfSnapshot() {
+        final World world = new World(new DefaultNodeFactory(), (byte) 6);
+        world.fill(16, 16, 0, 32, 32, 16, 3);
+        world.compact();
+        world.put(15, 20, 20, 1);
+        world.put(32, 20, 20, 2);
+        final Leaf leaf = world.leafForIndices(16, 16, 16, true);
+        leaf.put(20, 20, 20, 1, null);
+
+        final BlockSource snapshot = BlockSource.of(world).snapshot(leaf);
+        world.put(15, 20, 20, 0);
+        world.put(32, 20, 20, 0);
+        world.fill(16, 16, 0, 32, 32, 16, 0);
+
+        assertEquals(1, snapshot.get(15, 20, 20));
+        assertEquals(2, snapshot.get(32, 20, 20));
+        assertEquals(3, snapshot.get(20, 20, 15));
+        assertEquals(0, snapshot.get(20, 20, 32));
+        assertEquals(0, snapshot.get(20, 15, 20));
+        assertEquals(0, snapshot.get(20, 20, 20));
+    }
+}
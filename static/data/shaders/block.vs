@@ -6,9 +6,8 @@ layout(location = 1) in vec2 in_TexCoord;
 
 layout(location = 2) in vec3 in_Normal;
 
-layout(location = 3) in vec3 in_BlockPos;
-
-layout(location = 4) in vec2 in_TexOffset;
+// bits 0-23: block i, j, k relative to origin (8 bits each), bits 24-31: material index
+layout(location = 3) in int in_Block;
 
 out vec2 vs_TexCoord;
 
@@ -16,13 +15,19 @@ out vec4 vs_Normal;
 
 uniform mat4 mvp;
 
+uniform vec3 origin;
+
 uniform vec2 texScale;
 
+uniform vec2 texOffsets[256];
+
 void main()
 {
-    gl_Position = mvp * vec4(in_Position + in_BlockPos, 1.0);
+    vec3 position = vec3(in_Block & 255, (in_Block >> 8) & 255, (in_Block >> 16) & 255);
+
+    gl_Position = mvp * vec4(origin + position + in_Position, 1.0);
 
-    vs_TexCoord = in_TexCoord * texScale + in_TexOffset;
+    vs_TexCoord = in_TexCoord * texScale + texOffsets[(in_Block >> 24) & 255];
 
     vs_Normal = vec4(in_Normal, 1.0);
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+#version 330 core
+
+in vec2 vs_TexCoord;
+
+flat in vec3 vs_Tile;
+
+in vec4 vs_Normal;
+
+layout (location = 0) out vec4 FragColor;
+
+layout (location = 1) out vec4 FragNormal;
+
+uniform sampler2D tex;
+
+uniform vec2 texScale;
+
+void main()
+{
+    // material tile has side texture in first third and top/bottom in second one (see Block)
+    vec2 scale = vec2(1.0 / 3.0, 1.0) * texScale;
+    vec2 st = (vec2(vs_Tile.x, 0) + fract(vs_TexCoord)) * scale + vs_Tile.yz;
+    // gradients of unwrapped coordinates, so there are no seams at block borders
+    vec2 unwrapped = vs_TexCoord * scale;
+    FragColor = textureGrad(tex, st, dFdx(unwrapped), dFdy(unwrapped));
+    FragNormal = vec4(1,0,1,1);// vs_Normal;
+}
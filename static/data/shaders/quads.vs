@@ -0,0 +1,56 @@
+#version 330 core
+
+layout(location = 0) in vec2 in_Corner;
+
+// bits 0-11: block i, j, k (relative to origin), bits 12-14: face, bits 15-22: width - 1, height - 1
+layout(location = 1) in int in_Quad;
+
+layout(location = 2) in vec2 in_TexOffset;
+
+// position within material tile in blocks (merged quads repeat texture once per block)
+out vec2 vs_TexCoord;
+
+// tile section and texture offset of material
+flat out vec3 vs_Tile;
+
+out vec4 vs_Normal;
+
+uniform mat4 mvp;
+
+uniform vec3 origin;
+
+// faces: -i, +i, -j, +j, -k, +k
+const vec3 NORMALS[6] = vec3[6](
+    vec3(-1, 0, 0), vec3(1, 0, 0),
+    vec3(0, -1, 0), vec3(0, 1, 0),
+    vec3(0, 0, -1), vec3(0, 0, 1)
+);
+
+// axes along quad width and height, their cross product is the face normal
+const ivec2 AXES[6] = ivec2[6](
+    ivec2(2, 1), ivec2(1, 2),
+    ivec2(0, 2), ivec2(2, 0),
+    ivec2(1, 0), ivec2(0, 1)
+);
+
+void main()
+{
+    int face = (in_Quad >> 12) & 7;
+    vec3 normal = NORMALS[face];
+    ivec2 axes = AXES[face];
+    vec2 size = vec2(((in_Quad >> 15) & 15) + 1, ((in_Quad >> 19) & 15) + 1);
+    vec2 uv = in_Corner * size;
+
+    // faces with positive normal lie on the far side of block
+    vec3 position = vec3(in_Quad & 15, (in_Quad >> 4) & 15, (in_Quad >> 8) & 15) + max(normal, vec3(0));
+    position[axes.x] += uv.x;
+    position[axes.y] += uv.y;
+
+    gl_Position = mvp * vec4(origin + position, 1.0);
+
+    // t goes along k on side faces, top/bottom faces use second section of material tile (see quads.fs)
+    vs_TexCoord = axes.x == 2 ? uv.yx : uv;
+    vs_Tile = vec3(face >= 4 ? 1.0 : 0.0, in_TexOffset);
+
+    vs_Normal = vec4(normal, 1.0);
+}